@@ -0,0 +1,67 @@
+package com.jase;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of every BuddyPlugin tool method
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class BuddyPluginBenchmark {
+    
+    private BuddyPlugin plugin;
+    
+    @Setup
+    public void setUp() {
+        PipelineStagesBenchmark.quietLogging();
+        plugin = new BuddyPlugin();
+    }
+    
+    @Benchmark
+    public String calculate() {
+        return plugin.calculate("12.5 * 4");
+    }
+    
+    @Benchmark
+    public String calculateNested() {
+        return plugin.calculate("sqrt(3^2 + 4^2) * (1 + 2) / 5");
+    }
+    
+    @Benchmark
+    public String calculateInvalid() {
+        return plugin.calculate("2 plus 2");
+    }
+    
+    @Benchmark
+    public String getWeather() {
+        return plugin.getWeather("Paris");
+    }
+    
+    @Benchmark
+    public String getCurrentTime() {
+        return plugin.getCurrentTime();
+    }
+    
+    @Benchmark
+    public String getUserInfo() {
+        return plugin.getUserInfo("user_name");
+    }
+    
+    @Benchmark
+    public String setUserPreference() {
+        return plugin.setUserPreference("tone", "casual");
+    }
+}
@@ -0,0 +1,56 @@
+package com.jase;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse, cached compile and evaluation throughput of the calculate tool's expression engine
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ExpressionEngineBenchmark {
+    
+    @Param({
+        "12.5 * 4",
+        "(2 + 3) * 4 - 10 / 5",
+        "sqrt(3^2 + 4^2) * sin(pi / 6) + max(1, 2, 3) - ln(e^2)"
+    })
+    public String expression;
+    
+    private ExpressionEngine engine;
+    private ExpressionEngine.Expression compiled;
+    
+    @Setup
+    public void setUp() {
+        engine = new ExpressionEngine(1024);
+        compiled = engine.compile(expression);
+    }
+    
+    @Benchmark
+    public ExpressionEngine.Expression parse() {
+        return ExpressionEngine.parse(expression);
+    }
+    
+    @Benchmark
+    public double evaluateCompiled() {
+        return compiled.evaluate();
+    }
+    
+    @Benchmark
+    public double evaluateCached() {
+        return engine.evaluate(expression);
+    }
+}
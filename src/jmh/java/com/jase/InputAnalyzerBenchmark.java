@@ -0,0 +1,80 @@
+package com.jase;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of tagging a turn's input, against lowercasing, splitting into words and looking them up
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class InputAnalyzerBenchmark {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}']+");
+    private static final Set<String> KEYWORDS = Set.copyOf(InputAnalyzer.DEFAULT_INTENTS.values().stream()
+            .flatMap(keywords -> keywords.stream().map(keyword -> keyword.replace("*", "")))
+            .toList());
+
+    @Param({"short", "medium", "long"})
+    public String length;
+
+    private String input;
+    private InputAnalyzer analyzer;
+    private InputAnalyzer redacting;
+
+    @Setup
+    public void setUp() {
+        input = switch (length) {
+            case "short" -> "  Hello there!  ";
+            case "medium" -> "Can you explain why the weather forecast for Paris changed since this morning?";
+            default -> ("I am planning a trip next month and would like some help. We are four people, "
+                    + "two of them kids, and we care about museums, food and not walking too much. ").repeat(4);
+        };
+        analyzer = new InputAnalyzer(InputAnalyzer.DEFAULT_INTENTS, "[redacted]");
+        redacting = new InputAnalyzer(InputAnalyzer.parseIntents("redact=project falcon|secret*|acme"), "[redacted]");
+    }
+
+    @Benchmark
+    public InputAnalyzer.Analysis analyze() {
+        return analyzer.analyze(input);
+    }
+
+    @Benchmark
+    public ModelRouter.Intent classify() {
+        return ModelRouter.classify(analyzer.analyze(input));
+    }
+
+    @Benchmark
+    public String redact() {
+        return redacting.redact(input);
+    }
+
+    // What each classification did before: lowercase, split into words and look every word up
+    @Benchmark
+    public int splitAndLookup() {
+        String text = input.toLowerCase(Locale.ROOT).strip();
+        int found = 0;
+        for (String word : WORD_SEPARATOR.split(text)) {
+            if (KEYWORDS.contains(word)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,79 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+
+/**
+ * Latency of the first model call on a fresh HTTP client, cold or pre-warmed, against the
+ * stub OpenAI server. The stub delays the first request of each connection to stand in for
+ * the TCP and TLS handshakes of a remote endpoint.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@State(Scope.Benchmark)
+public class ModelHttpClientBenchmark {
+    
+    @Param({"false", "true"})
+    public boolean prewarmed;
+    
+    @Param({"50"})
+    public int connectLatencyMillis;
+    
+    private StubOpenAiServer stub;
+    private ModelHttpClient http;
+    private ChatModel model;
+    
+    @Setup(Level.Trial)
+    public void startStub() {
+        PipelineStagesBenchmark.quietLogging();
+        stub = new StubOpenAiServer().withConnectLatency(Duration.ofMillis(connectLatencyMillis));
+    }
+    
+    @Setup(Level.Iteration)
+    public void newClient() {
+        http = new ModelHttpClient(new ModelHttpClient.Settings(true, 0, null, Duration.ofSeconds(15),
+                Duration.ofSeconds(60), 1, Duration.ZERO));
+        if (prewarmed) {
+            http.prewarm(stub.getBaseUrl(), "stub", 1).join();
+        }
+        model = OpenAiChatModel.builder()
+                .apiKey("stub")
+                .baseUrl(stub.getBaseUrl())
+                .modelName("stub")
+                .httpClientBuilder(http.builder())
+                .build();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void closeClient() {
+        http.close();
+    }
+    
+    @TearDown(Level.Trial)
+    public void stopStub() {
+        stub.close();
+    }
+    
+    @Benchmark
+    public String firstRequest() {
+        return model.chat("hello");
+    }
+}
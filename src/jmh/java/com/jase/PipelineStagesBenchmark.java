@@ -0,0 +1,67 @@
+package com.jase;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Throughput of the preprocess, mock generation and postprocess stages called directly
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class PipelineStagesBenchmark {
+    
+    @Param({"  hello there  ", "What's the weather like in Paris today?", "Tell me something interesting"})
+    public String input;
+    
+    private BuddyActivities activities;
+    private String response;
+    
+    @Setup
+    public void setUp() {
+        quietLogging();
+        activities = new BuddyActivities();
+        response = activities.generateMockResponse(input);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        activities.close();
+    }
+    
+    @Benchmark
+    public BuddyActivitiesInterface.PreprocessedInput preprocessInput() {
+        return activities.preprocessInput(input);
+    }
+    
+    @Benchmark
+    public String generateMockResponse() {
+        return activities.generateMockResponse(input);
+    }
+    
+    @Benchmark
+    public String postprocessResponse() {
+        return activities.postprocessResponse(response);
+    }
+    
+    static void quietLogging() {
+        LogbackConfig.configure();
+        LogbackConfig.setLogLevel("com.jase", Level.WARN);
+        LogbackConfig.setLogLevel("io.temporal", Level.WARN);
+    }
+}
@@ -0,0 +1,76 @@
+package com.jase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Latency of a full BuddyWorkflow turn on the Temporal test environment.
+ * Activities run without OPENAI_API_KEY, so the model is the built-in mock.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class WorkflowTurnBenchmark {
+    
+    private static final String TASK_QUEUE = "buddy-jmh";
+    
+    @Param({"ACTIVITY", "LOCAL_ACTIVITY", "WORKFLOW"})
+    public StageExecutionMode stageMode;
+    
+    private final AtomicLong turns = new AtomicLong();
+    private TestWorkflowEnvironment testEnv;
+    private BuddyActivities activities;
+    private WorkflowClient client;
+    
+    @Setup
+    public void setUp() {
+        PipelineStagesBenchmark.quietLogging();
+        // Time skipping is meant for timer-heavy tests and breaks down over thousands of turns
+        testEnv = TestWorkflowEnvironment.newInstance(TestEnvironmentOptions.newBuilder()
+                .setUseTimeskipping(false)
+                .build());
+        Worker worker = testEnv.newWorker(TASK_QUEUE);
+        worker.registerWorkflowImplementationFactory(BuddyWorkflow.class, () -> new BuddyWorkflowImpl(stageMode));
+        activities = new BuddyActivities();
+        worker.registerActivitiesImplementations(activities);
+        testEnv.start();
+        client = testEnv.getWorkflowClient();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        testEnv.close();
+        activities.close();
+    }
+    
+    @Benchmark
+    public String turn() {
+        BuddyWorkflow workflow = client.newWorkflowStub(
+                BuddyWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(TASK_QUEUE)
+                        .setWorkflowId("jmh-turn-" + turns.incrementAndGet())
+                        .build());
+        return workflow.processUserInput("hello");
+    }
+}
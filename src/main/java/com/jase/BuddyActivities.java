@@ -1,12 +1,36 @@
 package com.jase;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.http.client.HttpClientBuilder;
 import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.Result;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import io.temporal.activity.Activity;
+import io.temporal.activity.ActivityExecutionContext;
 
 /**
  * Temporal activities implementation for Buddy AI Agent Integrates with
@@ -16,96 +40,519 @@ public class BuddyActivities implements BuddyActivitiesInterface {
 
     private static final Logger logger = LoggerFactory.getLogger(BuddyActivities.class);
 
+    // Conversation id used when called outside of a Temporal activity (e.g. tests)
+    static final String DEFAULT_CONVERSATION_ID = "default";
+    private static final int MAX_MEMORY_MESSAGES = 20;
+    private static final Duration STREAMING_TIMEOUT = Duration.ofMinutes(2);
+    private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+
     // LangChain4j components
-    private final OpenAiChatModel chatModel;
-    private final ChatMemory chatMemory;
-    private final BuddyAssistant assistant;
+    private final Lazy<ChatModel> chatModel;
+    private final BuddyChatMemoryStore chatMemoryStore;
+    private final ChatMemoryProvider chatMemoryProvider;
+    private final ConversationSummarizer summarizer;
     private final BuddyPlugin buddyPlugin;
+    private final PreferenceStore preferenceStore;
+    private final BuddyToolRunner toolRunner;
+
+    // Assistants per model; the router picks one per turn, or answers locally
+    private final Lazy<ModelTier> defaultTier;
+    private final Map<String, Lazy<ModelTier>> routedTiers;
+    private final ModelRouter router;
+    private final InputAnalyzer analyzer = InputAnalyzer.shared();
+    private final ModelHttpClient httpClient;
+
+    // Streaming configuration; partial text is heartbeated for clients to read
+    private final boolean streaming;
+    private final Duration streamFlushInterval;
 
-    // AI Assistant interface
+    // Cache of model responses; null when disabled or in mock mode
+    private final ResponseCache responseCache;
+    private final int cacheContextMessages;
+
+    // AI Assistant interface; each conversation gets its own memory
     interface BuddyAssistant {
-        String chat(String message);
+        Result<String> chat(@MemoryId String conversationId, @UserMessage String message);
+    }
+
+    // A generated response and whether tools were used to produce it
+    private record Generated(String text, boolean usedTools) {
+    }
+
+    // Streaming variant of the assistant, used when BUDDY_STREAMING is enabled
+    interface BuddyStreamingAssistant {
+        TokenStream chat(@MemoryId String conversationId, @UserMessage String message);
+    }
+
+    // Assistants of one model; all tiers share the conversation memory and tools
+    private record ModelTier(String modelId, BuddyAssistant assistant, BuddyStreamingAssistant streamingAssistant) {
+    }
+
+    // Builds the OpenAI clients of every tier the same way, all on one shared HTTP client
+    private record ModelClients(String apiKey, String baseUrl, List<ChatModelListener> listeners,
+            ModelRequestScheduler scheduler, boolean hedge, boolean breaker, ModelHttpClient http) {
+
+        HttpClientBuilder httpClientBuilder() {
+            return scheduler != null
+                    ? new RateLimitReportingHttpClient.Builder(http.builder(), scheduler)
+                    : http.builder();
+        }
+
+        ChatModel chatModel(String modelId) {
+            OpenAiChatModel.OpenAiChatModelBuilder builder = OpenAiChatModel.builder()
+                    .apiKey(apiKey)
+                    .baseUrl(baseUrl)
+                    .modelName(modelId)
+                    .listeners(listeners)
+                    .httpClientBuilder(httpClientBuilder());
+            if (scheduler != null) {
+                // The scheduler handles 429s, so the client must not retry into them itself
+                builder.maxRetries(0);
+            }
+            if (hedge) {
+                // The hedge replaces the client's retries; a cancelled request must not be retried
+                builder.maxRetries(0);
+            }
+            // Hedging sits below the scheduler, so a hedged call holds one permit
+            ChatModel model = hedge ? HedgingChatModel.fromEnv(builder.build()) : builder.build();
+            // The breaker times the provider, not the wait for a permit, and a hedged call counts once
+            if (breaker) {
+                model = new CircuitBreakerChatModel(model, ModelCircuitBreaker.shared(modelId));
+            }
+            return scheduler != null ? new RateLimitedChatModel(model, scheduler) : model;
+        }
+
+        StreamingChatModel streamingChatModel(String modelId) {
+            OpenAiStreamingChatModel.OpenAiStreamingChatModelBuilder builder = OpenAiStreamingChatModel.builder()
+                    .apiKey(apiKey)
+                    .baseUrl(baseUrl)
+                    .modelName(modelId)
+                    .listeners(listeners)
+                    .httpClientBuilder(httpClientBuilder());
+            StreamingChatModel model = breaker
+                    ? new CircuitBreakerStreamingChatModel(builder.build(), ModelCircuitBreaker.shared(modelId))
+                    : builder.build();
+            return scheduler != null ? new RateLimitedStreamingChatModel(model, scheduler) : model;
+        }
     }
 
     public BuddyActivities() {
+        this(System.getenv("OPENAI_API_KEY"), System.getenv("OPENAI_BASE_URL"));
+    }
+
+    /**
+     * @param apiKey  OpenAI API key, or null/blank for mock mode
+     * @param baseUrl OpenAI-compatible endpoint, or null for the default
+     */
+    BuddyActivities(String apiKey, String baseUrl) {
+        this(apiKey, baseUrl, ModelRouter.fromEnv());
+    }
+
+    /**
+     * @param router Routes turns to models or local answers, or null to use the default model for all
+     */
+    BuddyActivities(String apiKey, String baseUrl, ModelRouter router) {
+        this(apiKey, baseUrl, router,
+                Path.of(BuddyEnv.getString("BUDDY_MEMORY_DIR", "buddy-data/chat-memory")),
+                Path.of(BuddyEnv.getString("BUDDY_PREFERENCES_DIR", "buddy-data/preferences")));
+    }
+
+    /**
+     * @param dataDirectory Directory the chat memory and user preferences are kept under, e.g. a test's temp dir
+     */
+    BuddyActivities(String apiKey, String baseUrl, ModelRouter router, Path dataDirectory) {
+        this(apiKey, baseUrl, router, dataDirectory.resolve("chat-memory"), dataDirectory.resolve("preferences"));
+    }
+
+    /**
+     * @param memoryDirectory      Directory for conversations evicted from the heap
+     * @param preferencesDirectory Directory of the user preference log
+     */
+    private BuddyActivities(String apiKey, String baseUrl, ModelRouter router, Path memoryDirectory,
+            Path preferencesDirectory) {
         // Initialize LangChain4j components
-        this.buddyPlugin = new BuddyPlugin();
-        this.chatMemory = MessageWindowChatMemory.withMaxMessages(20);
+        this.streaming = BuddyEnv.getBoolean("BUDDY_STREAMING", false);
+        this.streamFlushInterval = Duration.ofMillis(BuddyEnv.getLong("BUDDY_STREAM_FLUSH_MS", 250));
+        this.cacheContextMessages = BuddyEnv.getInt("BUDDY_RESPONSE_CACHE_CONTEXT_MESSAGES", 2);
 
         // Try to create OpenAI client first, fallback to mock mode if not available
-        String apiKey = System.getenv("OPENAI_API_KEY");
-
         if (apiKey != null && !apiKey.trim().isEmpty()) {
             logger.info("Initializing LangChain4j with OpenAI");
+            ChatModelListener modelMetrics = new ModelMetricsListener();
+
+            // Per-user preferences survive restarts in an append-only log on local disk
+            this.preferenceStore = PreferenceStore.fromEnv(preferencesDirectory, BuddyPlugin.DEFAULT_PREFERENCES);
+            this.buddyPlugin = new BuddyPlugin(preferenceStore, BuddyPlugin.userIdFromEnv());
+
+            // Tool calls of one model step run in parallel, with per-tool timeouts and memoization
+            this.toolRunner = BuddyToolRunner.fromEnv(buddyPlugin);
+
+            String modelId = System.getenv().getOrDefault("MODEL_ID", "gpt-4o-mini");
+
+            // Optional scheduler that keeps model calls within the provider's rate limits
+            ModelRequestScheduler scheduler = ModelRequestScheduler.fromEnv();
+
+            // One HTTP client and connection pool for every model call, optionally pre-warmed
+            this.httpClient = ModelHttpClient.fromEnv();
+            httpClient.startPrewarming(baseUrl != null ? baseUrl : DEFAULT_BASE_URL, apiKey);
+
+            // Slow requests can be hedged with a second request after the model's p95 latency, and a
+            // circuit breaker can time requests out after a multiple of its p99 and fail fast when it degrades
+            ModelClients clients = new ModelClients(apiKey, baseUrl, List.of(modelMetrics, toolRunner),
+                    scheduler, BuddyEnv.getBoolean("BUDDY_HEDGE", false),
+                    BuddyEnv.getBoolean("BUDDY_BREAKER", false), httpClient);
+
+            // Clients and assistants are built on first use with BUDDY_LAZY_INIT, so the worker starts polling sooner
+            boolean lazyInit = BuddyEnv.getBoolean("BUDDY_LAZY_INIT", false);
 
             // Create OpenAI chat model
-            this.chatModel = OpenAiChatModel.builder()
-                    .apiKey(apiKey)
-                    .modelName(System.getenv().getOrDefault("MODEL_ID", "gpt-4o-mini"))
-                    .build();
+            this.chatModel = Lazy.of("model_init", () -> clients.chatModel(modelId));
 
-            // Create AI assistant with tools
-            this.assistant = AiServices.builder(BuddyAssistant.class)
-                    .chatModel(chatModel)
-                    .chatMemory(chatMemory)
-                    .tools(buddyPlugin)
-                    .build();
+            // Per-conversation memory: hot conversations on the heap, the rest on local disk until idle for the TTL
+            this.chatMemoryStore = new BuddyChatMemoryStore(memoryDirectory,
+                    BuddyEnv.getInt("BUDDY_MEMORY_HOT_SESSIONS", 1000),
+                    Duration.ofHours(BuddyEnv.getLong("BUDDY_MEMORY_TTL_HOURS", 168)));
+            if (BuddyEnv.getString("BUDDY_MEMORY_MODE", "window").equalsIgnoreCase("token_budget")) {
+                // Keep prompts within a token budget, folding older turns into a rolling summary
+                this.summarizer = new ConversationSummarizer(chatModel, chatMemoryStore,
+                        BuddyEnv.getInt("BUDDY_MEMORY_SUMMARY_TOKENS", 300));
+                int maxTokens = BuddyEnv.getInt("BUDDY_MEMORY_MAX_TOKENS", 3000);
+                int maxToolResultChars = BuddyEnv.getInt("BUDDY_MEMORY_TOOL_RESULT_CHARS", 2000);
+                this.chatMemoryProvider = memoryId -> new TokenBudgetChatMemory(
+                        memoryId, chatMemoryStore, summarizer, maxTokens, maxToolResultChars);
+            } else {
+                this.summarizer = null;
+                this.chatMemoryProvider = memoryId -> MessageWindowChatMemory.builder()
+                        .id(memoryId)
+                        .maxMessages(MAX_MEMORY_MESSAGES)
+                        .chatMemoryStore(chatMemoryStore)
+                        .build();
+            }
+
+            if (streaming) {
+                logger.info("Streaming responses enabled");
+            }
+
+            // Create AI assistants with tools, one per model the router may pick
+            this.router = router;
+            this.defaultTier = Lazy.of("assistant_init", () -> tier(modelId, chatModel.get(), clients));
+            this.routedTiers = new LinkedHashMap<>();
+            if (router != null) {
+                for (String routedModel : router.models()) {
+                    if (!routedModel.equals(modelId)) {
+                        routedTiers.put(routedModel, Lazy.of("assistant_init",
+                                () -> tier(routedModel, clients.chatModel(routedModel), clients)));
+                    }
+                }
+                logger.info("Model routing enabled, routed models: {}", router.models());
+            }
+            if (lazyInit) {
+                logger.info("Lazy initialization enabled, model clients are built on first use");
+            } else {
+                defaultTier.get();
+                routedTiers.values().forEach(Lazy::get);
+            }
+
+            // Repeated inputs in the same conversation state skip the model
+            this.responseCache = InMemoryResponseCache.fromEnv();
+            if (responseCache != null) {
+                BuddyMetrics.registerCache("response", responseCache);
+            }
 
         } else {
             logger.warn("No AI service configuration found. Running in mock mode.");
+            this.preferenceStore = null;
+            this.buddyPlugin = new BuddyPlugin();
+            this.toolRunner = null;
+            this.httpClient = null;
             this.chatModel = null;
-            this.assistant = null;
+            this.chatMemoryStore = null;
+            this.chatMemoryProvider = null;
+            this.summarizer = null;
+            this.defaultTier = null;
+            this.routedTiers = Map.of();
+            this.router = null;
+            this.responseCache = null;
         }
 
         logger.info("Buddy AI Agent activities initialized successfully");
     }
 
+    private ModelTier tier(String modelId, ChatModel model, ModelClients clients) {
+        BuddyAssistant assistant = AiServices.builder(BuddyAssistant.class)
+                .chatModel(model)
+                .chatMemoryProvider(chatMemoryProvider)
+                .tools(toolRunner.executors())
+                .build();
+        BuddyStreamingAssistant streamingAssistant = streaming
+                ? AiServices.builder(BuddyStreamingAssistant.class)
+                        .streamingChatModel(clients.streamingChatModel(modelId))
+                        .chatMemoryProvider(chatMemoryProvider)
+                        .tools(toolRunner.executors())
+                        .build()
+                : null;
+        return new ModelTier(modelId, assistant, streamingAssistant);
+    }
+
     @Override
-    public String preprocessInput(String input) {
+    public PreprocessedInput preprocessInput(String input) {
         logger.info("Preprocessing input: {}", input);
 
-        if (input == null || input.trim().isEmpty()) {
-            return "Hello! How can I help you today?";
-        }
-
-        // Basic preprocessing: trim whitespace and normalize
-        String processed = input.trim();
+        long start = System.nanoTime();
+        // One pass redacts the configured terms and tags the input for the generate stage
+        InputAnalyzer.Analysis analysis = analyzer.analyze(BuddyTextStages.preprocess(input));
+        PreprocessedInput processed = new PreprocessedInput(analysis.text(), analysis.tags());
+        BuddyMetrics.recordStage("preprocess", System.nanoTime() - start);
 
-        // Add any additional preprocessing logic here
+        // Add any additional preprocessing logic in BuddyTextStages
         // For example: spell checking, intent detection, etc.
         logger.info("Input preprocessed successfully");
         return processed;
     }
 
     @Override
-    public String generateResponse(String input) {
-        logger.info("Generating response for input: {}", input);
+    public String generateResponse(PreprocessedInput input) {
+        logger.info("Generating response for input: {}", input.text());
+
+        long start = System.nanoTime();
+        String conversationId = currentConversationId();
+        if (chatMemoryStore != null) {
+            // Shows how often a conversation's turns land on the worker that holds its memory
+            BuddyMetrics.recordSessionTurn(chatMemoryStore.isHot(conversationId));
+        }
+        try {
+            return generate(conversationId, input, true);
+        } finally {
+            BuddyMetrics.recordStage("generate", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Generate a response to input that has only been cleaned, e.g. raw text in tests
+     */
+    String generateResponse(String input) {
+        return generateResponse(new PreprocessedInput(input, null));
+    }
+
+    /**
+     * Generate a response in a conversation of its own that is cleared afterwards, so
+     * independent prompts such as batch items neither see nor grow each other's memory.
+     * Model failures are thrown instead of answered with a mock response, so the caller can retry.
+     */
+    String generateIsolatedResponse(String conversationId, PreprocessedInput input) {
+        long start = System.nanoTime();
+        try {
+            return generate(conversationId, input, false);
+        } finally {
+            BuddyMetrics.recordStage("generate", System.nanoTime() - start);
+            if (chatMemoryProvider != null) {
+                chatMemoryProvider.get(conversationId).clear();
+            }
+        }
+    }
 
+    /**
+     * @param mockOnFailure Answer with a mock response when the model fails, as a conversation does
+     */
+    private String generate(String conversationId, PreprocessedInput preprocessed, boolean mockOnFailure) {
+        // Tags come from the preprocess activity; input preprocessed in workflow code is only
+        // trimmed, so it is analyzed (and redacted) here, with this worker's configuration
+        InputAnalyzer.Analysis analysis = preprocessed.tags() != null
+                ? analyzer.restore(preprocessed.text(), preprocessed.tags())
+                : analyzer.analyze(preprocessed.text());
+        String input = analysis.text();
         try {
-            if (assistant != null) {
-                // Generate response using LangChain4j assistant
-                String response = assistant.chat(input);
-                logger.info("Generated response using LangChain4j");
-                return response;
+            if (defaultTier != null) {
+                Lazy<ModelTier> selected = defaultTier;
+                if (router != null) {
+                    ModelRouter.Route route = router.route(analysis);
+                    String intent = route.intent().name().toLowerCase(Locale.ROOT);
+                    if (route.isLocal()) {
+                        // Greetings and small talk don't need a model
+                        rememberCachedTurn(conversationId, input, route.localAnswer());
+                        BuddyMetrics.recordRoute(intent, ModelRouter.LOCAL);
+                        logger.info("Answered {} locally", intent);
+                        return route.localAnswer();
+                    }
+                    selected = routedTiers.getOrDefault(route.model(), defaultTier);
+                    BuddyMetrics.recordRoute(intent, selected.get().modelId());
+                }
+                ModelTier tier = selected.get();
+
+                String cacheKey = responseCache != null ? responseCacheKey(conversationId, input) : null;
+                if (cacheKey != null) {
+                    String cached = responseCache.get(cacheKey);
+                    if (cached != null) {
+                        rememberCachedTurn(conversationId, input, cached);
+                        logger.info("Served response from cache");
+                        return cached;
+                    }
+                }
+
+                long start = System.nanoTime();
+                Generated generated = tier.streamingAssistant() != null
+                        ? streamWithAssistant(tier.streamingAssistant(), conversationId, input)
+                        : generateWithAssistant(tier.assistant(), conversationId, input);
+                logger.info("Generated response using LangChain4j ({})", tier.modelId());
+                if (summarizer != null) {
+                    TokenBudgetChatMemory.recordTokensSaved(summarizer, conversationId);
+                }
+
+                // Tool results (time, preferences, ...) may change, so those turns are never cached
+                if (cacheKey != null && !generated.usedTools()) {
+                    responseCache.put(cacheKey, generated.text(), System.nanoTime() - start);
+                }
+                return generated.text();
+            } else if (streaming) {
+                logger.info("LangChain4j not available, streaming mock response");
+                BuddyMetrics.recordMockFallback("no_model");
+                return streamResponse(buffer -> {
+                    String response = generateMockResponse(analysis);
+                    for (String token : response.split("(?<= )")) {
+                        buffer.onToken(token);
+                    }
+                    buffer.complete(response);
+                });
             } else {
                 logger.info("LangChain4j not available, using mock response");
-                return generateMockResponse(input);
+                BuddyMetrics.recordMockFallback("no_model");
+                return generateMockResponse(analysis);
             }
         } catch (Exception e) {
+            if (!mockOnFailure) {
+                throw e instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getMessage(), e);
+            }
+            if (ModelCircuitBreaker.isOpen(e)) {
+                // The model is known to be failing; answer right away instead of holding the slot
+                logger.warn("{}, using mock response", e.getMessage());
+                BuddyMetrics.recordMockFallback("circuit_open");
+                return generateMockResponse(analysis);
+            }
             logger.error("Error generating response with LangChain4j", e);
-            return generateMockResponse(input);
+            BuddyMetrics.recordMockFallback("error");
+            return generateMockResponse(analysis);
+        }
+    }
+
+    private Generated generateWithAssistant(BuddyAssistant assistant, String conversationId, String input) {
+        Result<String> result = assistant.chat(conversationId, input);
+        return new Generated(result.content(), !result.toolExecutions().isEmpty());
+    }
+
+    private Generated streamWithAssistant(BuddyStreamingAssistant streamingAssistant, String conversationId,
+            String input) throws Exception {
+        // Stream the response, delivering partial text while it arrives
+        AtomicBoolean usedTools = new AtomicBoolean();
+        String response = streamResponse(buffer -> streamingAssistant.chat(conversationId, input)
+                .onPartialResponse(buffer::onToken)
+                .onToolExecuted(toolExecution -> usedTools.set(true))
+                .onCompleteResponse(chatResponse -> buffer.complete(chatResponse.aiMessage().text()))
+                .onError(buffer::fail)
+                .start());
+        return new Generated(response, usedTools.get());
+    }
+
+    /**
+     * Key a response by the normalized input and a fingerprint of the most
+     * recent messages of the conversation, so a repeat only hits in the same context
+     */
+    private String responseCacheKey(String conversationId, String input) {
+        List<ChatMessage> history = chatMemoryStore.getMessages(conversationId);
+        List<ChatMessage> context = history.subList(Math.max(0, history.size() - cacheContextMessages), history.size());
+
+        // 64-bit FNV-1a over the serialized context messages
+        long fingerprint = 0xcbf29ce484222325L;
+        for (ChatMessage message : context) {
+            String json = ChatMessageSerializer.messageToJson(message);
+            for (int i = 0; i < json.length(); i++) {
+                fingerprint = (fingerprint ^ json.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return Long.toHexString(fingerprint) + ":" + BuddyTextStages.normalizeForCache(input);
+    }
+
+    /**
+     * Keep the conversation memory complete when the model was skipped
+     */
+    private void rememberCachedTurn(String conversationId, String input, String response) {
+        ChatMemory chatMemory = chatMemoryProvider.get(conversationId);
+        chatMemory.add(dev.langchain4j.data.message.UserMessage.from(input));
+        chatMemory.add(AiMessage.from(response));
+    }
+
+    /**
+     * @return Counters of the response cache, or null when caching is disabled
+     */
+    public ResponseCache.Stats getResponseCacheStats() {
+        return responseCache != null ? responseCache.stats() : null;
+    }
+
+    /**
+     * The workflow id identifies the conversation; session workflows keep the
+     * same id across continue-as-new, so memory follows the whole session.
+     */
+    static String currentConversationId() {
+        ActivityExecutionContext context = currentActivityContext();
+        return context != null ? context.getInfo().getWorkflowId() : DEFAULT_CONVERSATION_ID;
+    }
+
+    private static ActivityExecutionContext currentActivityContext() {
+        try {
+            return Activity.getExecutionContext();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Run a streaming producer and wait for its full response, heartbeating the
+     * text received so far on the activity thread while tokens arrive
+     */
+    private String streamResponse(Consumer<StreamingResponseBuffer> producer) throws Exception {
+        ActivityExecutionContext context = currentActivityContext();
+        StreamingResponseBuffer buffer = new StreamingResponseBuffer(context != null ? context::heartbeat : null);
+        producer.accept(buffer);
+        return buffer.await(streamFlushInterval, STREAMING_TIMEOUT);
+    }
+
+    /**
+     * Report response cache counters and release the on-disk stores, tool threads and HTTP client
+     */
+    public void close() {
+        if (responseCache != null) {
+            ResponseCache.Stats stats = responseCache.stats();
+            logger.info("Response cache: {} hits, {} misses, {} evictions, {} expirations, {} ms of model time saved",
+                    stats.hits(), stats.misses(), stats.evictions(), stats.expirations(), stats.savedNanos() / 1_000_000);
+        }
+        if (summarizer != null) {
+            summarizer.close();
+        }
+        if (chatMemoryStore != null) {
+            chatMemoryStore.close();
+        }
+        if (toolRunner != null) {
+            toolRunner.close();
         }
+        if (preferenceStore != null) {
+            preferenceStore.close();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    String generateMockResponse(String input) {
+        return generateMockResponse(analyzer.analyze(input));
     }
 
-    private String generateMockResponse(String input) {
-        // Mock responses for testing without OpenAI API
-        if (input.toLowerCase().contains("hello") || input.toLowerCase().contains("hi")) {
-            return "Hello! I'm Buddy, your AI assistant. How can I help you today?";
-        } else if (input.toLowerCase().contains("how are you")) {
-            return "I'm doing well, thank you for asking! I'm here and ready to help you with any questions or tasks you might have.";
-        } else if (input.toLowerCase().contains("weather")) {
+    private static String generateMockResponse(InputAnalyzer.Analysis input) {
+        // Mock responses for testing without OpenAI API; greetings and small talk use the router's answers
+        String canned = ModelRouter.cannedAnswer(input);
+        if (canned != null) {
+            return canned;
+        } else if (input.hasIntent("weather")) {
             return "I don't have access to real-time weather data, but I'd be happy to help you find weather information or discuss weather-related topics!";
-        } else if (input.toLowerCase().contains("time")) {
+        } else if (input.hasIntent("time")) {
             return "I don't have access to real-time information, but you can check the current time on your device!";
         } else {
             return "That's an interesting question! I'm currently running in demo mode. To get full AI responses, please set your OPENAI_API_KEY environment variable.";
@@ -116,14 +563,11 @@ public class BuddyActivities implements BuddyActivitiesInterface {
     public String postprocessResponse(String response) {
         logger.info("Post-processing response");
 
-        if (response == null || response.trim().isEmpty()) {
-            return "I apologize, but I couldn't generate a proper response. Please try asking your question again.";
-        }
-
-        // Basic post-processing: trim and ensure proper formatting
-        String processed = response.trim();
+        long start = System.nanoTime();
+        String processed = BuddyTextStages.postprocess(response);
+        BuddyMetrics.recordStage("postprocess", System.nanoTime() - start);
 
-        // Add any additional post-processing logic here
+        // Add any additional post-processing logic in BuddyTextStages
         // For example: content filtering, response formatting, etc.
         logger.info("Response post-processed successfully");
         return processed;
@@ -11,12 +11,21 @@ import io.temporal.activity.ActivityMethod;
 public interface BuddyActivitiesInterface {
     
     /**
-     * Preprocess user input (cleaning, normalization, etc.)
+     * Preprocessed user input
+     * @param text Cleaned input
+     * @param tags Intents and keywords found in it, or null if it has only been cleaned, in which
+     *             case generateResponse analyzes it (and redacts configured terms)
+     */
+    record PreprocessedInput(String text, InputAnalyzer.Tags tags) {
+    }
+    
+    /**
+     * Preprocess user input (cleaning, redaction, intent tagging)
      * @param input Raw user input
-     * @return Preprocessed input
+     * @return Preprocessed input and its tags
      */
     @ActivityMethod
-    String preprocessInput(String input);
+    PreprocessedInput preprocessInput(String input);
     
     /**
      * Generate AI response using LangChain4j
@@ -24,7 +33,7 @@ public interface BuddyActivitiesInterface {
      * @return AI generated response
      */
     @ActivityMethod
-    String generateResponse(String input);
+    String generateResponse(PreprocessedInput input);
     
     /**
      * Post-process the AI response (formatting, filtering, etc.)
@@ -1,15 +1,28 @@
 package com.jase;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.uber.m3.tally.Scope;
+
 import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowClientOptions;
 import io.temporal.client.WorkflowOptions;
+import io.temporal.client.WorkflowStub;
+import io.temporal.client.WorkflowUpdateStage;
 import io.temporal.serviceclient.WorkflowServiceStubs;
+import io.temporal.serviceclient.WorkflowServiceStubsOptions;
 import io.temporal.worker.Worker;
 import io.temporal.worker.WorkerFactory;
+import io.temporal.worker.WorkerOptions;
 
 /**
  * Main application class for Buddy AI Agent
@@ -19,6 +32,9 @@ public class BuddyApplication {
     
     private static final Logger logger = LoggerFactory.getLogger(BuddyApplication.class);
     private static final String TASK_QUEUE = "buddy-task-queue";
+    // Until the first text arrives, streamed turns are polled up to this many flush intervals apart
+    private static final int STREAM_POLL_MAX_BACKOFF = 4;
+    private static final int METRICS_REPORT_INTERVAL_SECONDS = 10;
     
     public static void main(String[] args) {
         // Configure Logback programmatically
@@ -26,34 +42,129 @@ public class BuddyApplication {
         
         logger.info("Starting Buddy AI Agent...");
         
+        // Metrics for Buddy and the Temporal SDK, scraped from a local endpoint
+        Scope metricsScope = BuddyMetrics.newTemporalScope(METRICS_REPORT_INTERVAL_SECONDS);
+        MetricsEndpoint metricsEndpoint = MetricsEndpoint.fromEnv(BuddyMetrics.getRegistry());
+        
         // Create Temporal client
-        WorkflowServiceStubs service = WorkflowServiceStubs.newLocalServiceStubs();
-        WorkflowClient client = WorkflowClient.newInstance(service);
+        WorkflowServiceStubs service = WorkflowServiceStubs.newServiceStubs(
+                WorkflowServiceStubsOptions.newBuilder()
+                        .setMetricsScope(metricsScope)
+                        .build());
+        // Large payloads are compressed or offloaded to blobs when BUDDY_PAYLOAD_CODEC is on
+        BuddyPayloadCodec payloadCodec = BuddyPayloadCodec.fromEnv();
+        WorkflowClient client = WorkflowClient.newInstance(service, WorkflowClientOptions.newBuilder()
+                .setDataConverter(BuddyPayloadCodec.dataConverter(payloadCodec))
+                .build());
         
         // Create worker factory
         WorkerFactory factory = WorkerFactory.newInstance(client);
         
         // Create worker
-        Worker worker = factory.newWorker(TASK_QUEUE);
+        BuddyWorkerConfig workerConfig = BuddyWorkerConfig.fromEnv();
+        logger.info("Worker concurrency: {}", workerConfig);
+        WorkerOptions workerOptions = workerConfig.toWorkerOptions();
+        if (BuddyEnv.getBoolean("BUDDY_STREAMING", false)) {
+            // Streamed text reaches the CLI through heartbeats, which are otherwise sent every 30 s
+            workerOptions = WorkerOptions.newBuilder(workerOptions)
+                    .setDefaultHeartbeatThrottleInterval(streamFlushInterval())
+                    .build();
+        }
+        Worker worker = factory.newWorker(TASK_QUEUE, workerOptions);
         
         // Register workflow and activities
-        worker.registerWorkflowImplementationTypes(BuddyWorkflowImpl.class);
-        worker.registerActivitiesImplementations(new BuddyActivities());
+        StageExecutionMode stageMode = StageExecutionMode.fromEnv();
+        logger.info("Running preprocess/postprocess stages as {}", stageMode);
+        worker.registerWorkflowImplementationFactory(BuddyWorkflow.class,
+                () -> new BuddyWorkflowImpl(stageMode));
+        // With BUDDY_SESSION_AFFINITY, a conversation's turns stay on the worker holding its memory
+        Duration affinityTimeout = SessionAffinity.timeoutFromEnv();
+        worker.registerWorkflowImplementationFactory(BuddySessionWorkflow.class,
+                () -> new BuddySessionWorkflowImpl(stageMode, affinityTimeout));
+        BuddyActivities activities = new BuddyActivities();
+        worker.registerActivitiesImplementations(activities);
+        if (affinityTimeout != null) {
+            String workerTaskQueue = SessionAffinity.register(factory, worker, client.getOptions().getIdentity(),
+                    workerOptions, activities);
+            logger.info("Session affinity enabled, worker task queue {}", workerTaskQueue);
+        }
         
         // Start worker
         factory.start();
         logger.info("Buddy AI Agent worker started successfully!");
+        logReady();
         
-        // Start interactive session
-        startInteractiveSession(client);
+        // Serve turns over HTTP when BUDDY_GATEWAY_PORT is set, otherwise start an interactive session
+        BuddyGateway gateway = BuddyGateway.fromEnv(client, TASK_QUEUE);
+        CountDownLatch shutdownComplete = new CountDownLatch(1);
+        if (gateway != null) {
+            awaitTermination(shutdownComplete);
+            gateway.close();
+        } else {
+            startInteractiveSession(client);
+        }
         
         // Shutdown
         factory.shutdown();
+        factory.awaitTermination(10, TimeUnit.SECONDS);
+        activities.close();
         service.shutdown();
+        BuddyMetrics.closeTemporalScope(metricsScope);
+        if (payloadCodec != null) {
+            payloadCodec.logStats();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+        }
         logger.info("Buddy AI Agent shutdown complete.");
+        LogbackConfig.shutdown();
+        shutdownComplete.countDown();
+    }
+    
+    /**
+     * Block until the JVM is asked to exit, then hold the exit until {@code shutdownComplete}
+     * so the worker and the gateway can drain
+     */
+    private static void awaitTermination(CountDownLatch shutdownComplete) {
+        CountDownLatch exitRequested = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            exitRequested.countDown();
+            try {
+                shutdownComplete.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "buddy-shutdown"));
+        try {
+            exitRequested.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Log and record the time from JVM start until the worker polls for tasks
+     */
+    static void logReady() {
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        BuddyMetrics.recordStartup("ready", TimeUnit.MILLISECONDS.toNanos(uptimeMillis));
+        logger.info("Worker ready {} ms after JVM start, {} classes loaded", uptimeMillis,
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
     }
     
     private static void startInteractiveSession(WorkflowClient client) {
+        // One session workflow serves the whole conversation; each turn is an update
+        BuddySessionWorkflow session = client.newWorkflowStub(
+                BuddySessionWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(TASK_QUEUE)
+                        .setWorkflowId("buddy-session-" + System.currentTimeMillis())
+                        .build()
+        );
+        WorkflowClient.start(session::runSession, new BuddySessionState());
+        boolean streaming = BuddyEnv.getBoolean("BUDDY_STREAMING", false);
+        long streamFlushMillis = streamFlushInterval().toMillis();
+        
         try (Scanner scanner = new Scanner(System.in)) {
             System.out.println("\n=== Welcome to Buddy AI Agent ===");
             System.out.println("Type 'help' for available commands or 'exit' to quit");
@@ -76,24 +187,79 @@ public class BuddyApplication {
                 }
                 
                 try {
-                    // Create and start workflow
-                    BuddyWorkflow workflow = client.newWorkflowStub(
-                            BuddyWorkflow.class,
-                            WorkflowOptions.newBuilder()
-                                    .setTaskQueue(TASK_QUEUE)
-                                    .setWorkflowId("buddy-workflow-" + System.currentTimeMillis())
-                                    .build()
-                    );
-                    
-                    // Execute the workflow
-                    String response = workflow.processUserInput(input);
-                    System.out.println("Buddy: " + response);
+                    // Send the turn to the running session
+                    if (streaming) {
+                        streamTurn(client, session, input, streamFlushMillis);
+                    } else {
+                        String response = session.chat(input);
+                        System.out.println("Buddy: " + response);
+                    }
                     
                 } catch (Exception e) {
                     logger.error("Error processing user input", e);
                     System.out.println("Sorry, I encountered an error processing your request: " + e.getMessage());
                 }
             }
+        } finally {
+            try {
+                session.endSession();
+            } catch (Exception e) {
+                logger.warn("Failed to end session workflow", e);
+            }
+        }
+    }
+    
+    /**
+     * Interval at which the generate activity flushes streamed text, also its heartbeat throttle
+     */
+    private static Duration streamFlushInterval() {
+        return Duration.ofMillis(Math.max(1, BuddyEnv.getLong("BUDDY_STREAM_FLUSH_MS", 250)));
+    }
+    
+    /**
+     * Send a turn without blocking on it and print streamed text as it arrives
+     * The text is read from the heartbeats of the turn's generateResponse activity, which carry
+     * new text at most once per flush interval, so the workflow is described no more often.
+     * While no text has arrived yet, e.g. during a slow first token, the polls back off.
+     */
+    private static void streamTurn(WorkflowClient client, BuddySessionWorkflow session, String input,
+            long flushMillis) throws Exception {
+        long start = System.nanoTime();
+        WorkflowStub stub = WorkflowStub.fromTyped(session);
+        CompletableFuture<String> result = stub
+                .startUpdate("chat", WorkflowUpdateStage.ACCEPTED, String.class, input)
+                .getResultAsync();
+        
+        System.out.print("Buddy: ");
+        String printed = "";
+        long pollMillis = flushMillis;
+        while (!result.isDone()) {
+            String partial = StreamingResponseBuffer.streamedText(stub, client.getOptions().getDataConverter());
+            if (partial != null && partial.length() > printed.length() && partial.startsWith(printed)) {
+                if (printed.isEmpty()) {
+                    logger.debug("Client time to first token: {} ms",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                System.out.print(partial.substring(printed.length()));
+                System.out.flush();
+                printed = partial;
+                pollMillis = flushMillis;
+            } else if (printed.isEmpty()) {
+                pollMillis = Math.min(pollMillis * 2, flushMillis * STREAM_POLL_MAX_BACKOFF);
+            }
+            try {
+                result.get(pollMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still generating; poll again
+            }
+        }
+        
+        // Print whatever was not streamed yet
+        String response = result.get();
+        if (response.startsWith(printed)) {
+            System.out.println(response.substring(printed.length()));
+        } else {
+            System.out.println();
         }
     }
     
@@ -0,0 +1,77 @@
+package com.jase;
+
+import java.util.List;
+
+import io.temporal.activity.ActivityInterface;
+import io.temporal.activity.ActivityMethod;
+
+/**
+ * Activities of {@link BuddyBatchWorkflow}: prompt and result files on the worker, and one
+ * activity per prompt that runs the whole turn pipeline in an isolated conversation
+ */
+@ActivityInterface
+public interface BuddyBatchActivities {
+    
+    /**
+     * Result of one prompt, written as one line of the output file
+     * @param error Failure message if the prompt could not be processed, otherwise null
+     */
+    record ItemResult(int index, String input, String output, long latencyMillis, String error) {
+        
+        static ItemResult failed(int index, String input, String error) {
+            return new ItemResult(index, input, null, 0, error);
+        }
+    }
+    
+    /**
+     * Prompts read from the input file
+     * @param nextPosition Byte position after the last of them, where the next chunk is read
+     */
+    record Items(List<String> prompts, long nextPosition) {
+    }
+    
+    /**
+     * Results written to the output file so far
+     * @param results Number of complete result lines
+     * @param bytes   Length of those lines, where the next chunk is appended
+     */
+    record Checkpoint(int results, long bytes) {
+    }
+    
+    /**
+     * @return Number of prompts in the input file
+     */
+    @ActivityMethod
+    int countItems(String inputPath);
+    
+    /**
+     * @return Results already written to the output file, none if it doesn't exist
+     */
+    @ActivityMethod
+    Checkpoint findCheckpoint(String outputPath);
+    
+    /**
+     * Read prompts from the byte position where the previous chunk ended, so the input is
+     * read only once however many chunks it has
+     * @param skip Prompts to skip first, the results already written when a batch resumes
+     * @return Up to limit prompts
+     */
+    @ActivityMethod
+    Items readItems(String inputPath, long position, int skip, int limit);
+    
+    /**
+     * Preprocess, generate and postprocess one prompt
+     * @param batchId Identifies the batch; each prompt gets a conversation of its own
+     */
+    @ActivityMethod
+    ItemResult processItem(String batchId, int index, String prompt);
+    
+    /**
+     * Write the results of prompts offset, offset + 1, ... to the output file at the byte
+     * position of the previous checkpoint. Idempotent: results that were already written are
+     * kept, partially written ones are replaced.
+     * @return Byte position after the results, the position of the next chunk
+     */
+    @ActivityMethod
+    long writeResults(String outputPath, int offset, long position, List<ItemResult> results);
+}
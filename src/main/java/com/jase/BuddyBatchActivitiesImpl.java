@@ -0,0 +1,196 @@
+package com.jase;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Batch activities backed by local files and {@link BuddyActivities}
+ * The output file holds one JSON result per line. Only complete lines count as written, so a
+ * worker that crashed halfway through a chunk leaves nothing behind that a retry can't repair.
+ * Each chunk is written at the byte position of the previous checkpoint, so the file is scanned
+ * in full only when a batch starts. Prompts are likewise read from where the previous chunk ended.
+ */
+public class BuddyBatchActivitiesImpl implements BuddyBatchActivities {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyBatchActivitiesImpl.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private final BuddyActivities activities;
+    
+    public BuddyBatchActivitiesImpl(BuddyActivities activities) {
+        this.activities = activities;
+    }
+    
+    @Override
+    public int countItems(String inputPath) {
+        try (Stream<String> prompts = prompts(inputPath)) {
+            return Math.toIntExact(prompts.count());
+        }
+    }
+    
+    @Override
+    public Checkpoint findCheckpoint(String outputPath) {
+        Path output = Path.of(outputPath);
+        if (!Files.exists(output)) {
+            return new Checkpoint(0, 0);
+        }
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ)) {
+            long[] lines = scanLines(channel, 0, Integer.MAX_VALUE);
+            return new Checkpoint(Math.toIntExact(lines[0]), lines[1]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read batch output " + outputPath, e);
+        }
+    }
+    
+    @Override
+    public Items readItems(String inputPath, long position, int skip, int limit) {
+        List<String> prompts = new ArrayList<>(limit);
+        long next = position;
+        int skipped = 0;
+        try (InputStream in = new BufferedInputStream(Channels.newInputStream(
+                FileChannel.open(Path.of(inputPath), StandardOpenOption.READ).position(position)))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            while (prompts.size() < limit) {
+                int b = in.read();
+                if (b == -1 && line.size() == 0) {
+                    break;
+                }
+                if (b != -1 && b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                next += line.size() + (b == -1 ? 0 : 1);
+                String prompt = line.toString(StandardCharsets.UTF_8).trim();
+                line.reset();
+                if (isPrompt(prompt) && skipped++ >= skip) {
+                    prompts.add(prompt);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read batch input " + inputPath, e);
+        }
+        return new Items(prompts, next);
+    }
+    
+    @Override
+    public ItemResult processItem(String batchId, int index, String prompt) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            BuddyActivitiesInterface.PreprocessedInput input = activities.preprocessInput(prompt);
+            String response = activities.generateIsolatedResponse(batchId + "#" + index, input);
+            String output = activities.postprocessResponse(response);
+            success = true;
+            return new ItemResult(index, prompt, output, (System.nanoTime() - start) / 1_000_000, null);
+        } finally {
+            BuddyMetrics.recordBatchItem(System.nanoTime() - start, success);
+        }
+    }
+    
+    @Override
+    public long writeResults(String outputPath, int offset, long position, List<ItemResult> results) {
+        Path output = Path.of(outputPath);
+        try {
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            long end;
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // Only the tail after the checkpoint is read; the results before it were validated when written
+                if (channel.size() < position || (position > 0 && byteAt(channel, position - 1) != '\n')) {
+                    throw new IllegalStateException(String.format(
+                            "%s has no checkpoint for result %d at byte %d", outputPath, offset, position));
+                }
+                long[] tail = scanLines(channel, position, results.size());
+                if (tail[0] == results.size()) {
+                    // A retry of a write that already succeeded
+                    return tail[1];
+                }
+                // Drop anything after the checkpoint, e.g. a half-written chunk
+                channel.truncate(position);
+                
+                StringBuilder lines = new StringBuilder();
+                for (ItemResult result : results) {
+                    lines.append(MAPPER.writeValueAsString(result)).append('\n');
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                end = position + buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, end - buffer.remaining());
+                }
+                channel.force(false);
+            }
+            logger.info("Wrote results {} to {} to {}", offset, offset + results.size() - 1, outputPath);
+            return end;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize batch results", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write batch results to " + outputPath, e);
+        }
+    }
+    
+    /**
+     * Prompts of an input file: trimmed lines, without blank lines and '#' comments
+     */
+    private static Stream<String> prompts(String inputPath) {
+        try {
+            return Files.lines(Path.of(inputPath))
+                    .map(String::trim)
+                    .filter(BuddyBatchActivitiesImpl::isPrompt);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read batch input " + inputPath, e);
+        }
+    }
+    
+    private static boolean isPrompt(String line) {
+        return !line.isEmpty() && !line.startsWith("#");
+    }
+    
+    /**
+     * Count complete lines from a byte position on, stopping after maxLines
+     * @return The number of lines counted and the byte position after the last of them
+     */
+    private static long[] scanLines(FileChannel channel, long from, int maxLines) throws IOException {
+        long lines = 0;
+        long position = from;
+        long end = from;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (lines < maxLines && channel.read(buffer.clear(), position) > 0) {
+            buffer.flip();
+            while (lines < maxLines && buffer.hasRemaining()) {
+                position++;
+                if (buffer.get() == '\n') {
+                    lines++;
+                    end = position;
+                }
+            }
+        }
+        return new long[] {lines, end};
+    }
+    
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, position);
+        return buffer.get(0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.jase;
+
+import java.util.List;
+
+/**
+ * A batch of prompts for {@link BuddyBatchWorkflow} and its progress, carried across
+ * continue-as-new runs. Prompts come from an input file on the worker (one per line, blank
+ * lines and lines starting with '#' ignored) or from an inline list for small batches.
+ */
+public class BuddyBatchJob {
+    
+    private String inputPath;
+    private List<String> prompts;
+    private String outputPath;
+    private String filesTaskQueue;
+    private int parallelism = 16;
+    private int chunkSize = 200;
+    
+    // Progress; totalItems is -1 until the input has been counted
+    private int totalItems = -1;
+    private int nextItem;
+    private long inputBytes;
+    private long outputBytes;
+    private int resumedFrom;
+    private int failedItems;
+    private long totalLatencyMillis;
+    private long maxLatencyMillis;
+    private long startedAtMillis;
+    
+    public BuddyBatchJob() {
+    }
+    
+    /**
+     * @param inputPath   Prompt file, read by the worker
+     * @param outputPath  JSON lines file the results are written to in input order
+     * @param parallelism Maximum number of prompts processed at once
+     */
+    public BuddyBatchJob(String inputPath, String outputPath, int parallelism) {
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * A batch of prompts passed inline instead of through an input file
+     */
+    public static BuddyBatchJob ofPrompts(List<String> prompts, String outputPath, int parallelism) {
+        BuddyBatchJob job = new BuddyBatchJob(null, outputPath, parallelism);
+        job.setPrompts(prompts);
+        return job;
+    }
+    
+    public String getInputPath() {
+        return inputPath;
+    }
+    
+    public void setInputPath(String inputPath) {
+        this.inputPath = inputPath;
+    }
+    
+    public List<String> getPrompts() {
+        return prompts;
+    }
+    
+    public void setPrompts(List<String> prompts) {
+        this.prompts = prompts;
+    }
+    
+    public String getOutputPath() {
+        return outputPath;
+    }
+    
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+    
+    /**
+     * @return Task queue of the worker that holds the input and output files, or null for the
+     *         workflow's own task queue when it has a single worker
+     */
+    public String getFilesTaskQueue() {
+        return filesTaskQueue;
+    }
+    
+    public void setFilesTaskQueue(String filesTaskQueue) {
+        this.filesTaskQueue = filesTaskQueue;
+    }
+    
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * @return Prompts read, processed and written per checkpoint
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public int getTotalItems() {
+        return totalItems;
+    }
+    
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+    
+    /**
+     * @return Index of the first prompt whose result has not been written yet
+     */
+    public int getNextItem() {
+        return nextItem;
+    }
+    
+    public void setNextItem(int nextItem) {
+        this.nextItem = nextItem;
+    }
+    
+    /**
+     * @return Byte position in the input file after the prompts read so far, where the next chunk is read
+     */
+    public long getInputBytes() {
+        return inputBytes;
+    }
+    
+    public void setInputBytes(long inputBytes) {
+        this.inputBytes = inputBytes;
+    }
+    
+    /**
+     * @return Length in bytes of the results written so far, where the next chunk is written
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+    
+    public void setOutputBytes(long outputBytes) {
+        this.outputBytes = outputBytes;
+    }
+    
+    /**
+     * @return Results already in the output file when the batch started
+     */
+    public int getResumedFrom() {
+        return resumedFrom;
+    }
+    
+    public void setResumedFrom(int resumedFrom) {
+        this.resumedFrom = resumedFrom;
+    }
+    
+    public int getFailedItems() {
+        return failedItems;
+    }
+    
+    public void setFailedItems(int failedItems) {
+        this.failedItems = failedItems;
+    }
+    
+    public long getTotalLatencyMillis() {
+        return totalLatencyMillis;
+    }
+    
+    public void setTotalLatencyMillis(long totalLatencyMillis) {
+        this.totalLatencyMillis = totalLatencyMillis;
+    }
+    
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+    
+    public void setMaxLatencyMillis(long maxLatencyMillis) {
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+    
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+    
+    public void setStartedAtMillis(long startedAtMillis) {
+        this.startedAtMillis = startedAtMillis;
+    }
+}
@@ -0,0 +1,157 @@
+package com.jase;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.m3.tally.Scope;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowClientOptions;
+import io.temporal.client.WorkflowExecutionAlreadyStarted;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.client.WorkflowStub;
+import io.temporal.serviceclient.WorkflowServiceStubs;
+import io.temporal.serviceclient.WorkflowServiceStubsOptions;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerFactory;
+
+/**
+ * Runs a prompt file through {@link BuddyBatchWorkflow} on the local Temporal dev server,
+ * with its own worker, and prints throughput and per-prompt latency percentiles.
+ * The workflow id is derived from the input file, so running the same batch again after a
+ * crash attaches to the running workflow, or resumes after the results already written.
+ */
+public class BuddyBatchRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyBatchRunner.class);
+    static final String TASK_QUEUE = "buddy-batch-task-queue";
+    private static final int METRICS_REPORT_INTERVAL_SECONDS = 10;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    public static void main(String[] args) {
+        LogbackConfig.configure();
+        
+        String input = BuddyEnv.getString("BUDDY_BATCH_INPUT", args.length > 0 ? args[0] : null);
+        if (input == null) {
+            System.err.println("Set BUDDY_BATCH_INPUT or pass the prompt file as the first argument");
+            System.exit(2);
+        }
+        String output = BuddyEnv.getString("BUDDY_BATCH_OUTPUT", input + ".results.jsonl");
+        BuddyBatchJob job = new BuddyBatchJob(Path.of(input).toAbsolutePath().toString(),
+                Path.of(output).toAbsolutePath().toString(), BuddyEnv.getInt("BUDDY_BATCH_PARALLELISM", 16));
+        job.setChunkSize(BuddyEnv.getInt("BUDDY_BATCH_CHUNK_SIZE", 200));
+        String workflowId = BuddyEnv.getString("BUDDY_BATCH_ID",
+                "buddy-batch-" + Path.of(input).getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_"));
+        
+        Scope metricsScope = BuddyMetrics.newTemporalScope(METRICS_REPORT_INTERVAL_SECONDS);
+        MetricsEndpoint metricsEndpoint = MetricsEndpoint.fromEnv(BuddyMetrics.getRegistry());
+        WorkflowServiceStubs service = WorkflowServiceStubs.newServiceStubs(
+                WorkflowServiceStubsOptions.newBuilder()
+                        .setMetricsScope(metricsScope)
+                        .build());
+        // Large payloads are compressed or offloaded to blobs when BUDDY_PAYLOAD_CODEC is on
+        BuddyPayloadCodec payloadCodec = BuddyPayloadCodec.fromEnv();
+        WorkflowClient client = WorkflowClient.newInstance(service, WorkflowClientOptions.newBuilder()
+                .setDataConverter(BuddyPayloadCodec.dataConverter(payloadCodec))
+                .build());
+        WorkerFactory factory = WorkerFactory.newInstance(client);
+        Worker worker = factory.newWorker(TASK_QUEUE, BuddyWorkerConfig.fromEnv().toWorkerOptions());
+        worker.registerWorkflowImplementationTypes(BuddyBatchWorkflowImpl.class);
+        BuddyActivities activities = new BuddyActivities();
+        BuddyBatchActivitiesImpl batchActivities = new BuddyBatchActivitiesImpl(activities);
+        worker.registerActivitiesImplementations(batchActivities);
+        // Prompts may be processed by other workers of the task queue; the files stay on this host,
+        // which a rerun of the same batch (the same workflow id) finds again under the same queue
+        Worker files = factory.newWorker(filesTaskQueue(), BuddyWorkerConfig.fromEnv().toWorkerOptions());
+        files.registerActivitiesImplementations(batchActivities);
+        job.setFilesTaskQueue(files.getTaskQueue());
+        factory.start();
+        
+        BuddyBatchWorkflow batch = client.newWorkflowStub(BuddyBatchWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(TASK_QUEUE)
+                        .setWorkflowId(workflowId)
+                        .build());
+        try {
+            WorkflowClient.start(batch::runBatch, job);
+            logger.info("Started batch {} for {}", workflowId, input);
+        } catch (WorkflowExecutionAlreadyStarted e) {
+            logger.info("Batch {} is already running, waiting for it", workflowId);
+        }
+        BuddyBatchWorkflow.Report report = WorkflowStub.fromTyped(batch).getResult(BuddyBatchWorkflow.Report.class);
+        print(report, readLatencies(Path.of(output)), System.out);
+        System.out.println("Results: " + output);
+        
+        factory.shutdown();
+        factory.awaitTermination(10, TimeUnit.SECONDS);
+        activities.close();
+        service.shutdown();
+        BuddyMetrics.closeTemporalScope(metricsScope);
+        if (payloadCodec != null) {
+            payloadCodec.logStats();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+        }
+        LogbackConfig.shutdown();
+    }
+    
+    /**
+     * @return Task queue of the batch files on this host
+     */
+    static String filesTaskQueue() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return TASK_QUEUE + "@" + BuddyEnv.getString("BUDDY_BATCH_HOST", host);
+    }
+    
+    /**
+     * @return Latencies in milliseconds of the successful results in an output file
+     */
+    static Histogram readLatencies(Path output) {
+        Histogram latencies = new Histogram(3);
+        try (Stream<String> lines = Files.lines(output)) {
+            lines.forEach(line -> {
+                try {
+                    JsonNode result = MAPPER.readTree(line);
+                    if (result.path("error").isNull()) {
+                        latencies.recordValue(result.path("latencyMillis").asLong());
+                    }
+                } catch (JsonProcessingException e) {
+                    logger.warn("Skipping malformed result line in {}", output);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read batch results " + output, e);
+        }
+        return latencies;
+    }
+    
+    static void print(BuddyBatchWorkflow.Report report, Histogram latencies, PrintStream out) {
+        out.printf("%nBuddy batch: %d prompts, %d processed in this run, %d failed, %.1f s, %.1f prompts/s%n",
+                report.totalItems(), report.processedItems(), report.failedItems(),
+                report.elapsedMillis() / 1000.0, report.itemsPerSecond());
+        out.printf("%-20s %8s %10s %10s %10s %10s%n", "latency (ms)", "count", "p50", "p95", "p99", "max");
+        out.printf("%-20s %8d %10d %10d %10d %10d%n", "prompt", latencies.getTotalCount(),
+                latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(95),
+                latencies.getValueAtPercentile(99), latencies.getMaxValue());
+    }
+}
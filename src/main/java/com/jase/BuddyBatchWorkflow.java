@@ -0,0 +1,43 @@
+package com.jase;
+
+import io.temporal.workflow.QueryMethod;
+import io.temporal.workflow.WorkflowInterface;
+import io.temporal.workflow.WorkflowMethod;
+
+/**
+ * Temporal workflow that runs a batch of prompts, e.g. an evaluation set or bulk
+ * summarization, with bounded parallelism and checkpointed, in-order output
+ */
+@WorkflowInterface
+public interface BuddyBatchWorkflow {
+    
+    /**
+     * Summary of a batch run; prompts resumed from an earlier run are not counted
+     */
+    record Report(int totalItems, int processedItems, int failedItems, long elapsedMillis,
+            long totalLatencyMillis, long maxLatencyMillis) {
+        
+        public double itemsPerSecond() {
+            return elapsedMillis > 0 ? processedItems * 1000.0 / elapsedMillis : 0;
+        }
+        
+        public double meanLatencyMillis() {
+            int succeeded = processedItems - failedItems;
+            return succeeded > 0 ? (double) totalLatencyMillis / succeeded : 0;
+        }
+    }
+    
+    /**
+     * Process every prompt of the job and write the results in input order
+     * @param job The batch; results already in its output file are skipped
+     * @return Throughput and latency of the run
+     */
+    @WorkflowMethod
+    Report runBatch(BuddyBatchJob job);
+    
+    /**
+     * @return The job with its current progress
+     */
+    @QueryMethod
+    BuddyBatchJob getProgress();
+}
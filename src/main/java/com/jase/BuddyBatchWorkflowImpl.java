@@ -0,0 +1,166 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+import io.temporal.activity.ActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
+import io.temporal.workflow.Workflow;
+
+/**
+ * Temporal workflow implementation for batches of prompts
+ * Prompts are processed chunk by chunk. Within a chunk up to the job's parallelism prompts
+ * run at once as activities; the chunk's results are then written in order, which is the
+ * checkpoint. The workflow continues as new between chunks once its history grows large.
+ * Prompts can be processed by any worker of the task queue, but the files are read and written
+ * on one worker only, the one whose task queue the job names.
+ */
+public class BuddyBatchWorkflowImpl implements BuddyBatchWorkflow {
+    
+    private static final Logger logger = Workflow.getLogger(BuddyBatchWorkflowImpl.class);
+    
+    // Checked between chunks, so it stays well below the server's history limits
+    static final long MAX_HISTORY_LENGTH = 10_000;
+    
+    // Same timeouts and retries as the activities of a conversation turn
+    private final BuddyBatchActivities items = Workflow.newActivityStub(BuddyBatchActivities.class,
+            ActivityOptions.newBuilder()
+                    .setStartToCloseTimeout(Duration.ofMinutes(2))
+                    .setRetryOptions(RetryOptions.newBuilder()
+                            .setInitialInterval(Duration.ofSeconds(1))
+                            .setMaximumInterval(Duration.ofSeconds(10))
+                            .setMaximumAttempts(3)
+                            .build())
+                    .build());
+    
+    private BuddyBatchActivities files;
+    private BuddyBatchJob job;
+    
+    @Override
+    public Report runBatch(BuddyBatchJob job) {
+        this.job = job;
+        this.files = files(job.getFilesTaskQueue());
+        if (job.getTotalItems() < 0) {
+            job.setTotalItems(job.getPrompts() != null
+                    ? job.getPrompts().size()
+                    : files.countItems(job.getInputPath()));
+            // Pick up after the results written by an earlier run of the same batch
+            BuddyBatchActivities.Checkpoint checkpoint = files.findCheckpoint(job.getOutputPath());
+            int written = Math.min(checkpoint.results(), job.getTotalItems());
+            job.setNextItem(written);
+            job.setOutputBytes(checkpoint.bytes());
+            job.setResumedFrom(written);
+            job.setStartedAtMillis(Workflow.currentTimeMillis());
+            logger.info("Batch of {} prompts started at prompt {}", job.getTotalItems(), written);
+        }
+        
+        String batchId = Workflow.getInfo().getWorkflowId();
+        while (job.getNextItem() < job.getTotalItems()) {
+            if (shouldContinueAsNew()) {
+                logger.info("Continuing batch as new at prompt {}", job.getNextItem());
+                Workflow.continueAsNew(job);
+            }
+            
+            int offset = job.getNextItem();
+            int limit = Math.min(Math.max(1, job.getChunkSize()), job.getTotalItems() - offset);
+            List<String> prompts;
+            if (job.getPrompts() != null) {
+                prompts = List.copyOf(job.getPrompts().subList(offset, offset + limit));
+            } else {
+                // Nothing read yet: skip the prompts whose results an earlier run wrote
+                int skip = job.getInputBytes() == 0 ? offset : 0;
+                BuddyBatchActivities.Items items = files.readItems(job.getInputPath(), job.getInputBytes(), skip, limit);
+                prompts = items.prompts();
+                job.setInputBytes(items.nextPosition());
+            }
+            
+            List<BuddyBatchActivities.ItemResult> results = processChunk(batchId, offset, prompts);
+            job.setOutputBytes(files.writeResults(job.getOutputPath(), offset, job.getOutputBytes(), results));
+            for (BuddyBatchActivities.ItemResult result : results) {
+                if (result.error() != null) {
+                    job.setFailedItems(job.getFailedItems() + 1);
+                } else {
+                    job.setTotalLatencyMillis(job.getTotalLatencyMillis() + result.latencyMillis());
+                    job.setMaxLatencyMillis(Math.max(job.getMaxLatencyMillis(), result.latencyMillis()));
+                }
+            }
+            job.setNextItem(offset + results.size());
+            logger.info("Batch progress: {} of {} prompts", job.getNextItem(), job.getTotalItems());
+        }
+        
+        Report report = new Report(job.getTotalItems(), job.getTotalItems() - job.getResumedFrom(),
+                job.getFailedItems(), Workflow.currentTimeMillis() - job.getStartedAtMillis(),
+                job.getTotalLatencyMillis(), job.getMaxLatencyMillis());
+        logger.info("Batch finished: {} prompts, {} failed", report.processedItems(), report.failedItems());
+        return report;
+    }
+    
+    @Override
+    public BuddyBatchJob getProgress() {
+        return job;
+    }
+    
+    /**
+     * File activities, on the worker that holds the files when there is more than one
+     * File access only fails if the worker's disk does, so it keeps retrying for a while.
+     */
+    private static BuddyBatchActivities files(String taskQueue) {
+        ActivityOptions.Builder options = ActivityOptions.newBuilder()
+                .setStartToCloseTimeout(Duration.ofMinutes(1))
+                .setRetryOptions(RetryOptions.newBuilder()
+                        .setInitialInterval(Duration.ofSeconds(1))
+                        .setMaximumInterval(Duration.ofSeconds(30))
+                        .setMaximumAttempts(10)
+                        .build());
+        if (taskQueue != null) {
+            options.setTaskQueue(taskQueue);
+        }
+        return Workflow.newActivityStub(BuddyBatchActivities.class, options.build());
+    }
+    
+    /**
+     * Process a chunk with at most the job's parallelism prompts in flight
+     * @return Results in prompt order; prompts that failed every attempt get an error result
+     */
+    private List<BuddyBatchActivities.ItemResult> processChunk(String batchId, int offset, List<String> prompts) {
+        int parallelism = Math.max(1, job.getParallelism());
+        List<Promise<BuddyBatchActivities.ItemResult>> results = new ArrayList<>(prompts.size());
+        List<Promise<BuddyBatchActivities.ItemResult>> inFlight = new ArrayList<>(parallelism);
+        for (int i = 0; i < prompts.size(); i++) {
+            if (inFlight.size() >= parallelism) {
+                Promise.anyOf(inFlight).get();
+                inFlight.removeIf(Promise::isCompleted);
+            }
+            int index = offset + i;
+            String prompt = prompts.get(i);
+            Promise<BuddyBatchActivities.ItemResult> result = Async.function(items::processItem, batchId, index, prompt)
+                    .handle((value, failure) -> failure == null
+                            ? value
+                            : BuddyBatchActivities.ItemResult.failed(index, prompt, failureMessage(failure)));
+            results.add(result);
+            inFlight.add(result);
+        }
+        
+        List<BuddyBatchActivities.ItemResult> values = new ArrayList<>(results.size());
+        for (Promise<BuddyBatchActivities.ItemResult> result : results) {
+            values.add(result.get());
+        }
+        return values;
+    }
+    
+    // Activity failures wrap the exception thrown by the activity
+    private static String failureMessage(RuntimeException failure) {
+        Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+        return cause.getMessage();
+    }
+    
+    private boolean shouldContinueAsNew() {
+        return Workflow.getInfo().isContinueAsNewSuggested()
+                || Workflow.getInfo().getHistoryLength() >= MAX_HISTORY_LENGTH;
+    }
+}
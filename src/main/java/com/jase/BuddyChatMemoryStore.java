@@ -0,0 +1,178 @@
+package com.jase;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+/**
+ * Chat memory store keyed by conversation id
+ * Hot conversations are kept in a size-bounded LRU cache; every update is also
+ * appended to an on-disk {@link SegmentStore} so conversations evicted from the
+ * cache, or from before a restart, can be reloaded quickly. Deleted conversations leave a
+ * tombstone that compaction drops, and conversations idle for longer than the TTL are deleted.
+ */
+public final class BuddyChatMemoryStore implements ChatMemoryStore, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyChatMemoryStore.class);
+    
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    
+    private final Map<String, List<ChatMessage>> hotSessions;
+    private final SegmentStore coldStore;
+    private final Duration idleTtl;
+    private final ScheduledExecutorService expiry;
+    
+    private final AtomicLong hotHits = new AtomicLong();
+    private final AtomicLong coldLoads = new AtomicLong();
+    
+    /**
+     * @param directory Directory for the on-disk segment store
+     * @param maxHotSessions Maximum number of conversations kept on the heap
+     */
+    public BuddyChatMemoryStore(Path directory, int maxHotSessions) {
+        this(directory, maxHotSessions, Duration.ZERO);
+    }
+    
+    /**
+     * @param idleTtl Conversations not updated for this long are deleted; zero keeps them forever
+     */
+    public BuddyChatMemoryStore(Path directory, int maxHotSessions, Duration idleTtl) {
+        this.coldStore = new SegmentStore(directory, MAX_SEGMENT_BYTES);
+        this.idleTtl = idleTtl;
+        this.hotSessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<ChatMessage>> eldest) {
+                // Already persisted on update, so eviction only frees the heap
+                return size() > maxHotSessions;
+            }
+        };
+        if (!idleTtl.isZero()) {
+            this.expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "buddy-memory-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Conversations live between one and one and a quarter TTLs
+            long seconds = Math.max(1, idleTtl.toSeconds() / 4);
+            expiry.scheduleWithFixedDelay(this::expireIdle, seconds, seconds, TimeUnit.SECONDS);
+        } else {
+            this.expiry = null;
+        }
+        logger.info("Chat memory store ready with {} persisted conversations", coldStore.size());
+    }
+    
+    /**
+     * @return Conversations in the on-disk store, deleted ones excluded
+     */
+    int size() {
+        return coldStore.size();
+    }
+    
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = memoryId.toString();
+        synchronized (hotSessions) {
+            List<ChatMessage> messages = hotSessions.get(key);
+            if (messages != null) {
+                hotHits.incrementAndGet();
+                return messages;
+            }
+        }
+        
+        byte[] stored = coldStore.get(key);
+        if (stored == null) {
+            return List.of();
+        }
+        List<ChatMessage> messages = List.copyOf(
+                ChatMessageDeserializer.messagesFromJson(new String(stored, StandardCharsets.UTF_8)));
+        coldLoads.incrementAndGet();
+        synchronized (hotSessions) {
+            hotSessions.putIfAbsent(key, messages);
+        }
+        return messages;
+    }
+    
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = memoryId.toString();
+        List<ChatMessage> snapshot = List.copyOf(messages);
+        coldStore.put(key, ChatMessageSerializer.messagesToJson(snapshot).getBytes(StandardCharsets.UTF_8));
+        synchronized (hotSessions) {
+            hotSessions.put(key, snapshot);
+        }
+    }
+    
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = memoryId.toString();
+        synchronized (hotSessions) {
+            hotSessions.remove(key);
+        }
+        coldStore.delete(key);
+    }
+    
+    /**
+     * @return Whether the conversation is held on the heap
+     */
+    public boolean isHot(Object memoryId) {
+        synchronized (hotSessions) {
+            return hotSessions.containsKey(memoryId.toString());
+        }
+    }
+    
+    /**
+     * @return Number of reads served from the hot cache
+     */
+    public long getHotHits() {
+        return hotHits.get();
+    }
+    
+    /**
+     * @return Number of reads that reloaded a conversation from disk
+     */
+    public long getColdLoads() {
+        return coldLoads.get();
+    }
+    
+    /**
+     * Delete the conversations that were not updated within the TTL
+     * @return Number of conversations deleted
+     */
+    int expireIdle() {
+        if (idleTtl.isZero()) {
+            return 0;
+        }
+        List<String> idle = coldStore.keysWrittenBefore(System.currentTimeMillis() - idleTtl.toMillis());
+        for (String key : idle) {
+            deleteMessages(key);
+        }
+        if (!idle.isEmpty()) {
+            logger.info("Deleted {} conversations idle for more than {}", idle.size(), idleTtl);
+        }
+        return idle.size();
+    }
+    
+    @Override
+    public void close() {
+        if (expiry != null) {
+            expiry.shutdownNow();
+        }
+        coldStore.close();
+    }
+}
@@ -0,0 +1,443 @@
+package com.jase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.temporal.api.enums.v1.WorkflowIdReusePolicy;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowExecutionAlreadyStarted;
+import io.temporal.client.WorkflowFailedException;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.client.WorkflowStub;
+import io.temporal.failure.TimeoutFailure;
+
+/**
+ * HTTP front end that runs each request as a {@link BuddyWorkflow} turn
+ * Handlers run on virtual threads and never hold a Temporal call open longer than the
+ * client's deadline, which also becomes the workflow's execution timeout. Turns in flight are
+ * limited, and requests beyond the limit wait in a bounded queue or are rejected with 429.
+ *
+ * <ul>
+ * <li>{@code POST /v1/turns} with {@code {"input": "..."}} answers when the turn completes;
+ *     with {@code Accept: text/event-stream} it streams {@code started} and {@code response}
+ *     events instead, and with {@code ?wait=false} it answers 202 right after the start</li>
+ * <li>{@code GET /v1/turns/{workflowId}} long-polls for the result of a started turn</li>
+ * <li>{@code GET /healthz} reports turns in flight and queued</li>
+ * </ul>
+ * The client deadline is taken from the {@code X-Request-Timeout-Ms} header, capped at the
+ * configured maximum. An {@code Idempotency-Key} header names the workflow, so a retried
+ * request attaches to the turn already started, or gets the result of the turn already
+ * completed, instead of starting another.
+ */
+public final class BuddyGateway implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyGateway.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String TURNS_PATH = "/v1/turns";
+    // Turn workflow ids, so clients can only name and read the gateway's own workflows
+    private static final String TURN_ID_PREFIX = "buddy-turn-";
+    private static final Duration SSE_KEEPALIVE = Duration.ofSeconds(10);
+    
+    /**
+     * @param maxInFlight Turns running at once
+     * @param maxQueued   Requests waiting for a turn slot; more are rejected
+     * @param maxTimeout  Default and upper bound of the client deadline
+     */
+    record Settings(String host, int port, int maxInFlight, int maxQueued, Duration maxTimeout) {
+        
+        /**
+         * @return Settings from BUDDY_GATEWAY_* variables, or null when BUDDY_GATEWAY_PORT is unset
+         */
+        static Settings fromEnv() {
+            int port = BuddyEnv.getInt("BUDDY_GATEWAY_PORT", -1);
+            if (port < 0) {
+                return null;
+            }
+            return new Settings(
+                    BuddyEnv.getString("BUDDY_GATEWAY_HOST", "0.0.0.0"),
+                    port,
+                    BuddyEnv.getInt("BUDDY_GATEWAY_MAX_IN_FLIGHT", 256),
+                    BuddyEnv.getInt("BUDDY_GATEWAY_MAX_QUEUED", 1024),
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_GATEWAY_TIMEOUT_MS", 60_000)));
+        }
+    }
+    
+    // Thrown to answer a request with an error status
+    private static final class HttpError extends Exception {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int status;
+        
+        HttpError(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+    
+    private final WorkflowClient client;
+    private final String taskQueue;
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore turnSlots;
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    public BuddyGateway(WorkflowClient client, String taskQueue, Settings settings) {
+        this.client = client;
+        this.taskQueue = taskQueue;
+        this.settings = settings;
+        this.turnSlots = new Semaphore(settings.maxInFlight(), true);
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(settings.host(), settings.port()), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start gateway on port " + settings.port(), e);
+        }
+        server.setExecutor(executor);
+        server.createContext(TURNS_PATH, this::handleTurns);
+        server.createContext("/healthz", this::handleHealth);
+        server.start();
+        BuddyMetrics.registerGateway(this::getInFlight, queued::get);
+        logger.info("Gateway listening on {}", getUrl());
+    }
+    
+    /**
+     * @return Gateway on BUDDY_GATEWAY_PORT, or null when it is unset
+     */
+    public static BuddyGateway fromEnv(WorkflowClient client, String taskQueue) {
+        Settings settings = Settings.fromEnv();
+        return settings != null ? new BuddyGateway(client, taskQueue, settings) : null;
+    }
+    
+    public String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+    
+    int getInFlight() {
+        return settings.maxInFlight() - turnSlots.availablePermits();
+    }
+    
+    private void handleTurns(HttpExchange exchange) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try (exchange) {
+            outcome = routeTurn(exchange, start);
+        } catch (HttpError e) {
+            outcome = e.status == 429 ? "rejected" : e.status == 504 ? "timeout" : "error";
+        } finally {
+            BuddyMetrics.recordGatewayRequest(outcome, System.nanoTime() - start);
+        }
+    }
+    
+    // Errors are answered here, before the exchange is closed, and rethrown for the metrics
+    private String routeTurn(HttpExchange exchange, long start) throws HttpError {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals(TURNS_PATH) && method.equals("POST")) {
+                return startTurn(exchange, deadline(exchange, start));
+            }
+            if (path.startsWith(TURNS_PATH + "/") && method.equals("GET")) {
+                return pollTurn(exchange, path.substring(TURNS_PATH.length() + 1), deadline(exchange, start));
+            }
+            throw new HttpError(404, "Not found");
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+            throw e;
+        } catch (IOException e) {
+            // The client went away; its turn keeps running until its deadline
+            logger.debug("Gateway client disconnected", e);
+            return "error";
+        } catch (RuntimeException e) {
+            logger.error("Gateway request failed", e);
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+            return "error";
+        }
+    }
+    
+    private String startTurn(HttpExchange exchange, long deadline) throws IOException, HttpError {
+        String input = readInput(exchange);
+        String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        String workflowId = TURN_ID_PREFIX + (idempotencyKey == null || idempotencyKey.isBlank()
+                ? UUID.randomUUID()
+                : idempotencyKey.trim());
+        boolean wait = !"false".equals(queryParameter(exchange.getRequestURI(), "wait"));
+        boolean sse = wait && String.valueOf(exchange.getRequestHeaders().getFirst("Accept"))
+                .contains("text/event-stream");
+        
+        admit(deadline);
+        CompletableFuture<String> result;
+        try {
+            result = start(workflowId, input, deadline);
+        } catch (RuntimeException e) {
+            turnSlots.release();
+            throw e;
+        }
+        // The slot is held until the turn ends, also when nobody waits for it
+        result.whenComplete((response, failure) -> turnSlots.release());
+        
+        if (sse) {
+            return streamResult(exchange, workflowId, result, deadline);
+        }
+        if (!wait) {
+            exchange.getResponseHeaders().set("Location", TURNS_PATH + "/" + workflowId);
+            sendJson(exchange, 202, MAPPER.createObjectNode().put("workflowId", workflowId));
+            return "accepted";
+        }
+        return sendResult(exchange, workflowId, result, deadline, 504);
+    }
+    
+    private String pollTurn(HttpExchange exchange, String workflowId, long deadline) throws IOException, HttpError {
+        if (!workflowId.startsWith(TURN_ID_PREFIX)) {
+            throw new HttpError(404, "Not found");
+        }
+        CompletableFuture<String> result = client.newUntypedWorkflowStub(workflowId)
+                .getResultAsync(remainingNanos(deadline), TimeUnit.NANOSECONDS, String.class);
+        // Still running when the poll times out: the client polls again
+        return sendResult(exchange, workflowId, result, deadline, 202);
+    }
+    
+    /**
+     * Take a turn slot, waiting in the queue until the deadline if all are taken
+     */
+    private void admit(long deadline) throws HttpError {
+        if (turnSlots.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > settings.maxQueued()) {
+            queued.decrementAndGet();
+            throw new HttpError(429, "Too many turns in flight");
+        }
+        try {
+            if (!turnSlots.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                throw new HttpError(504, "Deadline passed while queued");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Gateway is shutting down");
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Start the turn without waiting for it
+     * @return Result of the turn, or of the turn already started under this workflow id
+     */
+    private CompletableFuture<String> start(String workflowId, String input, long deadline) throws HttpError {
+        long remaining = remainingNanos(deadline);
+        if (remaining <= 0) {
+            throw new HttpError(504, "Deadline passed while queued");
+        }
+        BuddyWorkflow workflow = client.newWorkflowStub(BuddyWorkflow.class, WorkflowOptions.newBuilder()
+                .setTaskQueue(taskQueue)
+                .setWorkflowId(workflowId)
+                // A retry after the turn completed gets its result instead of running it again
+                .setWorkflowIdReusePolicy(WorkflowIdReusePolicy.WORKFLOW_ID_REUSE_POLICY_REJECT_DUPLICATE)
+                // Nobody waits for the turn after the client's deadline, so neither does Temporal
+                .setWorkflowExecutionTimeout(Duration.ofNanos(remaining))
+                .build());
+        try {
+            WorkflowClient.start(workflow::processUserInput, input);
+            return WorkflowStub.fromTyped(workflow).getResultAsync(remaining, TimeUnit.NANOSECONDS, String.class);
+        } catch (WorkflowExecutionAlreadyStarted e) {
+            return client.newUntypedWorkflowStub(workflowId)
+                    .getResultAsync(remaining, TimeUnit.NANOSECONDS, String.class);
+        }
+    }
+    
+    /**
+     * Wait for the result until the deadline and send it
+     * @param timeoutStatus Status sent when the deadline passes first
+     */
+    private String sendResult(HttpExchange exchange, String workflowId, CompletableFuture<String> result,
+            long deadline, int timeoutStatus) throws IOException, HttpError {
+        ObjectNode body = MAPPER.createObjectNode().put("workflowId", workflowId);
+        try {
+            body.put("response", await(result, deadline));
+        } catch (TimeoutException e) {
+            if (timeoutStatus != 202) {
+                throw new HttpError(timeoutStatus, "Turn did not finish before the deadline");
+            }
+            sendJson(exchange, 202, body);
+            return "accepted";
+        }
+        sendJson(exchange, 200, body);
+        return "ok";
+    }
+    
+    private String streamResult(HttpExchange exchange, String workflowId, CompletableFuture<String> result,
+            long deadline) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        ObjectNode event = MAPPER.createObjectNode().put("workflowId", workflowId);
+        writeEvent(out, "started", event);
+        
+        while (true) {
+            long wait = Math.min(remainingNanos(deadline), SSE_KEEPALIVE.toNanos());
+            try {
+                event.put("response", result.get(Math.max(0, wait), TimeUnit.NANOSECONDS));
+                writeEvent(out, "response", event);
+                return "ok";
+            } catch (TimeoutException e) {
+                if (remainingNanos(deadline) <= 0) {
+                    writeEvent(out, "error", event.put("error", "Turn did not finish before the deadline"));
+                    return "timeout";
+                }
+                // Keeps proxies from closing an idle stream
+                out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "error";
+            } catch (ExecutionException e) {
+                writeEvent(out, "error", event.put("error", failureMessage(e.getCause())));
+                return "error";
+            }
+        }
+    }
+    
+    private static String await(CompletableFuture<String> result, long deadline) throws HttpError, TimeoutException {
+        try {
+            return result.get(Math.max(0, remainingNanos(deadline)), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Gateway is shutting down");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException timeout) {
+                throw timeout;
+            }
+            if (cause instanceof WorkflowFailedException failed && failed.getCause() instanceof TimeoutFailure) {
+                throw new HttpError(504, "Turn did not finish before the deadline");
+            }
+            if (cause instanceof StatusRuntimeException status && status.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new HttpError(404, "Unknown turn");
+            }
+            throw new HttpError(500, failureMessage(cause));
+        }
+    }
+    
+    private long deadline(HttpExchange exchange, long start) throws HttpError {
+        long timeoutNanos = settings.maxTimeout().toNanos();
+        String header = exchange.getRequestHeaders().getFirst("X-Request-Timeout-Ms");
+        if (header != null) {
+            try {
+                timeoutNanos = Math.min(timeoutNanos, TimeUnit.MILLISECONDS.toNanos(Long.parseLong(header.trim())));
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Invalid X-Request-Timeout-Ms: " + header);
+            }
+        }
+        return start + timeoutNanos;
+    }
+    
+    private static long remainingNanos(long deadline) {
+        return deadline - System.nanoTime();
+    }
+    
+    private static String readInput(HttpExchange exchange) throws IOException, HttpError {
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new HttpError(400, "Body must be JSON: {\"input\": \"...\"}");
+        }
+        if (request == null || !request.path("input").isTextual()) {
+            throw new HttpError(400, "Body must be JSON: {\"input\": \"...\"}");
+        }
+        return request.path("input").asText();
+    }
+    
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return pair.substring(separator + 1);
+            }
+        }
+        return null;
+    }
+    
+    private static String failureMessage(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+    
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sendJson(exchange, 200, MAPPER.createObjectNode()
+                    .put("inFlight", getInFlight())
+                    .put("queued", queued.get()));
+        }
+    }
+    
+    private static void writeEvent(OutputStream out, String name, ObjectNode data) throws IOException {
+        out.write(("event: " + name + "\ndata: " + MAPPER.writeValueAsString(data) + "\n\n")
+                .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private static void sendJson(HttpExchange exchange, int status, ObjectNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+    
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            if (status == 429) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            sendJson(exchange, status, MAPPER.createObjectNode().put("error", message));
+        } catch (IOException e) {
+            logger.debug("Failed to send gateway error", e);
+        }
+    }
+    
+    /**
+     * Stop accepting requests, giving open ones a moment to be answered
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+        logger.info("Gateway stopped");
+    }
+}
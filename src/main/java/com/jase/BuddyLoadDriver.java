@@ -0,0 +1,336 @@
+package com.jase;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.uber.m3.tally.Scope;
+
+import ch.qos.logback.classic.Level;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowClientOptions;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.serviceclient.WorkflowServiceStubs;
+import io.temporal.serviceclient.WorkflowServiceStubsOptions;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerFactory;
+
+/**
+ * Headless load generator for Buddy.
+ * Replays a corpus of scripted conversations as concurrent session workflows at a fixed
+ * arrival rate and reports HDR histogram latencies for whole turns and for each stage.
+ */
+public class BuddyLoadDriver {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyLoadDriver.class);
+    static final String TASK_QUEUE = "buddy-load-task-queue";
+    private static final int METRICS_REPORT_INTERVAL_SECONDS = 10;
+    
+    // Used when BUDDY_LOAD_CORPUS is not set
+    static final List<List<String>> DEFAULT_CORPUS = List.of(
+            List.of("Hello Buddy!", "How are you today?", "What's the weather like in Paris?", "Thanks, bye"),
+            List.of("hi", "What time is it?", "Can you calculate 12 * 7?"),
+            List.of("Tell me something interesting", "Why is the sky blue?", "And why is it red at sunset?"),
+            List.of("Remember that I prefer short answers", "What do you know about me?"));
+    
+    /**
+     * Load run settings
+     * @param sessions      Maximum number of concurrently open sessions
+     * @param conversations Number of conversations to replay, cycling through the corpus
+     * @param arrivalRate   New conversations per second, or 0 to start them as fast as sessions free up
+     * @param thinkTime     Pause between the turns of a conversation
+     * @param corpus        Conversations, each a list of user turns
+     */
+    public record Settings(int sessions, int conversations, double arrivalRate, Duration thinkTime,
+            List<List<String>> corpus) {
+        
+        public Settings {
+            if (sessions <= 0 || conversations <= 0 || arrivalRate < 0) {
+                throw new IllegalArgumentException("sessions and conversations must be positive, arrival rate non-negative");
+            }
+            if (corpus.isEmpty()) {
+                throw new IllegalArgumentException("corpus must contain at least one conversation");
+            }
+        }
+        
+        /**
+         * @return Settings read from the BUDDY_LOAD_* environment variables
+         */
+        public static Settings fromEnv() {
+            String corpusFile = BuddyEnv.getString("BUDDY_LOAD_CORPUS", null);
+            return new Settings(
+                    BuddyEnv.getInt("BUDDY_LOAD_SESSIONS", 10),
+                    BuddyEnv.getInt("BUDDY_LOAD_CONVERSATIONS", 100),
+                    Double.parseDouble(BuddyEnv.getString("BUDDY_LOAD_ARRIVAL_RATE", "5")),
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_LOAD_THINK_MS", 0)),
+                    corpusFile != null ? readCorpus(Path.of(corpusFile)) : DEFAULT_CORPUS);
+        }
+    }
+    
+    /**
+     * Result of a load run; latencies are recorded in microseconds
+     */
+    public record Report(long turns, long failedTurns, Duration elapsed, Histogram endToEnd,
+            Map<String, Histogram> stages) {
+        
+        public double turnsPerSecond() {
+            return turns / (elapsed.toNanos() / 1e9);
+        }
+        
+        public void print(PrintStream out) {
+            out.printf("%nBuddy load run: %d turns, %d failed, %.1f s, %.1f turns/s%n",
+                    turns, failedTurns, elapsed.toMillis() / 1000.0, turnsPerSecond());
+            out.printf("%-20s %8s %10s %10s %10s %10s%n", "latency (ms)", "count", "p50", "p99", "p999", "max");
+            printRow(out, "end-to-end turn", endToEnd);
+            stages.forEach((stage, histogram) -> printRow(out, stage, histogram));
+        }
+        
+        private static void printRow(PrintStream out, String name, Histogram histogram) {
+            out.printf("%-20s %8d %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+    }
+    
+    private final WorkflowClient client;
+    private final String taskQueue;
+    private final Settings settings;
+    
+    private final Histogram endToEnd = new ConcurrentHistogram(3);
+    private final Map<String, Histogram> stages = new LinkedHashMap<>();
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong failedTurns = new AtomicLong();
+    
+    public BuddyLoadDriver(WorkflowClient client, String taskQueue, Settings settings) {
+        this.client = client;
+        this.taskQueue = taskQueue;
+        this.settings = settings;
+        for (String stage : List.of("preprocessInput", "generateResponse", "postprocessResponse")) {
+            stages.put(stage, new ConcurrentHistogram(3));
+        }
+    }
+    
+    /**
+     * Wrap activities so that each stage's latency is recorded in this run's report.
+     * Register the returned activities on the worker serving the load task queue.
+     */
+    public BuddyActivitiesInterface timed(BuddyActivitiesInterface activities) {
+        return new TimedActivities(activities, stages);
+    }
+    
+    /**
+     * Replay the configured conversations and wait for all of them to finish
+     */
+    public Report run() throws InterruptedException {
+        String runId = "buddy-load-" + System.currentTimeMillis();
+        Semaphore openSessions = new Semaphore(settings.sessions());
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.conversations(); i++) {
+                if (settings.arrivalRate() > 0) {
+                    long arrival = start + (long) (i * 1e9 / settings.arrivalRate());
+                    long wait = arrival - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                openSessions.acquire();
+                List<String> conversation = settings.corpus().get(i % settings.corpus().size());
+                String workflowId = runId + "-" + i;
+                executor.submit(() -> {
+                    try {
+                        runConversation(workflowId, conversation);
+                    } finally {
+                        openSessions.release();
+                    }
+                });
+            }
+        }
+        return new Report(turns.get(), failedTurns.get(), Duration.ofNanos(System.nanoTime() - start),
+                endToEnd, stages);
+    }
+    
+    private void runConversation(String workflowId, List<String> conversation) {
+        BuddySessionWorkflow session = client.newWorkflowStub(
+                BuddySessionWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(taskQueue)
+                        .setWorkflowId(workflowId)
+                        .build());
+        int completed = 0;
+        try {
+            WorkflowClient.start(session::runSession, new BuddySessionState());
+            for (String turn : conversation) {
+                long turnStart = System.nanoTime();
+                session.chat(turn);
+                endToEnd.recordValue((System.nanoTime() - turnStart) / 1000);
+                turns.incrementAndGet();
+                completed++;
+                if (!settings.thinkTime().isZero()) {
+                    Thread.sleep(settings.thinkTime());
+                }
+            }
+            session.endSession();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedTurns.addAndGet(conversation.size() - completed);
+        } catch (RuntimeException e) {
+            logger.warn("Conversation {} failed after {} turns", workflowId, completed, e);
+            failedTurns.addAndGet(conversation.size() - completed);
+        }
+    }
+    
+    /**
+     * Read a corpus file: one user turn per line, conversations separated by blank lines,
+     * lines starting with '#' are ignored
+     */
+    static List<List<String>> readCorpus(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read load corpus " + file, e);
+        }
+        List<List<String>> corpus = new ArrayList<>();
+        List<String> conversation = new ArrayList<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("#")) {
+                continue;
+            }
+            if (trimmed.isEmpty()) {
+                if (!conversation.isEmpty()) {
+                    corpus.add(List.copyOf(conversation));
+                    conversation.clear();
+                }
+            } else {
+                conversation.add(trimmed);
+            }
+        }
+        if (!conversation.isEmpty()) {
+            corpus.add(List.copyOf(conversation));
+        }
+        return corpus;
+    }
+    
+    /**
+     * Activities decorator that records the latency of every stage
+     */
+    private static class TimedActivities implements BuddyActivitiesInterface {
+        
+        private final BuddyActivitiesInterface delegate;
+        private final Map<String, Histogram> stages;
+        
+        TimedActivities(BuddyActivitiesInterface delegate, Map<String, Histogram> stages) {
+            this.delegate = delegate;
+            this.stages = stages;
+        }
+        
+        @Override
+        public PreprocessedInput preprocessInput(String input) {
+            return time("preprocessInput", () -> delegate.preprocessInput(input));
+        }
+        
+        @Override
+        public String generateResponse(PreprocessedInput input) {
+            return time("generateResponse", () -> delegate.generateResponse(input));
+        }
+        
+        @Override
+        public String postprocessResponse(String response) {
+            return time("postprocessResponse", () -> delegate.postprocessResponse(response));
+        }
+        
+        private <T> T time(String stage, Supplier<T> call) {
+            long start = System.nanoTime();
+            try {
+                return call.get();
+            } finally {
+                stages.get(stage).recordValue((System.nanoTime() - start) / 1000);
+            }
+        }
+    }
+    
+    /**
+     * Run a load test against the local Temporal dev server.
+     * Unless BUDDY_LOAD_STUB is false, the model is a local stub endpoint with
+     * BUDDY_LOAD_STUB_LATENCY_MS latency, so no API key or quota is needed.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LogbackConfig.configure();
+        // Per-turn INFO logging would dominate the measurement
+        LogbackConfig.setLogLevel("com.jase", Level.WARN);
+        
+        Settings settings = Settings.fromEnv();
+        boolean useStub = BuddyEnv.getBoolean("BUDDY_LOAD_STUB", true);
+        StubOpenAiServer stub = null;
+        if (useStub) {
+            stub = new StubOpenAiServer()
+                    .withLatency(Duration.ofMillis(BuddyEnv.getLong("BUDDY_LOAD_STUB_LATENCY_MS", 500)))
+                    .withTokenDelay(Duration.ofMillis(BuddyEnv.getLong("BUDDY_LOAD_STUB_TOKEN_DELAY_MS", 0)));
+        }
+        
+        Scope metricsScope = BuddyMetrics.newTemporalScope(METRICS_REPORT_INTERVAL_SECONDS);
+        MetricsEndpoint metricsEndpoint = MetricsEndpoint.fromEnv(BuddyMetrics.getRegistry());
+        WorkflowServiceStubs service = WorkflowServiceStubs.newServiceStubs(
+                WorkflowServiceStubsOptions.newBuilder()
+                        .setMetricsScope(metricsScope)
+                        .build());
+        // Large payloads are compressed or offloaded to blobs when BUDDY_PAYLOAD_CODEC is on
+        BuddyPayloadCodec payloadCodec = BuddyPayloadCodec.fromEnv();
+        WorkflowClient client = WorkflowClient.newInstance(service, WorkflowClientOptions.newBuilder()
+                .setDataConverter(BuddyPayloadCodec.dataConverter(payloadCodec))
+                .build());
+        WorkerFactory factory = WorkerFactory.newInstance(client);
+        BuddyWorkerConfig workerConfig = BuddyWorkerConfig.fromEnv();
+        Worker worker = factory.newWorker(TASK_QUEUE, workerConfig.toWorkerOptions());
+        
+        StageExecutionMode stageMode = StageExecutionMode.fromEnv();
+        worker.registerWorkflowImplementationFactory(BuddySessionWorkflow.class,
+                () -> new BuddySessionWorkflowImpl(stageMode));
+        BuddyActivities activities = useStub
+                ? new BuddyActivities("stub-key", stub.getBaseUrl())
+                : new BuddyActivities();
+        BuddyLoadDriver driver = new BuddyLoadDriver(client, TASK_QUEUE, settings);
+        worker.registerActivitiesImplementations(driver.timed(activities));
+        factory.start();
+        
+        System.out.printf("Replaying %d conversations, %d concurrent sessions, %.1f arrivals/s, stages as %s, worker %s%n",
+                settings.conversations(), settings.sessions(), settings.arrivalRate(), stageMode, workerConfig);
+        Report report = driver.run();
+        report.print(System.out);
+        
+        factory.shutdown();
+        factory.awaitTermination(10, TimeUnit.SECONDS);
+        activities.close();
+        if (stub != null) {
+            stub.close();
+        }
+        service.shutdown();
+        BuddyMetrics.closeTemporalScope(metricsScope);
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+        }
+        LogbackConfig.shutdown();
+    }
+}
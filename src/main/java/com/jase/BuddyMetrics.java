@@ -0,0 +1,408 @@
+package com.jase;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.ToDoubleFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.uber.m3.tally.RootScopeBuilder;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.tally.ScopeCloseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.temporal.common.reporter.MicrometerClientStatsReporter;
+
+/**
+ * Process-wide metrics for Buddy AI Agent
+ * Buddy's own meters and the Temporal SDK metrics share one Prometheus registry
+ */
+public final class BuddyMetrics {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyMetrics.class);
+    
+    /**
+     * Count, mean and maximum of a latency measured in nanoseconds
+     */
+    public static final class LatencyStats {
+        
+        private final Timer timer;
+        
+        LatencyStats(Timer timer) {
+            this.timer = timer;
+        }
+        
+        void record(long nanos) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+        
+        public long getCount() {
+            return timer.count();
+        }
+        
+        public double getMeanMillis() {
+            return timer.mean(TimeUnit.MILLISECONDS);
+        }
+        
+        public double getMaxMillis() {
+            return timer.max(TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private static final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    
+    private static final LatencyStats timeToFirstToken = new LatencyStats(latencyTimer("buddy.model.first.token")
+            .description("Time from sending a streaming model request until its first token")
+            .register(registry));
+    private static final Timer modelCalls = latencyTimer("buddy.model.calls")
+            .description("Latency of model calls")
+            .tag("outcome", "success")
+            .register(registry);
+    private static final Timer failedModelCalls = latencyTimer("buddy.model.calls")
+            .description("Latency of model calls")
+            .tag("outcome", "error")
+            .register(registry);
+    private static final Timer batchItems = latencyTimer("buddy.batch.items")
+            .description("Latency of batch prompts, all stages included")
+            .tag("outcome", "success")
+            .register(registry);
+    private static final Timer failedBatchItems = latencyTimer("buddy.batch.items")
+            .description("Latency of batch prompts, all stages included")
+            .tag("outcome", "error")
+            .register(registry);
+    private static final Counter promptTokens = Counter.builder("buddy.model.tokens")
+            .description("Tokens reported by the model")
+            .tag("type", "prompt")
+            .register(registry);
+    private static final Counter completionTokens = Counter.builder("buddy.model.tokens")
+            .description("Tokens reported by the model")
+            .tag("type", "completion")
+            .register(registry);
+    private static final Counter payloadBytesSaved = Counter.builder("buddy.payload.saved")
+            .description("Bytes kept out of Temporal payloads by compression and blob offloading")
+            .baseUnit("bytes")
+            .register(registry);
+    private static final Counter hotSessionTurns = Counter.builder("buddy.session.turns")
+            .description("Session turns by whether the worker held the conversation's memory on the heap")
+            .tag("memory", "hot")
+            .register(registry);
+    private static final Counter coldSessionTurns = Counter.builder("buddy.session.turns")
+            .description("Session turns by whether the worker held the conversation's memory on the heap")
+            .tag("memory", "cold")
+            .register(registry);
+    private static final DistributionSummary promptTokensSaved = DistributionSummary.builder("buddy.memory.saved")
+            .description("Estimated prompt tokens per turn saved by summarizing and trimming chat memory")
+            .baseUnit("tokens")
+            .register(registry);
+    
+    private static final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> toolTimers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> mockFallbacks = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> toolShortcuts = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> routes = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> hedges = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> startupTimers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> payloads = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> gatewayRequests = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> breakerCalls = new ConcurrentHashMap<>();
+    // Latest cache registered under each name; its meters are registered once and read it on scrape
+    private static final Map<String, ResponseCache> caches = new ConcurrentHashMap<>();
+    
+    private BuddyMetrics() {
+    }
+    
+    /**
+     * @return Registry holding every Buddy and Temporal meter
+     */
+    public static PrometheusMeterRegistry getRegistry() {
+        return registry;
+    }
+    
+    /**
+     * Create a Temporal metrics scope that reports into the shared registry.
+     * Pass it to WorkflowServiceStubsOptions; workers created from that client use it too.
+     * @param reportIntervalSeconds How often Temporal's buffered metrics are flushed
+     */
+    public static Scope newTemporalScope(int reportIntervalSeconds) {
+        return new RootScopeBuilder()
+                .reporter(new MicrometerClientStatsReporter(registry))
+                .reportEvery(com.uber.m3.util.Duration.ofSeconds(reportIntervalSeconds));
+    }
+    
+    /**
+     * Flush and close a scope created by {@link #newTemporalScope(int)} at shutdown
+     */
+    public static void closeTemporalScope(Scope scope) {
+        try {
+            scope.close();
+        } catch (ScopeCloseException e) {
+            logger.warn("Failed to flush Temporal metrics", e);
+        }
+    }
+    
+    /**
+     * Record the execution time of one turn stage (preprocess, generate, postprocess)
+     */
+    public static void recordStage(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, name -> latencyTimer("buddy.stage")
+                        .description("Execution time of a turn stage")
+                        .tag("stage", name)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Record one request to the model, including tool-calling round trips made by the assistant
+     */
+    public static void recordModelCall(long nanos, boolean success) {
+        (success ? modelCalls : failedModelCalls).record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Record one attempt at a batch prompt
+     */
+    public static void recordBatchItem(long nanos, boolean success) {
+        (success ? batchItems : failedBatchItems).record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Record the token usage reported for a model response; missing counts are skipped
+     */
+    public static void recordTokens(Integer prompt, Integer completion) {
+        if (prompt != null) {
+            promptTokens.increment(prompt);
+        }
+        if (completion != null) {
+            completionTokens.increment(completion);
+        }
+    }
+    
+    /**
+     * Record the estimated prompt tokens a turn saved through the token-budgeted chat memory
+     */
+    public static void recordPromptTokensSaved(long tokens) {
+        promptTokensSaved.record(tokens);
+    }
+    
+    /**
+     * Record one tool invocation made by the assistant
+     */
+    public static void recordToolCall(String tool, long nanos, boolean success) {
+        String outcome = success ? "success" : "error";
+        toolTimers.computeIfAbsent(tool + ':' + outcome, key -> latencyTimer("buddy.tool.calls")
+                        .description("Tool invocations made by the assistant")
+                        .tag("tool", tool)
+                        .tag("outcome", outcome)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Count a tool call answered from its memoized result instead of invoking the tool
+     */
+    public static void recordToolCacheHit(String tool) {
+        toolCounter("buddy.tool.cache.hits", "Tool calls answered from memoized results", tool).increment();
+    }
+    
+    /**
+     * Count a tool call abandoned because it ran past its timeout
+     */
+    public static void recordToolTimeout(String tool) {
+        toolCounter("buddy.tool.timeouts", "Tool calls that exceeded their timeout", tool).increment();
+    }
+    
+    /**
+     * Count a response served by the mock model instead of LangChain4j
+     * @param reason Why the mock was used, e.g. "no_model" or "error"
+     */
+    public static void recordMockFallback(String reason) {
+        mockFallbacks.computeIfAbsent(reason, name -> Counter.builder("buddy.mock.fallbacks")
+                        .description("Responses served by the mock model")
+                        .tag("reason", name)
+                        .register(registry))
+                .increment();
+    }
+    
+    /**
+     * Count a turn routed by the model router
+     * @param intent Intent the classifier assigned to the input
+     * @param target Model that served the turn, or "local" for a canned answer
+     */
+    public static void recordRoute(String intent, String target) {
+        routes.computeIfAbsent(intent + ':' + target, key -> Counter.builder("buddy.router.routes")
+                        .description("Turns routed to a model tier or a local answer")
+                        .tag("intent", intent)
+                        .tag("target", target)
+                        .register(registry))
+                .increment();
+    }
+    
+    /**
+     * Count a hedged model request
+     * @param outcome "sent" when a second request was sent, "won" when it answered first
+     */
+    public static void recordHedge(String outcome) {
+        hedges.computeIfAbsent(outcome, name -> Counter.builder("buddy.model.hedges")
+                        .description("Second requests sent to the model for slow calls")
+                        .tag("outcome", name)
+                        .register(registry))
+                .increment();
+    }
+    
+    /**
+     * Count a payload encoded by the payload codec and the bytes it saved
+     * @param encoding "raw", "compressed" or "offloaded"
+     */
+    public static void recordPayload(String encoding, long originalBytes, long encodedBytes) {
+        payloads.computeIfAbsent(encoding, name -> Counter.builder("buddy.payload.encoded")
+                        .description("Temporal payloads by how the payload codec encoded them")
+                        .tag("encoding", name)
+                        .register(registry))
+                .increment();
+        payloadBytesSaved.increment(originalBytes - encodedBytes);
+    }
+    
+    /**
+     * Record the duration of a startup phase
+     * @param phase "ready" from JVM start until the worker polls, or a lazily built component
+     */
+    public static void recordStartup(String phase, long nanos) {
+        startupTimers.computeIfAbsent(phase, name -> Timer.builder("buddy.worker.startup")
+                        .description("Time to start the worker and to build lazily initialized components")
+                        .tag("phase", name)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Record whether a turn found its conversation's memory on the heap of the worker generating it
+     */
+    public static void recordSessionTurn(boolean hot) {
+        (hot ? hotSessionTurns : coldSessionTurns).increment();
+    }
+    
+    /**
+     * Record a gateway request from arrival until its response was sent
+     * @param outcome "ok", "accepted", "rejected", "timeout" or "error"
+     */
+    public static void recordGatewayRequest(String outcome, long nanos) {
+        gatewayRequests.computeIfAbsent(outcome, name -> latencyTimer("buddy.gateway.requests")
+                        .description("Gateway requests by outcome")
+                        .tag("outcome", name)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Publish the gateway's turns in flight and requests waiting for a turn slot
+     */
+    public static void registerGateway(IntSupplier inFlight, IntSupplier queued) {
+        Gauge.builder("buddy.gateway.in.flight", inFlight::getAsInt)
+                .description("Gateway turns running")
+                .register(registry);
+        Gauge.builder("buddy.gateway.queued", queued::getAsInt)
+                .description("Gateway requests waiting for a turn slot")
+                .register(registry);
+    }
+    
+    /**
+     * Publish a cache's counters; registering another cache under the same name replaces it
+     * @param name "response" for the model response cache
+     */
+    public static void registerCache(String name, ResponseCache cache) {
+        if (caches.put(name, cache) != null) {
+            return;
+        }
+        cacheCounter("buddy.cache.lookups", "Cache lookups by result", name, "result", "hit", ResponseCache.Stats::hits);
+        cacheCounter("buddy.cache.lookups", "Cache lookups by result", name, "result", "miss", ResponseCache.Stats::misses);
+        cacheCounter("buddy.cache.removals", "Entries dropped from the cache by cause", name,
+                "cause", "evicted", ResponseCache.Stats::evictions);
+        cacheCounter("buddy.cache.removals", "Entries dropped from the cache by cause", name,
+                "cause", "expired", ResponseCache.Stats::expirations);
+        FunctionCounter.builder("buddy.cache.saved", caches,
+                        map -> map.get(name).stats().savedNanos() / 1e9)
+                .description("Model time avoided by cache hits")
+                .tag("cache", name)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("buddy.cache.entries", caches, map -> map.get(name).stats().entries())
+                .description("Entries currently cached")
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("buddy.cache.size", caches, map -> map.get(name).stats().bytes())
+                .description("Estimated heap used by cached entries")
+                .tag("cache", name)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+    
+    private static void cacheCounter(String meter, String description, String name, String tag, String value,
+            ToDoubleFunction<ResponseCache.Stats> count) {
+        FunctionCounter.builder(meter, caches, map -> count.applyAsDouble(map.get(name).stats()))
+                .description(description)
+                .tag("cache", name)
+                .tag(tag, value)
+                .register(registry);
+    }
+    
+    /**
+     * Publish a model's circuit breaker state (0 closed, 1 half-open, 2 open) and its current timeout
+     */
+    public static void registerBreaker(String model, IntSupplier state, DoubleSupplier timeoutSeconds) {
+        Gauge.builder("buddy.model.breaker.state", state::getAsInt)
+                .description("Circuit breaker state of a model: 0 closed, 1 half-open, 2 open")
+                .tag("model", model)
+                .register(registry);
+        Gauge.builder("buddy.model.breaker.timeout", timeoutSeconds::getAsDouble)
+                .description("Adaptive timeout of a model's requests")
+                .tag("model", model)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+    
+    /**
+     * Count a model request the circuit breaker held against the model or turned away
+     * @param outcome "failure", "timeout" or "rejected" while the breaker was open
+     */
+    public static void recordBreakerCall(String model, String outcome) {
+        breakerCalls.computeIfAbsent(model + ':' + outcome, key -> Counter.builder("buddy.model.breaker.calls")
+                        .description("Model requests that failed, timed out or were rejected by the circuit breaker")
+                        .tag("model", model)
+                        .tag("outcome", outcome)
+                        .register(registry))
+                .increment();
+    }
+    
+    /**
+     * Record the time from sending a request to the model until its first streamed token
+     */
+    public static void recordTimeToFirstToken(long nanos) {
+        timeToFirstToken.record(nanos);
+    }
+    
+    public static LatencyStats getTimeToFirstToken() {
+        return timeToFirstToken;
+    }
+    
+    private static Counter toolCounter(String name, String description, String tool) {
+        return toolShortcuts.computeIfAbsent(name + ':' + tool, key -> Counter.builder(name)
+                .description(description)
+                .tag("tool", tool)
+                .register(registry));
+    }
+    
+    // Latency timers publish histogram buckets so percentiles can be computed across workers
+    private static Timer.Builder latencyTimer(String name) {
+        return Timer.builder(name).publishPercentileHistogram();
+    }
+}
@@ -0,0 +1,206 @@
+package com.jase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.CodecDataConverter;
+import io.temporal.common.converter.DataConverter;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.payload.codec.PayloadCodecException;
+
+/**
+ * Payload codec that keeps large inputs and model responses out of workflow history
+ * Payloads above a size threshold are compressed with zlib. Payloads above a larger threshold
+ * are also written to a {@link PayloadBlobStore} and replaced by its key, so history only holds
+ * a reference. Every worker and client of the same workflows needs the codec and the blob directory.
+ */
+class BuddyPayloadCodec implements PayloadCodec {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyPayloadCodec.class);
+    
+    static final String ENCODING_ZLIB = "binary/buddy-zlib";
+    static final String ENCODING_BLOB = "binary/buddy-blob";
+    
+    /**
+     * Counters since the codec was created; sizes are serialized payload bytes
+     */
+    record Stats(long encoded, long compressed, long offloaded, long originalBytes, long encodedBytes) {
+        
+        long savedBytes() {
+            return originalBytes - encodedBytes;
+        }
+    }
+    
+    private final int compressBytes;
+    private final int offloadBytes;
+    private final PayloadBlobStore blobs;
+    
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder offloaded = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    
+    /**
+     * @param compressBytes Payloads of at least this size are compressed
+     * @param offloadBytes  Payloads of at least this size are stored as blobs; 0 disables offloading
+     * @param blobs         Store for offloaded payloads
+     */
+    BuddyPayloadCodec(int compressBytes, int offloadBytes, PayloadBlobStore blobs) {
+        this.compressBytes = compressBytes;
+        this.offloadBytes = offloadBytes;
+        this.blobs = blobs;
+    }
+    
+    /**
+     * @return Codec configured by BUDDY_PAYLOAD_* variables, or null when BUDDY_PAYLOAD_CODEC is off
+     */
+    static BuddyPayloadCodec fromEnv() {
+        if (!BuddyEnv.getBoolean("BUDDY_PAYLOAD_CODEC", false)) {
+            return null;
+        }
+        return new BuddyPayloadCodec(
+                BuddyEnv.getInt("BUDDY_PAYLOAD_COMPRESS_BYTES", 1024),
+                BuddyEnv.getInt("BUDDY_PAYLOAD_OFFLOAD_BYTES", 128 * 1024),
+                new PayloadBlobStore(Path.of(BuddyEnv.getString("BUDDY_PAYLOAD_BLOB_DIR", "buddy-data/payloads"))));
+    }
+    
+    /**
+     * @param codec Codec to apply after serialization, or null for the default converter
+     */
+    static DataConverter dataConverter(BuddyPayloadCodec codec) {
+        return codec != null
+                ? new CodecDataConverter(DefaultDataConverter.newDefaultInstance(), List.of(codec))
+                : DefaultDataConverter.STANDARD_INSTANCE;
+    }
+    
+    @Override
+    public List<Payload> encode(List<Payload> payloads) {
+        List<Payload> result = new ArrayList<>(payloads.size());
+        for (Payload payload : payloads) {
+            result.add(encode(payload));
+        }
+        return result;
+    }
+    
+    @Override
+    public List<Payload> decode(List<Payload> payloads) {
+        List<Payload> result = new ArrayList<>(payloads.size());
+        for (Payload payload : payloads) {
+            result.add(decode(payload));
+        }
+        return result;
+    }
+    
+    Stats stats() {
+        return new Stats(encoded.sum(), compressed.sum(), offloaded.sum(), originalBytes.sum(), encodedBytes.sum());
+    }
+    
+    void logStats() {
+        Stats stats = stats();
+        logger.info("Payload codec: {} payloads encoded, {} compressed, {} offloaded, {} of {} bytes saved",
+                stats.encoded(), stats.compressed(), stats.offloaded(), stats.savedBytes(), stats.originalBytes());
+    }
+    
+    private Payload encode(Payload payload) {
+        int size = payload.getSerializedSize();
+        Payload result = payload;
+        String encoding = "raw";
+        if (size >= compressBytes) {
+            byte[] deflated = deflate(payload.toByteArray());
+            // Already compressed or random data is left alone
+            if (deflated.length < size) {
+                result = wrap(ENCODING_ZLIB, ByteString.copyFrom(deflated));
+                encoding = "compressed";
+                compressed.increment();
+            }
+        }
+        if (offloadBytes > 0 && size >= offloadBytes) {
+            String key = blobs.put(result.toByteArray());
+            result = wrap(ENCODING_BLOB, ByteString.copyFrom(key, StandardCharsets.US_ASCII));
+            encoding = "offloaded";
+            offloaded.increment();
+        }
+        
+        int encodedSize = result.getSerializedSize();
+        encoded.increment();
+        originalBytes.add(size);
+        encodedBytes.add(encodedSize);
+        BuddyMetrics.recordPayload(encoding, size, encodedSize);
+        return result;
+    }
+    
+    private Payload decode(Payload payload) {
+        ByteString encoding = payload.getMetadataOrDefault(EncodingKeys.METADATA_ENCODING_KEY, ByteString.EMPTY);
+        try {
+            if (encoding.toStringUtf8().equals(ENCODING_ZLIB)) {
+                return Payload.parseFrom(inflate(payload.getData().toByteArray()));
+            }
+            if (encoding.toStringUtf8().equals(ENCODING_BLOB)) {
+                // The blob holds the payload as it was before offloading, possibly compressed
+                return decode(Payload.parseFrom(blobs.get(payload.getData().toStringUtf8())));
+            }
+            return payload;
+        } catch (InvalidProtocolBufferException | DataFormatException | RuntimeException e) {
+            throw new PayloadCodecException("Failed to decode " + encoding.toStringUtf8() + " payload", e);
+        }
+    }
+    
+    private static Payload wrap(String encoding, ByteString data) {
+        return Payload.newBuilder()
+                .putMetadata(EncodingKeys.METADATA_ENCODING_KEY, ByteString.copyFromUtf8(encoding))
+                .setData(data)
+                .build();
+    }
+    
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated zlib data");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
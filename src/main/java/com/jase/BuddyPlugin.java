@@ -1,8 +1,9 @@
 package com.jase;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -18,18 +19,34 @@ public class BuddyPlugin {
     
     private static final Logger logger = LoggerFactory.getLogger(BuddyPlugin.class);
     
-    // Mock data for demonstration
-    private final Map<String, String> userData;
+    private final ExpressionEngine calculator = ExpressionEngine.fromEnv();
     
+    // Preferences every user starts with
+    static final Map<String, String> DEFAULT_PREFERENCES = Map.of(
+            "user_name", "User",
+            "user_preferences", "Friendly and helpful responses");
+    
+    private final PreferenceStore preferences;
+    private final String userId;
+    
+    /**
+     * Plugin whose user preferences are kept in memory only
+     */
     public BuddyPlugin() {
-        this.userData = new HashMap<>();
-        // Initialize with some sample data
-        userData.put("user_name", "User");
-        userData.put("user_preferences", "Friendly and helpful responses");
+        this(PreferenceStore.inMemory(DEFAULT_PREFERENCES), userIdFromEnv());
+    }
+    
+    /**
+     * @param userId User whose preferences the tools read and write, the same across conversations
+     */
+    BuddyPlugin(PreferenceStore preferences, String userId) {
+        this.preferences = preferences;
+        this.userId = userId;
         logger.info("BuddyPlugin initialized");
     }
     
     @Tool("Gets the current date and time")
+    @ToolPolicy(timeoutMillis = 1_000, concurrent = true)
     public String getCurrentTime() {
         logger.info("Getting current time");
         LocalDateTime now = LocalDateTime.now();
@@ -38,6 +55,7 @@ public class BuddyPlugin {
     }
     
     @Tool("Gets weather information for a location")
+    @ToolPolicy(timeoutMillis = 5_000, cacheTtlSeconds = 600, concurrent = true)
     public String getWeather(String location) {
         logger.info("Getting weather for location: {}", location);
         
@@ -47,10 +65,11 @@ public class BuddyPlugin {
     }
     
     @Tool("Gets information about the current user")
+    @ToolPolicy(concurrent = true)
     public String getUserInfo(String infoType) {
         logger.info("Getting user info for type: {}", infoType);
         
-        String result = userData.get(infoType.toLowerCase());
+        String result = preferences.get(userId, infoType.toLowerCase());
         if (result != null) {
             return result;
         } else {
@@ -62,41 +81,30 @@ public class BuddyPlugin {
     public String setUserPreference(String key, String value) {
         logger.info("Setting user preference: {} = {}", key, value);
         
-        userData.put(key.toLowerCase(), value);
+        preferences.put(userId, key.toLowerCase(), value);
         return String.format("User preference '%s' has been set to '%s'", key, value);
     }
     
-    @Tool("Performs simple mathematical calculations")
+    @Tool("Evaluates a math expression with + - * / % ^, parentheses, pi, e and functions "
+            + "such as sqrt, abs, ln, log, sin, cos, tan, floor, ceil, round, min, max and pow")
+    @ToolPolicy(cacheTtlSeconds = 3600, concurrent = true)
     public String calculate(String expression) {
         logger.info("Calculating expression: {}", expression);
         
         try {
-            // Simple calculator for demonstration - handles basic operations
-            String[] parts = expression.trim().split("\\s+");
-            if (parts.length == 3) {
-                double a = Double.parseDouble(parts[0]);
-                String operator = parts[1];
-                double b = Double.parseDouble(parts[2]);
-                
-                double result = switch (operator) {
-                    case "+" -> a + b;
-                    case "-" -> a - b;
-                    case "*" -> a * b;
-                    case "/" -> a / b;
-                    default -> throw new IllegalArgumentException("Unsupported operator: " + operator);
-                };
-                
-                return String.format("%.2f %s %.2f = %.2f", a, operator, b, result);
-            } else {
-                return "Invalid expression format. Please use format like '2 + 2' or '10 * 5'";
+            double result = calculator.evaluate(expression);
+            if (!Double.isFinite(result)) {
+                return "Error calculating expression: result is not a finite number";
             }
+            return expression.trim() + " = " + formatNumber(result);
         } catch (IllegalArgumentException e) {
-            logger.error("Error calculating expression: {}", expression, e);
+            logger.warn("Invalid expression: {} ({})", expression, e.getMessage());
             return "Error calculating expression: " + e.getMessage();
         }
     }
     
     @Tool("Provides help information about available functions")
+    @ToolPolicy(cacheTtlSeconds = 3600, concurrent = true)
     public String getHelp() {
         logger.info("Providing help information");
         
@@ -107,10 +115,26 @@ public class BuddyPlugin {
             🌤️ get_weather(location) - Get weather information for a location
             👤 get_user_info(info_type) - Get user information (name, preferences, etc.)
             ⚙️ set_user_preference(key, value) - Set a user preference
-            🧮 calculate(expression) - Perform mathematical calculations (e.g., '2 + 2')
+            🧮 calculate(expression) - Evaluate math expressions (e.g., '(2 + 3) * sqrt(16)')
             ❓ help - Show this help message
             
             I can combine these functions to help you with various tasks!
             """;
     }
+    
+    /**
+     * User the worker acts for, {@code BUDDY_USER_ID} or else the OS user. Conversations come and go
+     * with every launch and gateway turn, so they cannot identify the user.
+     */
+    static String userIdFromEnv() {
+        return BuddyEnv.getString("BUDDY_USER_ID", System.getProperty("user.name", "user"));
+    }
+    
+    // Up to 12 significant digits without trailing zeros, e.g. 42, 0.1 or 1.41421356237
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return new BigDecimal(value).round(new MathContext(12)).stripTrailingZeros().toPlainString();
+    }
 }
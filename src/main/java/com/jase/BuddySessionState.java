@@ -0,0 +1,41 @@
+package com.jase;
+
+/**
+ * Session state carried across continue-as-new runs of {@link BuddySessionWorkflow}
+ */
+public class BuddySessionState {
+    
+    private long completedTurns;
+    private String workerTaskQueue;
+    
+    public BuddySessionState() {
+    }
+    
+    public BuddySessionState(long completedTurns) {
+        this(completedTurns, null);
+    }
+    
+    /**
+     * @param workerTaskQueue Task queue of the worker the session is pinned to, or null
+     */
+    public BuddySessionState(long completedTurns, String workerTaskQueue) {
+        this.completedTurns = completedTurns;
+        this.workerTaskQueue = workerTaskQueue;
+    }
+    
+    public long getCompletedTurns() {
+        return completedTurns;
+    }
+    
+    public void setCompletedTurns(long completedTurns) {
+        this.completedTurns = completedTurns;
+    }
+    
+    public String getWorkerTaskQueue() {
+        return workerTaskQueue;
+    }
+    
+    public void setWorkerTaskQueue(String workerTaskQueue) {
+        this.workerTaskQueue = workerTaskQueue;
+    }
+}
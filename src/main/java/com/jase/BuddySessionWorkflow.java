@@ -0,0 +1,51 @@
+package com.jase;
+
+import io.temporal.workflow.QueryMethod;
+import io.temporal.workflow.SignalMethod;
+import io.temporal.workflow.UpdateMethod;
+import io.temporal.workflow.UpdateValidatorMethod;
+import io.temporal.workflow.WorkflowInterface;
+import io.temporal.workflow.WorkflowMethod;
+
+/**
+ * Temporal workflow interface for a long-running Buddy conversation session
+ * One workflow stays open for the whole conversation and each turn is
+ * delivered as an update, so turns don't pay for a new workflow start
+ */
+@WorkflowInterface
+public interface BuddySessionWorkflow {
+    
+    /**
+     * Run the session until it is ended by the client
+     * @param state Session state carried over from a previous run, or a fresh state
+     */
+    @WorkflowMethod
+    void runSession(BuddySessionState state);
+    
+    /**
+     * Process one conversation turn
+     * @param userInput The input text from the user
+     * @return The AI agent's response
+     */
+    @UpdateMethod
+    String chat(String userInput);
+    
+    /**
+     * Reject turns once the session has been ended
+     * @param userInput The input text from the user
+     */
+    @UpdateValidatorMethod(updateName = "chat")
+    void validateChat(String userInput);
+    
+    /**
+     * End the session; in-flight turns are allowed to finish
+     */
+    @SignalMethod
+    void endSession();
+    
+    /**
+     * @return Number of turns completed over the lifetime of the session
+     */
+    @QueryMethod
+    long getCompletedTurns();
+}
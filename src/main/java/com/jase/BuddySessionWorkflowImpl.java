@@ -0,0 +1,106 @@
+package com.jase;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+
+import io.temporal.workflow.Workflow;
+import io.temporal.workflow.WorkflowLock;
+
+/**
+ * Temporal workflow implementation for a long-running Buddy conversation session
+ * Turns are processed one at a time, and the workflow continues as new once
+ * its history grows large so a long conversation never hits history limits
+ */
+public class BuddySessionWorkflowImpl implements BuddySessionWorkflow {
+    
+    private static final Logger logger = Workflow.getLogger(BuddySessionWorkflowImpl.class);
+    
+    // Continue as new well before the server's history limits are reached
+    static final long MAX_HISTORY_LENGTH = 2_000;
+    
+    private final BuddyTurnPipeline pipeline;
+    
+    // Turns share the conversation memory, so they must not interleave
+    private final WorkflowLock turnLock = Workflow.newWorkflowLock();
+    
+    private long completedTurns;
+    private boolean ended;
+    
+    public BuddySessionWorkflowImpl() {
+        this(StageExecutionMode.ACTIVITY);
+    }
+    
+    /**
+     * @param stageMode How the preprocess and postprocess stages are executed
+     */
+    public BuddySessionWorkflowImpl(StageExecutionMode stageMode) {
+        this(stageMode, null);
+    }
+    
+    /**
+     * @param affinityTimeout How long a turn waits for the worker the session is pinned to,
+     *                        or null when turns go to any worker
+     */
+    public BuddySessionWorkflowImpl(StageExecutionMode stageMode, Duration affinityTimeout) {
+        this.pipeline = new BuddyTurnPipeline(stageMode, affinityTimeout);
+    }
+    
+    @Override
+    public void runSession(BuddySessionState state) {
+        if (state != null) {
+            completedTurns = state.getCompletedTurns();
+            pipeline.setWorkerTaskQueue(state.getWorkerTaskQueue());
+        }
+        logger.info("Session started with {} completed turns", completedTurns);
+        
+        Workflow.await(() -> ended || shouldContinueAsNew());
+        
+        // Let accepted turns finish before closing or handing over to a new run
+        Workflow.await(Workflow::isEveryHandlerFinished);
+        
+        if (ended) {
+            logger.info("Session ended after {} turns", completedTurns);
+            return;
+        }
+        
+        logger.info("Continuing session as new after {} history events",
+                Workflow.getInfo().getHistoryLength());
+        Workflow.continueAsNew(new BuddySessionState(completedTurns, pipeline.getWorkerTaskQueue()));
+    }
+    
+    @Override
+    public String chat(String userInput) {
+        turnLock.lock();
+        try {
+            logger.info("Processing session turn {}", completedTurns + 1);
+            String response = pipeline.processTurn(userInput);
+            completedTurns++;
+            return response;
+        } finally {
+            turnLock.unlock();
+        }
+    }
+    
+    @Override
+    public void validateChat(String userInput) {
+        if (ended) {
+            throw new IllegalStateException("Session has ended");
+        }
+    }
+    
+    @Override
+    public void endSession() {
+        ended = true;
+    }
+    
+    @Override
+    public long getCompletedTurns() {
+        return completedTurns;
+    }
+    
+    private boolean shouldContinueAsNew() {
+        return Workflow.getInfo().isContinueAsNewSuggested()
+                || Workflow.getInfo().getHistoryLength() >= MAX_HISTORY_LENGTH;
+    }
+}
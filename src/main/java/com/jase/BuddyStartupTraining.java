@@ -0,0 +1,73 @@
+package com.jase;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.uber.m3.tally.Scope;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.serviceclient.WorkflowServiceStubs;
+import io.temporal.serviceclient.WorkflowServiceStubsOptions;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerFactory;
+
+/**
+ * Training run for the class-data-sharing archive built by the {@code cds} profile.
+ * Goes through the worker's startup the way {@link BuddyApplication} does and runs a few turns
+ * against the stub OpenAI server, so the classes of startup and of the first turns are loaded
+ * and end up in the archive. Needs neither a Temporal server nor an API key: the service stubs
+ * connect lazily and the worker is never started.
+ */
+public class BuddyStartupTraining {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyStartupTraining.class);
+    private static final String TASK_QUEUE = "buddy-training";
+    private static final String[] TURNS = {
+            "hello",
+            "what's the weather in Paris?",
+            "explain how a connection pool works"
+    };
+    
+    public static void main(String[] args) {
+        LogbackConfig.configure();
+        
+        Scope metricsScope = BuddyMetrics.newTemporalScope(1);
+        WorkflowServiceStubs service = WorkflowServiceStubs.newServiceStubs(
+                WorkflowServiceStubsOptions.newBuilder()
+                        .setMetricsScope(metricsScope)
+                        .build());
+        WorkflowClient client = WorkflowClient.newInstance(service);
+        WorkerFactory factory = WorkerFactory.newInstance(client);
+        Worker worker = factory.newWorker(TASK_QUEUE, BuddyWorkerConfig.fromEnv().toWorkerOptions());
+        StageExecutionMode stageMode = StageExecutionMode.fromEnv();
+        worker.registerWorkflowImplementationFactory(BuddyWorkflow.class, () -> new BuddyWorkflowImpl(stageMode));
+        worker.registerWorkflowImplementationFactory(BuddySessionWorkflow.class,
+                () -> new BuddySessionWorkflowImpl(stageMode));
+        client.newWorkflowStub(BuddySessionWorkflow.class, WorkflowOptions.newBuilder()
+                .setTaskQueue(TASK_QUEUE)
+                .setWorkflowId("buddy-training")
+                .build());
+        
+        try (StubOpenAiServer stub = new StubOpenAiServer()) {
+            BuddyActivities activities = new BuddyActivities("training", stub.getBaseUrl());
+            worker.registerActivitiesImplementations(activities);
+            // Where the worker would start polling; compare runs with and without the archive
+            BuddyApplication.logReady();
+            for (String turn : TURNS) {
+                BuddyActivitiesInterface.PreprocessedInput input = activities.preprocessInput(turn);
+                activities.postprocessResponse(activities.generateIsolatedResponse("training", input));
+            }
+            activities.close();
+        }
+        
+        factory.shutdownNow();
+        factory.awaitTermination(10, TimeUnit.SECONDS);
+        service.shutdownNow();
+        BuddyMetrics.closeTemporalScope(metricsScope);
+        logger.info("Startup training run finished");
+        LogbackConfig.shutdown();
+    }
+}
@@ -0,0 +1,61 @@
+package com.jase;
+
+/**
+ * Pure text transformations for the preprocess and postprocess stages.
+ * Deterministic and side-effect free, so they are safe to call from workflow code.
+ */
+final class BuddyTextStages {
+    
+    static final String EMPTY_INPUT_RESPONSE = "Hello! How can I help you today?";
+    static final String EMPTY_OUTPUT_RESPONSE =
+            "I apologize, but I couldn't generate a proper response. Please try asking your question again.";
+    
+    private BuddyTextStages() {
+    }
+    
+    static String preprocess(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            return EMPTY_INPUT_RESPONSE;
+        }
+        
+        // Basic preprocessing: trim whitespace; redaction and intent tagging depend on the
+        // worker's configuration, so they run in activities
+        return input.trim();
+    }
+    
+    static String postprocess(String response) {
+        if (response == null || response.trim().isEmpty()) {
+            return EMPTY_OUTPUT_RESPONSE;
+        }
+        
+        // Basic post-processing: trim and ensure proper formatting
+        return response.trim();
+    }
+    
+    /**
+     * Normalize input for response cache lookups: lowercase, collapse
+     * whitespace and drop trailing punctuation, so near-exact repeats match
+     */
+    static String normalizeForCache(String input) {
+        StringBuilder normalized = new StringBuilder(input.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        int end = normalized.length();
+        while (end > 0 && "?!.".indexOf(normalized.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        normalized.setLength(end);
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,216 @@
+package com.jase;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+
+/**
+ * Tool execution layer for AiServices with per-tool timeouts, memoization and parallel steps.
+ * AiServices executes the tool calls of a model step one after another, so the runner also
+ * listens to model responses and starts every call of a multi-tool step on a bounded pool
+ * as soon as the step arrives; the sequential executors then only collect the results.
+ */
+final class BuddyToolRunner implements ChatModelListener, AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BuddyToolRunner.class);
+    
+    // Memoized results per tool are small strings
+    private static final long MEMO_MAX_BYTES = 1024 * 1024;
+    // Prefetched results AiServices never collected, e.g. after a failed step
+    private static final long ABANDONED_NANOS = TimeUnit.MINUTES.toNanos(5);
+    
+    private record RegisteredTool(String name, ToolExecutor executor, long timeoutMillis,
+            ResponseCache memo, boolean concurrent, boolean usesMemoryId) {
+    }
+    
+    private record Pending(Future<String> result, long startNanos) {
+    }
+    
+    private final Map<ToolSpecification, ToolExecutor> executors = new LinkedHashMap<>();
+    private final Map<String, RegisteredTool> tools = new HashMap<>();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+    
+    /**
+     * @param toolObject Object whose @Tool methods are exposed to the model
+     * @param threads    Maximum number of tool calls running at once
+     */
+    BuddyToolRunner(Object toolObject, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "buddy-tool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Method method : toolObject.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Tool.class)) {
+                register(toolObject, method);
+            }
+        }
+        logger.info("Tool runner ready with {} tools on {} threads", tools.size(), threads);
+    }
+    
+    static BuddyToolRunner fromEnv(Object toolObject) {
+        return new BuddyToolRunner(toolObject, BuddyEnv.getInt("BUDDY_TOOL_THREADS", 8));
+    }
+    
+    /**
+     * @return Tool map for AiServices.tools(...)
+     */
+    Map<ToolSpecification, ToolExecutor> executors() {
+        return Collections.unmodifiableMap(executors);
+    }
+    
+    @Override
+    public void onResponse(ChatModelResponseContext context) {
+        prefetch(context.chatResponse().aiMessage());
+    }
+    
+    /**
+     * Start every tool call of a model step at once.
+     * Steps with a single call, an unknown tool or a tool not marked concurrent are left to run in order.
+     * Calls of tools that take a memory id are not known until AiServices executes them, so they run then.
+     */
+    void prefetch(AiMessage message) {
+        if (message == null || !message.hasToolExecutionRequests()) {
+            return;
+        }
+        List<ToolExecutionRequest> requests = message.toolExecutionRequests();
+        if (requests.size() < 2) {
+            return;
+        }
+        for (ToolExecutionRequest request : requests) {
+            RegisteredTool tool = tools.get(request.name());
+            if (tool == null || !tool.concurrent()) {
+                return;
+            }
+        }
+        discardAbandoned();
+        for (ToolExecutionRequest request : requests) {
+            RegisteredTool tool = tools.get(request.name());
+            // execute() looks the result up again, so only that lookup counts in the memo's stats
+            boolean memoized = tool.memo() != null && tool.memo().contains(memoKey(tool, request, null));
+            if (!tool.usesMemoryId() && !memoized) {
+                pending.computeIfAbsent(pendingKey(request),
+                        key -> new Pending(submit(tool, request, null), System.nanoTime()));
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+    
+    private void register(Object toolObject, Method method) {
+        ToolSpecification specification = ToolSpecifications.toolSpecificationFrom(method);
+        ToolPolicy policy = method.getAnnotation(ToolPolicy.class);
+        long timeoutMillis = policy != null ? policy.timeoutMillis() : 10_000;
+        long cacheTtlSeconds = policy != null ? policy.cacheTtlSeconds() : 0;
+        boolean concurrent = policy != null && policy.concurrent();
+        
+        boolean usesMemoryId = false;
+        for (Parameter parameter : method.getParameters()) {
+            usesMemoryId |= parameter.isAnnotationPresent(ToolMemoryId.class);
+        }
+        
+        RegisteredTool tool = new RegisteredTool(
+                specification.name(),
+                InstrumentedTools.timed(specification.name(), new DefaultToolExecutor(toolObject, method)),
+                timeoutMillis,
+                cacheTtlSeconds > 0 ? new InMemoryResponseCache(InMemoryResponseCache.EvictionPolicy.LRU,
+                        Duration.ofSeconds(cacheTtlSeconds), MEMO_MAX_BYTES) : null,
+                concurrent,
+                usesMemoryId);
+        tools.put(tool.name(), tool);
+        executors.put(specification, (request, memoryId) -> execute(tool, request, memoryId));
+    }
+    
+    private String execute(RegisteredTool tool, ToolExecutionRequest request, Object memoryId) {
+        if (tool.memo() != null) {
+            String memoized = tool.memo().get(memoKey(tool, request, memoryId));
+            if (memoized != null) {
+                BuddyMetrics.recordToolCacheHit(tool.name());
+                return memoized;
+            }
+        }
+        
+        Pending prefetched = pending.remove(pendingKey(request));
+        Future<String> future = prefetched != null ? prefetched.result() : submit(tool, request, memoryId);
+        long startNanos = prefetched != null ? prefetched.startNanos() : System.nanoTime();
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(tool.timeoutMillis()) - (System.nanoTime() - startNanos);
+        try {
+            String result = future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+            if (tool.memo() != null && result != null) {
+                tool.memo().put(memoKey(tool, request, memoryId), result, System.nanoTime() - startNanos);
+            }
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            BuddyMetrics.recordToolTimeout(tool.name());
+            logger.warn("Tool {} timed out after {} ms", tool.name(), tool.timeoutMillis());
+            return String.format("Tool %s did not respond within %d ms", tool.name(), tool.timeoutMillis());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tool " + tool.name(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Tool " + tool.name() + " failed", e.getCause());
+        }
+    }
+    
+    private Future<String> submit(RegisteredTool tool, ToolExecutionRequest request, Object memoryId) {
+        return pool.submit(() -> tool.executor().execute(request, memoryId));
+    }
+    
+    private void discardAbandoned() {
+        long now = System.nanoTime();
+        pending.values().removeIf(entry -> {
+            boolean abandoned = now - entry.startNanos() > ABANDONED_NANOS;
+            if (abandoned) {
+                entry.result().cancel(true);
+            }
+            return abandoned;
+        });
+    }
+    
+    private static String pendingKey(ToolExecutionRequest request) {
+        return request.id() != null ? request.id() : request.name() + ':' + request.arguments();
+    }
+    
+    // Results of tools that take a memory id are only reused within the same conversation
+    private static String memoKey(RegisteredTool tool, ToolExecutionRequest request, Object memoryId) {
+        String key = request.name() + ':' + request.arguments();
+        return tool.usesMemoryId() ? memoryId + ":" + key : key;
+    }
+}
@@ -0,0 +1,185 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+
+import io.temporal.activity.ActivityOptions;
+import io.temporal.activity.LocalActivityOptions;
+import io.temporal.api.enums.v1.TimeoutType;
+import io.temporal.common.RetryOptions;
+import io.temporal.failure.ActivityFailure;
+import io.temporal.failure.TimeoutFailure;
+import io.temporal.workflow.Workflow;
+import io.temporal.workflow.unsafe.WorkflowUnsafe;
+
+/**
+ * Workflow-side helper that runs a single conversation turn through the
+ * preprocess / generate / postprocess stages.
+ * Must only be constructed and used from workflow code.
+ */
+class BuddyTurnPipeline {
+
+    private static final Logger logger = Workflow.getLogger(BuddyTurnPipeline.class);
+
+    static final String FALLBACK_RESPONSE =
+            "I apologize, but I'm having trouble processing your request right now. Please try again.";
+
+    // Activity options with timeout and retry policy
+    private final ActivityOptions activityOptions = ActivityOptions.newBuilder()
+            .setStartToCloseTimeout(Duration.ofMinutes(2))
+            .setRetryOptions(RetryOptions.newBuilder()
+                    .setInitialInterval(Duration.ofSeconds(1))
+                    .setMaximumInterval(Duration.ofSeconds(10))
+                    .setMaximumAttempts(3)
+                    .build())
+            .build();
+
+    // The cheap stages only trim strings, so local activities get a short timeout
+    private final LocalActivityOptions localActivityOptions = LocalActivityOptions.newBuilder()
+            .setStartToCloseTimeout(Duration.ofSeconds(10))
+            .setRetryOptions(activityOptions.getRetryOptions())
+            .build();
+
+    // Create activity stubs
+    private final BuddyActivitiesInterface activities =
+            Workflow.newActivityStub(BuddyActivitiesInterface.class, activityOptions);
+    private final BuddyActivitiesInterface localActivities =
+            Workflow.newLocalActivityStub(BuddyActivitiesInterface.class, localActivityOptions);
+
+    private final StageExecutionMode stageMode;
+
+    // Session affinity: the worker queue generate activities are pinned to, and how long they wait for it
+    private final Duration affinityTimeout;
+    private final SessionAffinity.WorkerQueueActivities workerQueues =
+            Workflow.newActivityStub(SessionAffinity.WorkerQueueActivities.class, activityOptions);
+    private String workerTaskQueue;
+
+    /**
+     * @param stageMode How the preprocess and postprocess stages are executed
+     */
+    BuddyTurnPipeline(StageExecutionMode stageMode) {
+        this(stageMode, null);
+    }
+
+    /**
+     * @param affinityTimeout Schedule-to-start timeout of turns pinned to a worker, or null
+     *                        to let any worker generate each turn
+     */
+    BuddyTurnPipeline(StageExecutionMode stageMode, Duration affinityTimeout) {
+        this.stageMode = stageMode;
+        this.affinityTimeout = affinityTimeout;
+    }
+
+    /**
+     * @return Task queue of the worker turns are pinned to, or null
+     */
+    String getWorkerTaskQueue() {
+        return workerTaskQueue;
+    }
+
+    void setWorkerTaskQueue(String workerTaskQueue) {
+        this.workerTaskQueue = workerTaskQueue;
+    }
+
+    /**
+     * Run one turn of the conversation
+     * @param userInput The input text from the user
+     * @return The final response, or a fallback response if any stage failed
+     */
+    String processTurn(String userInput) {
+        long startMillis = Workflow.currentTimeMillis();
+        try {
+            // Step 1: Preprocess the input
+            BuddyActivitiesInterface.PreprocessedInput preprocessedInput = preprocess(userInput);
+            logger.info("Input preprocessed successfully");
+
+            // Step 2: Generate response using LangChain4j
+            String response = generate(preprocessedInput);
+            logger.info("Response generated successfully");
+
+            // Step 3: Post-process the response
+            String finalResponse = postprocess(response);
+            logger.info("Response post-processed successfully");
+
+            return finalResponse;
+
+        } catch (Exception e) {
+            logger.error("Error in workflow execution", e);
+            // Return a fallback response
+            return FALLBACK_RESPONSE;
+        } finally {
+            // The workflow metrics scope is silent during replay, so each turn is counted once
+            Workflow.getMetricsScope()
+                    .tagged(Map.of("stage_mode", stageMode.name()))
+                    .timer("buddy_turn_latency")
+                    .record(com.uber.m3.util.Duration.ofMillis(Workflow.currentTimeMillis() - startMillis));
+        }
+    }
+
+    private BuddyActivitiesInterface.PreprocessedInput preprocess(String userInput) {
+        return switch (stageMode) {
+            case ACTIVITY -> activities.preprocessInput(userInput);
+            case LOCAL_ACTIVITY -> localActivities.preprocessInput(userInput);
+            // Only the deterministic cleanup runs in workflow code; generate tags and redacts the input
+            case WORKFLOW -> new BuddyActivitiesInterface.PreprocessedInput(
+                    inline("preprocess", () -> BuddyTextStages.preprocess(userInput)), null);
+        };
+    }
+
+    private String generate(BuddyActivitiesInterface.PreprocessedInput input) {
+        if (affinityTimeout == null) {
+            return activities.generateResponse(input);
+        }
+        if (workerTaskQueue == null) {
+            workerTaskQueue = workerQueues.workerTaskQueue();
+            logger.info("Session pinned to {}", workerTaskQueue);
+        }
+        try {
+            return pinnedActivities().generateResponse(input);
+        } catch (ActivityFailure e) {
+            if (!(e.getCause() instanceof TimeoutFailure timeout)
+                    || timeout.getTimeoutType() != TimeoutType.TIMEOUT_TYPE_SCHEDULE_TO_START) {
+                throw e;
+            }
+            // Nobody polls the pinned queue any more; pin the session to a live worker
+            logger.warn("No worker picked up the turn on {} within {}, pinning again", workerTaskQueue, affinityTimeout);
+            Workflow.getMetricsScope().counter("buddy_session_failovers").inc(1);
+            workerTaskQueue = workerQueues.workerTaskQueue();
+            logger.info("Session pinned to {}", workerTaskQueue);
+            try {
+                return pinnedActivities().generateResponse(input);
+            } catch (ActivityFailure again) {
+                workerTaskQueue = null;
+                throw again;
+            }
+        }
+    }
+
+    private BuddyActivitiesInterface pinnedActivities() {
+        return Workflow.newActivityStub(BuddyActivitiesInterface.class, ActivityOptions.newBuilder(activityOptions)
+                .setTaskQueue(workerTaskQueue)
+                .setScheduleToStartTimeout(affinityTimeout)
+                .build());
+    }
+
+    private String postprocess(String response) {
+        return switch (stageMode) {
+            case ACTIVITY -> activities.postprocessResponse(response);
+            case LOCAL_ACTIVITY -> localActivities.postprocessResponse(response);
+            case WORKFLOW -> inline("postprocess", () -> BuddyTextStages.postprocess(response));
+        };
+    }
+
+    // Inline stages run no activity, so they are timed here; skipped on replay so each counts once
+    private static String inline(String stage, Supplier<String> call) {
+        long start = System.nanoTime();
+        String result = call.get();
+        if (!WorkflowUnsafe.isReplaying()) {
+            BuddyMetrics.recordStage(stage, System.nanoTime() - start);
+        }
+        return result;
+    }
+}
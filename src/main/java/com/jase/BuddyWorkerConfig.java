@@ -0,0 +1,115 @@
+package com.jase;
+
+import io.temporal.worker.WorkerOptions;
+
+/**
+ * Concurrency settings for the Buddy worker.
+ * A value of 0 keeps the Temporal SDK default for that setting.
+ */
+public final class BuddyWorkerConfig {
+    
+    private final int maxConcurrentActivities;
+    private final int maxConcurrentWorkflowTasks;
+    private final int maxConcurrentLocalActivities;
+    private final int workflowTaskPollers;
+    private final int activityTaskPollers;
+    private final boolean virtualThreadActivities;
+    
+    public BuddyWorkerConfig(int maxConcurrentActivities, int maxConcurrentWorkflowTasks,
+            int maxConcurrentLocalActivities, int workflowTaskPollers, int activityTaskPollers,
+            boolean virtualThreadActivities) {
+        this.maxConcurrentActivities = requireNonNegative("maxConcurrentActivities", maxConcurrentActivities);
+        this.maxConcurrentWorkflowTasks = requireNonNegative("maxConcurrentWorkflowTasks", maxConcurrentWorkflowTasks);
+        this.maxConcurrentLocalActivities =
+                requireNonNegative("maxConcurrentLocalActivities", maxConcurrentLocalActivities);
+        this.workflowTaskPollers = requireNonNegative("workflowTaskPollers", workflowTaskPollers);
+        this.activityTaskPollers = requireNonNegative("activityTaskPollers", activityTaskPollers);
+        this.virtualThreadActivities = virtualThreadActivities;
+    }
+    
+    /**
+     * @return Settings read from the BUDDY_WORKER_* environment variables
+     */
+    public static BuddyWorkerConfig fromEnv() {
+        return new BuddyWorkerConfig(
+                BuddyEnv.getInt("BUDDY_WORKER_MAX_ACTIVITIES", 0),
+                BuddyEnv.getInt("BUDDY_WORKER_MAX_WORKFLOW_TASKS", 0),
+                BuddyEnv.getInt("BUDDY_WORKER_MAX_LOCAL_ACTIVITIES", 0),
+                BuddyEnv.getInt("BUDDY_WORKER_WORKFLOW_POLLERS", 0),
+                BuddyEnv.getInt("BUDDY_WORKER_ACTIVITY_POLLERS", 0),
+                BuddyEnv.getBoolean("BUDDY_WORKER_VIRTUAL_THREADS", false));
+    }
+    
+    /**
+     * @return Worker options carrying every non-default setting
+     */
+    public WorkerOptions toWorkerOptions() {
+        WorkerOptions.Builder builder = WorkerOptions.newBuilder();
+        if (maxConcurrentActivities > 0) {
+            builder.setMaxConcurrentActivityExecutionSize(maxConcurrentActivities);
+        }
+        if (maxConcurrentWorkflowTasks > 0) {
+            builder.setMaxConcurrentWorkflowTaskExecutionSize(maxConcurrentWorkflowTasks);
+        }
+        if (maxConcurrentLocalActivities > 0) {
+            builder.setMaxConcurrentLocalActivityExecutionSize(maxConcurrentLocalActivities);
+        }
+        if (workflowTaskPollers > 0) {
+            builder.setMaxConcurrentWorkflowTaskPollers(workflowTaskPollers);
+        }
+        if (activityTaskPollers > 0) {
+            builder.setMaxConcurrentActivityTaskPollers(activityTaskPollers);
+        }
+        if (virtualThreadActivities) {
+            // Activities are mostly waiting on the model, so slots are cheap on virtual threads
+            builder.setUsingVirtualThreadsOnActivityWorker(true);
+            builder.setUsingVirtualThreadsOnLocalActivityWorker(true);
+        }
+        return builder.build();
+    }
+    
+    public int getMaxConcurrentActivities() {
+        return maxConcurrentActivities;
+    }
+    
+    public int getMaxConcurrentWorkflowTasks() {
+        return maxConcurrentWorkflowTasks;
+    }
+    
+    public int getMaxConcurrentLocalActivities() {
+        return maxConcurrentLocalActivities;
+    }
+    
+    public int getWorkflowTaskPollers() {
+        return workflowTaskPollers;
+    }
+    
+    public int getActivityTaskPollers() {
+        return activityTaskPollers;
+    }
+    
+    public boolean isVirtualThreadActivities() {
+        return virtualThreadActivities;
+    }
+    
+    @Override
+    public String toString() {
+        return "activities=" + describe(maxConcurrentActivities)
+                + ", workflowTasks=" + describe(maxConcurrentWorkflowTasks)
+                + ", localActivities=" + describe(maxConcurrentLocalActivities)
+                + ", workflowPollers=" + describe(workflowTaskPollers)
+                + ", activityPollers=" + describe(activityTaskPollers)
+                + ", virtualThreads=" + virtualThreadActivities;
+    }
+    
+    private static String describe(int value) {
+        return value > 0 ? Integer.toString(value) : "default";
+    }
+    
+    private static int requireNonNegative(String name, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + value);
+        }
+        return value;
+    }
+}
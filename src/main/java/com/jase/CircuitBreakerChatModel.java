@@ -0,0 +1,101 @@
+package com.jase;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import dev.langchain4j.exception.NonRetriableException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+/**
+ * Chat model that goes through a {@link ModelCircuitBreaker}
+ * Each request is abandoned after the breaker's adaptive timeout, so a slow provider holds
+ * the caller's thread (and activity slot) for a bounded time, and while the breaker is open
+ * requests fail right away without reaching the provider.
+ */
+class CircuitBreakerChatModel implements ChatModel {
+    
+    // Requests run on virtual threads, so the caller can stop waiting for them
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    private final ChatModel delegate;
+    private final ModelCircuitBreaker breaker;
+    
+    CircuitBreakerChatModel(ChatModel delegate, ModelCircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+    
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        long ticket = breaker.acquire();
+        long timeout = breaker.timeoutNanos();
+        long start = System.nanoTime();
+        Future<ChatResponse> attempt = executor.submit(() -> delegate.chat(request));
+        try {
+            ChatResponse response = attempt.get(timeout, TimeUnit.NANOSECONDS);
+            breaker.onSuccess(ticket, System.nanoTime() - start);
+            return response;
+        } catch (java.util.concurrent.TimeoutException e) {
+            breaker.onFailure(ticket, "timeout");
+            throw new TimeoutException(String.format("%s did not answer within %d ms",
+                    breaker.model(), TimeUnit.NANOSECONDS.toMillis(timeout)));
+        } catch (ExecutionException e) {
+            RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+                    ? runtime : new IllegalStateException(e.getCause());
+            if (healthy(cause)) {
+                breaker.onIgnored(ticket);
+            } else {
+                breaker.onFailure(ticket, "failure");
+            }
+            throw cause;
+        } catch (InterruptedException e) {
+            breaker.onIgnored(ticket);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the model", e);
+        } finally {
+            attempt.cancel(true);
+        }
+    }
+    
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+    
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+    
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+    
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+    
+    /**
+     * Errors the provider answered deliberately, such as invalid requests and rate limits;
+     * they don't open the breaker
+     */
+    static boolean healthy(Throwable error) {
+        return error instanceof NonRetriableException || error instanceof RateLimitException;
+    }
+}
@@ -0,0 +1,110 @@
+package com.jase;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+/**
+ * Streaming chat model that goes through a {@link ModelCircuitBreaker}
+ * A stream that has not completed within the breaker's timeout is failed towards the handler;
+ * whatever the provider sends afterwards is dropped.
+ */
+class CircuitBreakerStreamingChatModel implements StreamingChatModel {
+    
+    private final StreamingChatModel delegate;
+    private final ModelCircuitBreaker breaker;
+    
+    CircuitBreakerStreamingChatModel(StreamingChatModel delegate, ModelCircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+    
+    @Override
+    public void chat(ChatRequest request, StreamingChatResponseHandler handler) {
+        long ticket;
+        try {
+            ticket = breaker.acquire();
+        } catch (ModelCircuitBreaker.CircuitOpenException e) {
+            handler.onError(e);
+            return;
+        }
+        long timeout = breaker.timeoutNanos();
+        long start = System.nanoTime();
+        // Set by whichever comes first: completion, error or timeout
+        AtomicBoolean done = new AtomicBoolean();
+        CompletableFuture.runAsync(() -> {
+            if (done.compareAndSet(false, true)) {
+                breaker.onFailure(ticket, "timeout");
+                handler.onError(new TimeoutException(String.format("%s did not complete the stream within %d ms",
+                        breaker.model(), TimeUnit.NANOSECONDS.toMillis(timeout))));
+            }
+        }, CompletableFuture.delayedExecutor(timeout, TimeUnit.NANOSECONDS));
+        
+        StreamingChatResponseHandler guarded = new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (!done.get()) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+            
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (done.compareAndSet(false, true)) {
+                    breaker.onSuccess(ticket, System.nanoTime() - start);
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                if (done.compareAndSet(false, true)) {
+                    if (CircuitBreakerChatModel.healthy(error)) {
+                        breaker.onIgnored(ticket);
+                    } else {
+                        breaker.onFailure(ticket, "failure");
+                    }
+                    handler.onError(error);
+                }
+            }
+        };
+        try {
+            delegate.chat(request, guarded);
+        } catch (RuntimeException e) {
+            guarded.onError(e);
+        }
+    }
+    
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+    
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+    
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+    
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
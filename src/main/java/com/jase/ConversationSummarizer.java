@@ -0,0 +1,188 @@
+package com.jase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+/**
+ * Rolling per-conversation summary of turns that no longer fit in the context window
+ * Evicted turns are folded into the summary on a background thread, one fold at a time per
+ * conversation, so the request that evicted them never waits for the model. Without a model,
+ * or when the model fails, the oldest lines are dropped from a plain transcript instead.
+ */
+class ConversationSummarizer implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummarizer.class);
+    
+    // Summaries are kept in the chat memory store next to their conversation
+    private static final String SUMMARY_KEY_SUFFIX = "#summary";
+    private static final int MAX_TRANSCRIPT_LINE_CHARS = 300;
+    
+    private static final String INSTRUCTIONS = """
+            You maintain a running summary of a conversation between a user and Buddy, an AI assistant.
+            Merge the new messages into the current summary. Keep names, preferences, facts, decisions,
+            results of tool calls and open questions; drop greetings and small talk.
+            Reply with the updated summary only, in at most %d words.""";
+    
+    /**
+     * Summary text, or null before anything was folded, and the estimated prompt tokens taken
+     * out of the context window for this conversation so far
+     */
+    record Summary(String text, long removedTokens) {
+        
+        static final Summary EMPTY = new Summary(null, 0);
+    }
+    
+    private final Supplier<? extends ChatModel> model;
+    private final ChatMemoryStore store;
+    private final int maxSummaryTokens;
+    private final ExecutorService executor;
+    private final Map<String, Summary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> folds = new ConcurrentHashMap<>();
+    
+    /**
+     * @param model            Model that writes summaries, asked for on the first fold, or null
+     *                         for a truncated transcript
+     * @param store            Store the summaries are persisted in
+     * @param maxSummaryTokens Upper bound for the summary's size
+     */
+    ConversationSummarizer(Supplier<? extends ChatModel> model, ChatMemoryStore store, int maxSummaryTokens) {
+        this.model = model;
+        this.store = store;
+        this.maxSummaryTokens = maxSummaryTokens;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "buddy-summarizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * @return The conversation's current summary, loaded from the store on first use
+     */
+    Summary summary(Object memoryId) {
+        String key = memoryId.toString();
+        Summary summary = summaries.get(key);
+        if (summary != null) {
+            return summary;
+        }
+        // Conversations without a summary aren't cached, so the map only holds summarized ones
+        Summary stored = load(key);
+        return stored == Summary.EMPTY ? stored : summaries.computeIfAbsent(key, id -> stored);
+    }
+    
+    /**
+     * Count prompt tokens removed from the context without folding, e.g. trimmed tool output
+     */
+    void recordRemoved(Object memoryId, long tokens) {
+        summaries.compute(memoryId.toString(), (key, summary) -> {
+            Summary current = summary != null ? summary : load(key);
+            return new Summary(current.text(), current.removedTokens() + tokens);
+        });
+    }
+    
+    /**
+     * Fold evicted messages into the conversation's summary in the background
+     * @return Completes once the summary includes the messages, and any folded before them
+     */
+    CompletableFuture<Void> fold(Object memoryId, List<ChatMessage> evicted, long evictedTokens) {
+        String key = memoryId.toString();
+        if (evicted.isEmpty()) {
+            return folds.getOrDefault(key, CompletableFuture.completedFuture(null));
+        }
+        recordRemoved(key, evictedTokens);
+        List<ChatMessage> messages = List.copyOf(evicted);
+        CompletableFuture<Void> fold = folds.compute(key, (id, previous) -> {
+            CompletableFuture<Void> after = previous != null ? previous : CompletableFuture.completedFuture(null);
+            return after.thenRunAsync(() -> update(key, messages), executor)
+                    .exceptionally(e -> {
+                        logger.warn("Failed to fold {} messages into the summary of {}", messages.size(), key, e);
+                        return null;
+                    });
+        });
+        fold.whenComplete((ignored, error) -> folds.remove(key, fold));
+        return fold;
+    }
+    
+    void clear(Object memoryId) {
+        String key = memoryId.toString();
+        summaries.remove(key);
+        store.deleteMessages(key + SUMMARY_KEY_SUFFIX);
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+    
+    private void update(String key, List<ChatMessage> evicted) {
+        String previous = summary(key).text();
+        String transcript = transcript(evicted);
+        String updated = null;
+        if (model != null) {
+            try {
+                updated = model.get().chat(List.of(
+                        SystemMessage.from(String.format(INSTRUCTIONS, maxSummaryTokens * 3 / 4)),
+                        UserMessage.from("Current summary:\n" + (previous != null ? previous : "(none)")
+                                + "\n\nNew messages:\n" + transcript)))
+                        .aiMessage().text();
+            } catch (RuntimeException e) {
+                logger.warn("Summary model failed for {}, keeping a truncated transcript", key, e);
+            }
+        }
+        if (updated == null || updated.isBlank()) {
+            updated = previous != null ? previous + "\n" + transcript : transcript;
+        }
+        // Keep the most recent part if the summary outgrew its budget
+        int maxChars = maxSummaryTokens * 4;
+        if (updated.length() > maxChars) {
+            updated = updated.substring(updated.length() - maxChars);
+        }
+        
+        String text = updated.strip();
+        summaries.compute(key, (id, summary) -> new Summary(text, summary != null ? summary.removedTokens() : 0));
+        store.updateMessages(key + SUMMARY_KEY_SUFFIX, List.of(SystemMessage.from(text)));
+        logger.debug("Folded {} messages into the summary of {} ({} chars)", evicted.size(), key, text.length());
+    }
+    
+    private Summary load(String key) {
+        List<ChatMessage> stored = store.getMessages(key + SUMMARY_KEY_SUFFIX);
+        return !stored.isEmpty() && stored.get(0) instanceof SystemMessage message
+                ? new Summary(message.text(), 0)
+                : Summary.EMPTY;
+    }
+    
+    private static String transcript(List<ChatMessage> messages) {
+        StringBuilder transcript = new StringBuilder();
+        for (ChatMessage message : messages) {
+            String line = switch (message) {
+                case UserMessage user when user.hasSingleText() -> "User: " + user.singleText();
+                case AiMessage ai when ai.text() != null -> "Buddy: " + ai.text();
+                case ToolExecutionResultMessage tool -> "Tool " + tool.toolName() + ": " + tool.text();
+                default -> null;
+            };
+            if (line != null) {
+                if (line.length() > MAX_TRANSCRIPT_LINE_CHARS) {
+                    line = line.substring(0, MAX_TRANSCRIPT_LINE_CHARS) + "...";
+                }
+                transcript.append(line.replace('\n', ' ')).append('\n');
+            }
+        }
+        return transcript.toString().strip();
+    }
+}
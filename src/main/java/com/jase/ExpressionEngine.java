@@ -0,0 +1,350 @@
+package com.jase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Arithmetic expression engine for the calculate tool
+ * Expressions are tokenized and parsed into an immutable AST once, kept in a bounded LRU
+ * cache, and evaluated without allocating, so a compiled expression is safe to share
+ * between threads. Supports + - * / % ^, unary minus, parentheses, the constants pi and e,
+ * and the functions listed in {@link #UNARY_FUNCTIONS} and {@link #BINARY_FUNCTIONS}.
+ */
+final class ExpressionEngine {
+    
+    /**
+     * A compiled expression
+     */
+    interface Expression {
+        double evaluate();
+    }
+    
+    private record Constant(double value) implements Expression {
+        public double evaluate() {
+            return value;
+        }
+    }
+    
+    private record Negate(Expression operand) implements Expression {
+        public double evaluate() {
+            return -operand.evaluate();
+        }
+    }
+    
+    private record Unary(DoubleUnaryOperator function, Expression operand) implements Expression {
+        public double evaluate() {
+            return function.applyAsDouble(operand.evaluate());
+        }
+    }
+    
+    private record Binary(DoubleBinaryOperator operator, Expression left, Expression right) implements Expression {
+        public double evaluate() {
+            return operator.applyAsDouble(left.evaluate(), right.evaluate());
+        }
+    }
+    
+    static final Map<String, DoubleUnaryOperator> UNARY_FUNCTIONS = Map.ofEntries(
+            Map.entry("sqrt", Math::sqrt),
+            Map.entry("cbrt", Math::cbrt),
+            Map.entry("abs", Math::abs),
+            Map.entry("exp", Math::exp),
+            Map.entry("ln", Math::log),
+            Map.entry("log", Math::log10),
+            Map.entry("log2", value -> Math.log(value) / Math.log(2)),
+            Map.entry("sin", Math::sin),
+            Map.entry("cos", Math::cos),
+            Map.entry("tan", Math::tan),
+            Map.entry("asin", Math::asin),
+            Map.entry("acos", Math::acos),
+            Map.entry("atan", Math::atan),
+            Map.entry("floor", Math::floor),
+            Map.entry("ceil", Math::ceil),
+            Map.entry("round", value -> (double) Math.round(value)));
+    
+    // min and max also accept more than two arguments
+    static final Map<String, DoubleBinaryOperator> BINARY_FUNCTIONS = Map.of(
+            "min", Math::min,
+            "max", Math::max,
+            "pow", Math::pow,
+            "atan2", Math::atan2);
+    
+    private static final Map<String, Double> CONSTANTS = Map.of(
+            "pi", Math.PI,
+            "e", Math.E);
+    
+    // Parsing and evaluation recurse, so the tree must stay shallow enough for the stack:
+    // nesting is capped, and the length bounds chains such as 1 + 1 + ... + 1
+    static final int MAX_NESTING = 100;
+    static final int MAX_LENGTH = 4096;
+    
+    private final Map<String, Expression> cache;
+    
+    /**
+     * @param cacheSize Maximum number of compiled expressions kept
+     */
+    ExpressionEngine(int cacheSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    static ExpressionEngine fromEnv() {
+        return new ExpressionEngine(BuddyEnv.getInt("BUDDY_CALC_CACHE_SIZE", 1024));
+    }
+    
+    /**
+     * Evaluate an expression, compiling it on first use
+     * @throws IllegalArgumentException If the expression is malformed
+     */
+    double evaluate(String expression) {
+        return compile(expression).evaluate();
+    }
+    
+    /**
+     * @return The cached compiled form of the expression
+     * @throws IllegalArgumentException If the expression is malformed
+     */
+    Expression compile(String expression) {
+        String key = expression.trim();
+        synchronized (cache) {
+            Expression compiled = cache.get(key);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        Expression compiled = parse(key);
+        synchronized (cache) {
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+    
+    /**
+     * Parse an expression without going through the cache
+     * @throws IllegalArgumentException If the expression is malformed
+     */
+    static Expression parse(String expression) {
+        return new Parser(expression).parse();
+    }
+    
+    /**
+     * Recursive descent parser; each method handles one precedence level
+     */
+    private static final class Parser {
+        
+        private final String input;
+        private int pos;
+        private int nesting;
+        
+        Parser(String input) {
+            this.input = input;
+        }
+        
+        Expression parse() {
+            if (input.isBlank()) {
+                throw new IllegalArgumentException("Empty expression");
+            }
+            if (input.length() > MAX_LENGTH) {
+                throw new IllegalArgumentException("Expression longer than " + MAX_LENGTH + " characters");
+            }
+            Expression expression = sum();
+            skipWhitespace();
+            if (pos < input.length()) {
+                throw error("Unexpected '" + input.charAt(pos) + "'");
+            }
+            return expression;
+        }
+        
+        // sum := product (('+' | '-') product)*
+        private Expression sum() {
+            Expression left = product();
+            while (true) {
+                if (accept('+')) {
+                    left = new Binary(Double::sum, left, product());
+                } else if (accept('-')) {
+                    left = new Binary((a, b) -> a - b, left, product());
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        // product := unary (('*' | '/' | '%') unary)*
+        private Expression product() {
+            Expression left = unary();
+            while (true) {
+                if (accept('*')) {
+                    left = new Binary((a, b) -> a * b, left, unary());
+                } else if (accept('/')) {
+                    left = new Binary((a, b) -> a / b, left, unary());
+                } else if (accept('%')) {
+                    left = new Binary((a, b) -> a % b, left, unary());
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        // unary := ('-' | '+') unary | power
+        private Expression unary() {
+            enter();
+            try {
+                if (accept('-')) {
+                    return new Negate(unary());
+                }
+                if (accept('+')) {
+                    return unary();
+                }
+                return power();
+            } finally {
+                nesting--;
+            }
+        }
+        
+        // power := primary ('^' unary)?, right associative so 2^3^2 = 2^9 and -2^2 = -4
+        private Expression power() {
+            Expression base = primary();
+            if (accept('^')) {
+                return new Binary(Math::pow, base, unary());
+            }
+            return base;
+        }
+        
+        // primary := number | constant | function '(' arguments ')' | '(' sum ')'
+        private Expression primary() {
+            skipWhitespace();
+            if (pos >= input.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = input.charAt(pos);
+            if (accept('(')) {
+                Expression inner = sum();
+                expect(')');
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return number();
+            }
+            if (Character.isLetter(c)) {
+                return identifier();
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+        
+        private Expression number() {
+            int start = pos;
+            while (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+                pos++;
+            }
+            // Optional exponent, e.g. 1.5e-3
+            if (pos < input.length() && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+                int exponent = pos + 1;
+                if (exponent < input.length() && (input.charAt(exponent) == '+' || input.charAt(exponent) == '-')) {
+                    exponent++;
+                }
+                if (exponent < input.length() && Character.isDigit(input.charAt(exponent))) {
+                    pos = exponent;
+                    while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
+                        pos++;
+                    }
+                }
+            }
+            String text = input.substring(start, pos);
+            try {
+                return new Constant(Double.parseDouble(text));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("Invalid number '" + text + "'");
+            }
+        }
+        
+        private Expression identifier() {
+            int start = pos;
+            while (pos < input.length() && Character.isLetterOrDigit(input.charAt(pos))) {
+                pos++;
+            }
+            String name = input.substring(start, pos).toLowerCase();
+            if (!accept('(')) {
+                Double constant = CONSTANTS.get(name);
+                if (constant == null) {
+                    pos = start;
+                    throw error("Unknown constant '" + name + "'");
+                }
+                return new Constant(constant);
+            }
+            
+            List<Expression> arguments = new ArrayList<>();
+            if (!accept(')')) {
+                do {
+                    arguments.add(sum());
+                } while (accept(','));
+                expect(')');
+            }
+            
+            DoubleUnaryOperator unary = UNARY_FUNCTIONS.get(name);
+            if (unary != null) {
+                requireArguments(name, arguments, 1, 1);
+                return new Unary(unary, arguments.get(0));
+            }
+            DoubleBinaryOperator binary = BINARY_FUNCTIONS.get(name);
+            if (binary == null) {
+                pos = start;
+                throw error("Unknown function '" + name + "'");
+            }
+            boolean variadic = name.equals("min") || name.equals("max");
+            requireArguments(name, arguments, 2, variadic ? Integer.MAX_VALUE : 2);
+            Expression result = arguments.get(0);
+            for (int i = 1; i < arguments.size(); i++) {
+                result = new Binary(binary, result, arguments.get(i));
+            }
+            return result;
+        }
+        
+        private void requireArguments(String name, List<Expression> arguments, int min, int max) {
+            if (arguments.size() < min || arguments.size() > max) {
+                throw new IllegalArgumentException(String.format("%s() takes %s argument%s, got %d",
+                        name, min == max ? min : "at least " + min, min == 1 && max == 1 ? "" : "s", arguments.size()));
+            }
+        }
+        
+        private boolean accept(char expected) {
+            skipWhitespace();
+            if (pos < input.length() && input.charAt(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+        
+        private void expect(char expected) {
+            if (!accept(expected)) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+        
+        // Every operand is parsed by unary(), so groups, function calls, exponents and unary
+        // operators each nest one level deeper
+        private void enter() {
+            if (++nesting > MAX_NESTING) {
+                throw error("Expression nested deeper than " + MAX_NESTING + " levels");
+            }
+        }
+        
+        private void skipWhitespace() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (pos + 1));
+        }
+    }
+}
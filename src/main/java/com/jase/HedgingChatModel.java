@@ -0,0 +1,157 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import dev.langchain4j.exception.NonRetriableException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+/**
+ * Chat model that hedges slow requests
+ * When a request has not completed within the model's recent p95 latency, the same request
+ * is sent again and whichever response arrives first is used; the other request is cancelled.
+ * The request only fails when both attempts do.
+ * Hedging only starts once enough latencies have been observed to estimate the percentile.
+ * The delegate should not retry by itself: a cancelled attempt would be retried, and a failed
+ * attempt is replaced by the hedge right away.
+ */
+class HedgingChatModel implements ChatModel {
+    
+    // Latencies of the most recent requests the hedge delay is computed from
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+    
+    // Attempts run on virtual threads, which need no pool to be closed
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    private final ChatModel delegate;
+    private final int percentile;
+    private final long minDelayNanos;
+    
+    // Guarded by this
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int next;
+    
+    /**
+     * @param percentile Latency percentile after which a second request is sent
+     * @param minDelay   Lower bound for the hedge delay, so fast models aren't hedged on noise
+     */
+    HedgingChatModel(ChatModel delegate, int percentile, Duration minDelay) {
+        this.delegate = delegate;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+    }
+    
+    static HedgingChatModel fromEnv(ChatModel delegate) {
+        return new HedgingChatModel(delegate,
+                BuddyEnv.getInt("BUDDY_HEDGE_PERCENTILE", 95),
+                Duration.ofMillis(BuddyEnv.getLong("BUDDY_HEDGE_MIN_DELAY_MS", 100)));
+    }
+    
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        long delay = hedgeDelayNanos();
+        long start = System.nanoTime();
+        CompletionService<ChatResponse> attempts = new ExecutorCompletionService<>(executor);
+        Future<ChatResponse> primary = attempts.submit(() -> delegate.chat(request));
+        Future<ChatResponse> hedge = null;
+        try {
+            Future<ChatResponse> done = delay < 0 ? attempts.take() : attempts.poll(delay, TimeUnit.NANOSECONDS);
+            // The hedge also stands in for a retry of a failed primary
+            if (done == null || retriable(done)) {
+                boolean bothRunning = done == null;
+                hedge = attempts.submit(() -> delegate.chat(request));
+                BuddyMetrics.recordHedge("sent");
+                done = attempts.take();
+                // Whichever attempt failed first, the other one may still succeed
+                if (bothRunning && retriable(done)) {
+                    done = attempts.take();
+                }
+            }
+            ChatResponse response = done.get();
+            if (done == hedge) {
+                BuddyMetrics.recordHedge("won");
+            }
+            // When the hedge wins, the elapsed time is a lower bound of the primary's latency
+            recordLatency(System.nanoTime() - start);
+            return response;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the model", e);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+    
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+    
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+    
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+    
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+    
+    /**
+     * @return Delay after which a request is hedged, or -1 before enough latencies were observed
+     */
+    synchronized long hedgeDelayNanos() {
+        int count = samples;
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return Math.max(minDelayNanos, sorted[Math.max(0, Math.min(count - 1, index))]);
+    }
+    
+    private synchronized void recordLatency(long nanos) {
+        latencies[next] = nanos;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+    }
+    
+    /**
+     * Failures worth a second attempt; rate limits are left to the scheduler
+     */
+    private static boolean retriable(Future<ChatResponse> attempt) {
+        return attempt.state() == Future.State.FAILED
+                && !(attempt.exceptionNow() instanceof NonRetriableException)
+                && !(attempt.exceptionNow() instanceof RateLimitException);
+    }
+}
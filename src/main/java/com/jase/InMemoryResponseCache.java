@@ -0,0 +1,168 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Heap response cache with a TTL per entry and a memory budget
+ * Entries are evicted least recently used or least frequently used first.
+ */
+public class InMemoryResponseCache implements ResponseCache {
+    
+    /**
+     * Which entry is evicted when the memory budget is exceeded
+     */
+    public enum EvictionPolicy {
+        LRU,
+        LFU
+    }
+    
+    // Rough per-entry overhead of the entry object and map nodes
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+    
+    private static final class Entry {
+        final String key;
+        final String response;
+        final long bytes;
+        final long expiresAtNanos;
+        final long generationNanos;
+        int frequency = 1;
+        
+        Entry(String key, String response, long expiresAtNanos, long generationNanos) {
+            this.key = key;
+            this.response = response;
+            this.bytes = ENTRY_OVERHEAD_BYTES + 2L * (key.length() + response.length());
+            this.expiresAtNanos = expiresAtNanos;
+            this.generationNanos = generationNanos;
+        }
+    }
+    
+    private final EvictionPolicy policy;
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final LongSupplier nanoClock;
+    
+    // Access order doubles as LRU order; LFU keeps keys bucketed by frequency
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final TreeMap<Integer, LinkedHashSet<String>> frequencies = new TreeMap<>();
+    
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long savedNanos;
+    
+    public InMemoryResponseCache(EvictionPolicy policy, Duration ttl, long maxBytes) {
+        this(policy, ttl, maxBytes, System::nanoTime);
+    }
+    
+    InMemoryResponseCache(EvictionPolicy policy, Duration ttl, long maxBytes, LongSupplier nanoClock) {
+        this.policy = policy;
+        this.ttlNanos = ttl.toNanos();
+        this.maxBytes = maxBytes;
+        this.nanoClock = nanoClock;
+    }
+    
+    @Override
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAtNanos >= 0) {
+            remove(entry);
+            expirations++;
+            misses++;
+            return null;
+        }
+        if (policy == EvictionPolicy.LFU) {
+            untrackFrequency(entry);
+            entry.frequency++;
+            trackFrequency(entry);
+        }
+        hits++;
+        savedNanos += entry.generationNanos;
+        return entry.response;
+    }
+    
+    @Override
+    public synchronized boolean contains(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && nanoClock.getAsLong() - entry.expiresAtNanos < 0;
+    }
+    
+    @Override
+    public synchronized void put(String key, String response, long generationNanos) {
+        Entry previous = entries.get(key);
+        if (previous != null) {
+            remove(previous);
+        }
+        Entry entry = new Entry(key, response, nanoClock.getAsLong() + ttlNanos, generationNanos);
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        while (bytes + entry.bytes > maxBytes) {
+            remove(nextVictim());
+            evictions++;
+        }
+        entries.put(key, entry);
+        bytes += entry.bytes;
+        if (policy == EvictionPolicy.LFU) {
+            trackFrequency(entry);
+        }
+    }
+    
+    @Override
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, expirations, entries.size(), bytes, savedNanos);
+    }
+    
+    private Entry nextVictim() {
+        if (policy == EvictionPolicy.LFU) {
+            return entries.get(frequencies.firstEntry().getValue().iterator().next());
+        }
+        Iterator<Entry> eldest = entries.values().iterator();
+        return eldest.next();
+    }
+    
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        bytes -= entry.bytes;
+        if (policy == EvictionPolicy.LFU) {
+            untrackFrequency(entry);
+        }
+    }
+    
+    private void trackFrequency(Entry entry) {
+        frequencies.computeIfAbsent(entry.frequency, f -> new LinkedHashSet<>()).add(entry.key);
+    }
+    
+    private void untrackFrequency(Entry entry) {
+        LinkedHashSet<String> keys = frequencies.get(entry.frequency);
+        keys.remove(entry.key);
+        if (keys.isEmpty()) {
+            frequencies.remove(entry.frequency);
+        }
+    }
+    
+    /**
+     * Build the cache configured by BUDDY_RESPONSE_CACHE (lru, lfu or none)
+     * @return The configured cache, or null when caching is disabled
+     */
+    static ResponseCache fromEnv() {
+        String policy = BuddyEnv.getString("BUDDY_RESPONSE_CACHE", "lru").toUpperCase();
+        if (policy.equals("NONE")) {
+            return null;
+        }
+        return new InMemoryResponseCache(
+                EvictionPolicy.valueOf(policy),
+                Duration.ofSeconds(BuddyEnv.getLong("BUDDY_RESPONSE_CACHE_TTL_SECONDS", 600)),
+                BuddyEnv.getLong("BUDDY_RESPONSE_CACHE_MAX_BYTES", 16L * 1024 * 1024));
+    }
+}
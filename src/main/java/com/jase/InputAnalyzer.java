@@ -0,0 +1,518 @@
+package com.jase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Single-pass keyword matcher that tags a turn's input with intents and redacts configured terms
+ * The keywords of an intent table are compiled once into an Aho-Corasick automaton with a full
+ * transition table. Analysis lowercases each character as it is fed to the automaton, so the
+ * input is read once and never copied, whatever the number of keywords.
+ *
+ * <p>Keywords are lowercase words separated by single spaces and match whole words: punctuation
+ * and whitespace in the input count as one space. A {@code *} at either end of a keyword drops
+ * the word boundary on that side, so {@code thank*} also matches "thanks".
+ */
+final class InputAnalyzer {
+    
+    /**
+     * Intent whose keywords are replaced in the preprocessed input
+     */
+    static final String REDACT = "redact";
+    
+    private static final int MAX_INTENTS = 32;
+    
+    /**
+     * Built-in intent table; the keyword order within an intent is its priority
+     */
+    static final Map<String, List<String>> DEFAULT_INTENTS = defaultIntents();
+    
+    private static final InputAnalyzer SHARED = fromEnv();
+    
+    /**
+     * Tags of an analyzed input by name, passed from the preprocess stage to generate so the input
+     * is read once per turn
+     * @param intentWords Intents found, with the words of the input their keywords cover
+     * @param keywords    Keywords matched
+     */
+    record Tags(int words, boolean digits, Map<String, Integer> intentWords, List<String> keywords) {
+    }
+    
+    /**
+     * Intents and words found in one input
+     */
+    static final class Analysis {
+        
+        private final InputAnalyzer analyzer;
+        private final String text;
+        private final int words;
+        private final boolean digits;
+        private final int intents;
+        private final int[] intentWords;
+        private final long[] matched;
+        
+        private Analysis(InputAnalyzer analyzer, String text, int words, boolean digits, int intents,
+                int[] intentWords, long[] matched) {
+            this.analyzer = analyzer;
+            this.text = text;
+            this.words = words;
+            this.digits = digits;
+            this.intents = intents;
+            this.intentWords = intentWords;
+            this.matched = matched;
+        }
+        
+        /**
+         * @return The trimmed input with redacted terms replaced
+         */
+        String text() {
+            return text;
+        }
+        
+        int words() {
+            return words;
+        }
+        
+        boolean hasDigits() {
+            return digits;
+        }
+        
+        boolean hasIntent(String intent) {
+            int index = analyzer.intentIndex(intent);
+            return index >= 0 && (intents & 1 << index) != 0;
+        }
+        
+        /**
+         * @return Words of the input covered by keywords of the intent, counting repeats
+         */
+        int intentWords(String intent) {
+            int index = analyzer.intentIndex(intent);
+            return index >= 0 ? intentWords[index] : 0;
+        }
+        
+        boolean matched(String keyword) {
+            Integer index = analyzer.keywordIndex.get(keyword);
+            return index != null && (matched[index >>> 6] & 1L << index) != 0;
+        }
+        
+        Tags tags() {
+            Map<String, Integer> found = new LinkedHashMap<>();
+            for (int i = 0; i < analyzer.intentNames.length; i++) {
+                if ((intents & 1 << i) != 0) {
+                    found.put(analyzer.intentNames[i], intentWords[i]);
+                }
+            }
+            List<String> keywords = new ArrayList<>();
+            analyzer.keywordIndex.forEach((keyword, index) -> {
+                if ((matched[index >>> 6] & 1L << index) != 0) {
+                    keywords.add(keyword);
+                }
+            });
+            return new Tags(words, digits, found, keywords);
+        }
+        
+        /**
+         * @return Names of the intents found, in table order
+         */
+        List<String> intents() {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < analyzer.intentNames.length; i++) {
+                if ((intents & 1 << i) != 0) {
+                    names.add(analyzer.intentNames[i]);
+                }
+            }
+            return names;
+        }
+    }
+    
+    private final String[] intentNames;
+    private final Map<String, Integer> intentIndex = new HashMap<>();
+    private final Map<String, Integer> keywordIndex = new HashMap<>();
+    private final int[] keywordIntent;
+    private final int[] keywordWords;
+    private final int[] keywordLength;
+    private final int redactIntent;
+    private final String redaction;
+    
+    // Characters that occur in keywords get their own class; every other character shares class 0
+    private final byte[] asciiClass = new byte[128];
+    private final char[] otherChars;
+    private final byte[] otherClass;
+    private final int classes;
+    private final int spaceClass;
+    
+    // Automaton: transitions per state and class, and the keywords ending in each state
+    private final int[] next;
+    private final int[] outputStart;
+    private final int[] outputs;
+    private final int maxKeywordLength;
+    
+    /**
+     * @param intents   Keywords per intent; {@link #REDACT} keywords are redacted
+     * @param redaction Replacement for redacted terms
+     */
+    InputAnalyzer(Map<String, List<String>> intents, String redaction) {
+        if (intents.size() > MAX_INTENTS) {
+            throw new IllegalArgumentException("At most " + MAX_INTENTS + " intents are supported");
+        }
+        this.redaction = redaction;
+        this.intentNames = intents.keySet().toArray(String[]::new);
+        for (int i = 0; i < intentNames.length; i++) {
+            intentIndex.put(intentNames[i], i);
+        }
+        this.redactIntent = intentIndex.getOrDefault(REDACT, -1);
+        
+        // Keywords become patterns delimited by spaces, except on the sides marked with *
+        List<String> patterns = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (Map.Entry<String, List<String>> intent : intents.entrySet()) {
+            for (String keyword : intent.getValue()) {
+                String normalized = normalizeKeyword(keyword);
+                if (keywordIndex.putIfAbsent(normalized, patterns.size()) != null) {
+                    throw new IllegalArgumentException("Keyword '" + normalized + "' is listed twice");
+                }
+                String pattern = normalized.replace("*", "");
+                patterns.add((normalized.startsWith("*") ? "" : " ") + pattern + (normalized.endsWith("*") ? "" : " "));
+                owners.add(intentIndex.get(intent.getKey()));
+            }
+        }
+        int keywords = patterns.size();
+        this.keywordIntent = new int[keywords];
+        this.keywordWords = new int[keywords];
+        this.keywordLength = new int[keywords];
+        int longest = 1;
+        for (int k = 0; k < keywords; k++) {
+            String pattern = patterns.get(k);
+            keywordIntent[k] = owners.get(k);
+            keywordWords[k] = pattern.strip().split(" ").length;
+            keywordLength[k] = pattern.length();
+            longest = Math.max(longest, pattern.length());
+        }
+        this.maxKeywordLength = longest;
+        
+        // Character classes
+        TreeSet<Character> alphabet = new TreeSet<>();
+        alphabet.add(' ');
+        for (String pattern : patterns) {
+            for (char c : pattern.toCharArray()) {
+                alphabet.add(c);
+            }
+        }
+        if (alphabet.size() >= Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Keywords use too many distinct characters");
+        }
+        List<Character> others = new ArrayList<>();
+        byte nextClass = 1;
+        for (char c : alphabet) {
+            if (c < 128) {
+                asciiClass[c] = nextClass++;
+            } else {
+                others.add(c);
+            }
+        }
+        this.otherChars = new char[others.size()];
+        this.otherClass = new byte[others.size()];
+        for (int i = 0; i < others.size(); i++) {
+            otherChars[i] = others.get(i);
+            otherClass[i] = nextClass++;
+        }
+        this.classes = nextClass;
+        this.spaceClass = asciiClass[' '];
+        
+        // Trie of the patterns
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ending = new ArrayList<>();
+        trie.add(new int[classes]);
+        ending.add(new ArrayList<>());
+        for (int k = 0; k < keywords; k++) {
+            int state = 0;
+            for (char c : patterns.get(k).toCharArray()) {
+                int cls = charClass(c);
+                if (trie.get(state)[cls] == 0) {
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(new int[classes]);
+                    ending.add(new ArrayList<>());
+                }
+                state = trie.get(state)[cls];
+            }
+            ending.get(state).add(k);
+        }
+        
+        // Failure links in breadth-first order turn the trie into a complete automaton
+        int states = trie.size();
+        this.next = new int[states * classes];
+        int[] fail = new int[states];
+        List<List<Integer>> output = new ArrayList<>(ending);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < classes; cls++) {
+            int child = trie.get(0)[cls];
+            next[cls] = child;
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> merged = new ArrayList<>(ending.get(state));
+            merged.addAll(output.get(fail[state]));
+            output.set(state, merged);
+            for (int cls = 0; cls < classes; cls++) {
+                int child = trie.get(state)[cls];
+                if (child != 0) {
+                    fail[child] = next[fail[state] * classes + cls];
+                    next[state * classes + cls] = child;
+                    queue.add(child);
+                } else {
+                    next[state * classes + cls] = next[fail[state] * classes + cls];
+                }
+            }
+        }
+        this.outputStart = new int[states + 1];
+        for (int state = 0; state < states; state++) {
+            outputStart[state + 1] = outputStart[state] + output.get(state).size();
+        }
+        this.outputs = new int[outputStart[states]];
+        for (int state = 0; state < states; state++) {
+            for (int i = 0; i < output.get(state).size(); i++) {
+                outputs[outputStart[state] + i] = output.get(state).get(i);
+            }
+        }
+    }
+    
+    /**
+     * @return The analyzer compiled at startup from the built-in table and BUDDY_INTENT_KEYWORDS,
+     *         redacting BUDDY_REDACT_TERMS
+     */
+    static InputAnalyzer shared() {
+        return SHARED;
+    }
+    
+    static InputAnalyzer fromEnv() {
+        Map<String, List<String>> intents = new LinkedHashMap<>(DEFAULT_INTENTS);
+        String extra = BuddyEnv.getString("BUDDY_INTENT_KEYWORDS", null);
+        if (extra != null) {
+            parseIntents(extra).forEach((intent, keywords) -> intents.merge(intent, keywords, (a, b) -> {
+                List<String> all = new ArrayList<>(a);
+                all.addAll(b);
+                return all;
+            }));
+        }
+        String redact = BuddyEnv.getString("BUDDY_REDACT_TERMS", null);
+        if (redact != null) {
+            intents.put(REDACT, List.of(redact.split("\\|")));
+        }
+        return new InputAnalyzer(intents, BuddyEnv.getString("BUDDY_REDACT_REPLACEMENT", "[redacted]"));
+    }
+    
+    /**
+     * Parse intent keywords such as "tool=stock price|exchange rate,complex=refactor"
+     */
+    static Map<String, List<String>> parseIntents(String spec) {
+        Map<String, List<String>> intents = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid intent keywords: " + entry);
+            }
+            intents.computeIfAbsent(parts[0].trim().toLowerCase(Locale.ROOT), intent -> new ArrayList<>())
+                    .addAll(List.of(parts[1].split("\\|")));
+        }
+        return intents;
+    }
+    
+    /**
+     * @return Whether {@link #redact} can change an input
+     */
+    boolean redacts() {
+        return redactIntent >= 0;
+    }
+    
+    /**
+     * @return The trimmed input with redacted terms replaced
+     */
+    String redact(String input) {
+        return redacts() ? analyze(input).text() : input.trim();
+    }
+    
+    Analysis analyze(String input) {
+        int start = 0;
+        int end = input.length();
+        while (start < end && Character.isWhitespace(input.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(input.charAt(end - 1))) {
+            end--;
+        }
+        
+        int[] intentWords = new int[intentNames.length];
+        long[] matched = new long[(keywordIntent.length + 63) >>> 6];
+        // Input positions of the last fed characters, only needed to locate redacted terms
+        int[] positions = redacts() ? new int[Integer.highestOneBit(maxKeywordLength) << 1] : null;
+        int[] spans = null;
+        int spanCount = 0;
+        
+        int intents = 0;
+        int words = 0;
+        boolean digits = false;
+        // The input is fed between virtual spaces, so keywords at either end find their boundaries
+        int state = next[spaceClass];
+        boolean inWord = false;
+        int fed = 1;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? input.charAt(i) : ' ';
+            int cls;
+            if (i < end && (Character.isLetterOrDigit(c) || c == '\'')) {
+                if (!inWord) {
+                    words++;
+                    inWord = true;
+                }
+                digits |= c >= '0' && c <= '9';
+                cls = charClass(Character.toLowerCase(c));
+            } else if (inWord || i == end) {
+                inWord = false;
+                cls = spaceClass;
+            } else {
+                // Runs of separators are one space
+                continue;
+            }
+            state = next[state * classes + cls];
+            if (positions != null) {
+                positions[fed & positions.length - 1] = i;
+            }
+            for (int o = outputStart[state]; o < outputStart[state + 1]; o++) {
+                int keyword = outputs[o];
+                int intent = keywordIntent[keyword];
+                matched[keyword >>> 6] |= 1L << keyword;
+                intents |= 1 << intent;
+                intentWords[intent] += keywordWords[keyword];
+                if (intent == redactIntent) {
+                    if (spans == null) {
+                        spans = new int[8];
+                    } else if (spanCount * 2 == spans.length) {
+                        spans = Arrays.copyOf(spans, spans.length * 2);
+                    }
+                    // Fed positions of the keyword's first and last characters; boundary spaces excluded
+                    int first = fed - keywordLength[keyword] + 1;
+                    spans[spanCount * 2] = first == 0 ? start : positions[first & positions.length - 1];
+                    spans[spanCount * 2 + 1] = i;
+                    spanCount++;
+                }
+            }
+            fed++;
+        }
+        
+        String text = spans != null ? replace(input, start, end, spans, spanCount) : input.substring(start, end);
+        return new Analysis(this, text, words, digits, intents, intentWords, matched);
+    }
+    
+    /**
+     * Analysis of an input that was analyzed before, e.g. by the preprocess activity
+     * Intents and keywords this analyzer doesn't know are left out.
+     * @param text The analyzed (trimmed and redacted) input
+     */
+    Analysis restore(String text, Tags tags) {
+        int intents = 0;
+        int[] intentWords = new int[intentNames.length];
+        for (Map.Entry<String, Integer> intent : tags.intentWords().entrySet()) {
+            int index = intentIndex(intent.getKey());
+            if (index >= 0) {
+                intents |= 1 << index;
+                intentWords[index] = intent.getValue();
+            }
+        }
+        long[] matched = new long[(keywordIntent.length + 63) >>> 6];
+        for (String keyword : tags.keywords()) {
+            Integer index = keywordIndex.get(keyword);
+            if (index != null) {
+                matched[index >>> 6] |= 1L << index;
+            }
+        }
+        return new Analysis(this, text, tags.words(), tags.digits(), intents, intentWords, matched);
+    }
+    
+    int intentIndex(String intent) {
+        Integer index = intentIndex.get(intent);
+        return index != null ? index : -1;
+    }
+    
+    /**
+     * Replace each span, widened to whole words, with the redaction
+     */
+    private String replace(String input, int start, int end, int[] spans, int spanCount) {
+        StringBuilder text = new StringBuilder(end - start);
+        int copied = start;
+        // Matches are reported by their end, which orders them by end but not by start
+        long[] ordered = new long[spanCount];
+        for (int s = 0; s < spanCount; s++) {
+            ordered[s] = (long) spans[s * 2] << 32 | spans[s * 2 + 1];
+        }
+        Arrays.sort(ordered);
+        for (long span : ordered) {
+            int from = (int) (span >>> 32);
+            int to = (int) span;
+            while (from < to && !isWordChar(input.charAt(from))) {
+                from++;
+            }
+            while (from > start && isWordChar(input.charAt(from - 1))) {
+                from--;
+            }
+            while (to < end && isWordChar(input.charAt(to))) {
+                to++;
+            }
+            if (from < copied) {
+                // Overlaps the previous redaction
+                from = copied;
+                if (to <= copied) {
+                    continue;
+                }
+                text.setLength(text.length() - redaction.length());
+            }
+            text.append(input, copied, from).append(redaction);
+            copied = to;
+        }
+        return text.append(input, copied, end).toString();
+    }
+    
+    private int charClass(char c) {
+        if (c < 128) {
+            return asciiClass[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index >= 0 ? otherClass[index] : 0;
+    }
+    
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '\'';
+    }
+    
+    private static String normalizeKeyword(String keyword) {
+        String normalized = String.join(" ", keyword.toLowerCase(Locale.ROOT).strip().split("[^\\p{L}\\p{N}'*]+"));
+        if (normalized.isEmpty() || normalized.equals("*") || normalized.indexOf('*', 1) >= 0
+                && normalized.indexOf('*', 1) != normalized.length() - 1) {
+            throw new IllegalArgumentException("Invalid keyword: '" + keyword + "'");
+        }
+        return normalized;
+    }
+    
+    private static Map<String, List<String>> defaultIntents() {
+        Map<String, List<String>> intents = new LinkedHashMap<>();
+        intents.put("greeting", List.of("hi", "hello", "hey", "heya", "howdy", "yo", "greetings", "hiya", "good",
+                "morning", "afternoon", "evening", "there", "buddy"));
+        intents.put("small_talk", List.of("how are you", "who are you", "thank*", "thx", "*bye", "see you"));
+        intents.put("weather", List.of("weather", "temperature", "forecast"));
+        intents.put("time", List.of("time", "date"));
+        intents.put("tool", List.of("calculate", "compute", "sqrt", "math", "remember", "preference",
+                "preferences", "prefer", "name"));
+        intents.put("complex", List.of("explain", "why", "compare", "analyze", "analyse", "design", "plan", "write",
+                "code", "debug", "summarize", "summarise", "translate", "step", "steps", "pros", "cons"));
+        return Collections.unmodifiableMap(intents);
+    }
+}
@@ -0,0 +1,27 @@
+package com.jase;
+
+import dev.langchain4j.service.tool.ToolExecutor;
+
+/**
+ * Wraps tool executors to record call counts and latency of every invocation
+ * in {@link BuddyMetrics}
+ */
+final class InstrumentedTools {
+    
+    private InstrumentedTools() {
+    }
+    
+    static ToolExecutor timed(String tool, ToolExecutor executor) {
+        return (request, memoryId) -> {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                String result = executor.execute(request, memoryId);
+                success = true;
+                return result;
+            } finally {
+                BuddyMetrics.recordToolCall(tool, System.nanoTime() - start, success);
+            }
+        };
+    }
+}
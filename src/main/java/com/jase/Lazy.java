@@ -0,0 +1,50 @@
+package com.jase;
+
+import java.util.function.Supplier;
+
+/**
+ * Value built on first use, at most once, also when several threads ask for it at the same time
+ * Used for the expensive LangChain4j clients and assistants, so a worker can poll for tasks
+ * before they exist.
+ */
+final class Lazy<T> implements Supplier<T> {
+    
+    private final String name;
+    private Supplier<? extends T> factory;
+    private volatile T value;
+    
+    private Lazy(String name, Supplier<? extends T> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+    
+    /**
+     * @param name    Startup phase the build time is recorded as, e.g. "model_init"
+     * @param factory Builds the value; must not return null
+     */
+    static <T> Lazy<T> of(String name, Supplier<? extends T> factory) {
+        return new Lazy<>(name, factory);
+    }
+    
+    @Override
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    long start = System.nanoTime();
+                    result = factory.get();
+                    BuddyMetrics.recordStartup(name, System.nanoTime() - start);
+                    value = result;
+                    factory = null;
+                }
+            }
+        }
+        return result;
+    }
+    
+    boolean isInitialized() {
+        return value != null;
+    }
+}
@@ -0,0 +1,115 @@
+package com.jase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Per-logger rate limit for INFO and lower events.
+ * Each logger gets its own budget of events per second, taken from the longest matching
+ * logger-name prefix; events over the budget are dropped. WARN and ERROR always pass.
+ */
+public final class LogRateLimitFilter extends TurboFilter {
+    
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Shared by every logger no limit applies to
+    private static final Window UNLIMITED = new Window(Integer.MAX_VALUE);
+    
+    // Events per second by logger-name prefix
+    private final Map<String, Integer> limits;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    
+    /**
+     * Fixed one-second window of admitted events for one logger
+     */
+    private static final class Window {
+        
+        private final int limit;
+        private final AtomicLong start = new AtomicLong(System.nanoTime());
+        private final AtomicInteger count = new AtomicInteger();
+        
+        Window(int limit) {
+            this.limit = limit;
+        }
+        
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            long windowStart = start.get();
+            if (now - windowStart >= WINDOW_NANOS && start.compareAndSet(windowStart, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() <= limit;
+        }
+    }
+    
+    /**
+     * @param limits Events per second by logger-name prefix, e.g. "com.jase" -> 100
+     */
+    public LogRateLimitFilter(Map<String, Integer> limits) {
+        this.limits = Map.copyOf(limits);
+        setName("rate-limit");
+    }
+    
+    /**
+     * Parse a rate limit specification such as "com.jase=100,com.jase.BuddyActivities=20"
+     */
+    static Map<String, Integer> parseLimits(String spec) {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return limits;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid log rate limit: " + entry);
+            }
+            limits.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return limits;
+    }
+    
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // A null format is an isXxxEnabled() check, which must not use up the budget
+        if (format == null || level.isGreaterOrEqual(Level.WARN)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Window window = windows.computeIfAbsent(logger.getName(), this::newWindow);
+        if (window == UNLIMITED || window.tryAcquire()) {
+            return FilterReply.NEUTRAL;
+        }
+        dropped.increment();
+        return FilterReply.DENY;
+    }
+    
+    /**
+     * @return Number of events dropped since the filter was created
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    private Window newWindow(String loggerName) {
+        String match = null;
+        for (String prefix : limits.keySet()) {
+            boolean matches = loggerName.equals(prefix) || loggerName.startsWith(prefix + ".");
+            if (matches && (match == null || prefix.length() > match.length())) {
+                match = prefix;
+            }
+        }
+        return match == null ? UNLIMITED : new Window(limits.get(match));
+    }
+}
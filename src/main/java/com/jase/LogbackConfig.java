@@ -1,10 +1,30 @@
 package com.jase;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.JsonEncoder;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.ConsoleAppender;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -13,15 +33,21 @@ import org.slf4j.LoggerFactory;
  */
 public class LogbackConfig {
     
+    private static ScheduledExecutorService levelWatcher;
+    private static LogRateLimitFilter rateLimitFilter;
+    
     /**
      * Configure Logback programmatically
      */
-    public static void configure() {
+    public static synchronized void configure() {
         LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
         
         // Clear any existing configuration
+        stopLevelWatcher();
         context.reset();
         
+        List<Appender<ILoggingEvent>> appenders = new ArrayList<>();
+        
         // Create pattern encoder
         PatternLayoutEncoder encoder = new PatternLayoutEncoder();
         encoder.setContext(context);
@@ -34,32 +60,77 @@ public class LogbackConfig {
         consoleAppender.setName("CONSOLE");
         consoleAppender.setEncoder(encoder);
         consoleAppender.start();
+        appenders.add(consoleAppender);
+        
+        // Optional structured log file, one JSON object per line
+        String logFile = BuddyEnv.getString("BUDDY_LOG_FILE", null);
+        if (logFile != null) {
+            appenders.add(createJsonFileAppender(context, logFile));
+        }
+        
+        // Hand events to a background thread so callers never wait on stdout or disk
+        if (BuddyEnv.getBoolean("BUDDY_LOG_ASYNC", true)) {
+            appenders = List.of(createAsyncAppender(context, appenders));
+        }
+        
+        // Rate limit chatty hot-path loggers; WARN and ERROR are never dropped
+        rateLimitFilter = new LogRateLimitFilter(LogRateLimitFilter.parseLimits(
+                BuddyEnv.getString("BUDDY_LOG_RATE_LIMITS", "com.jase=100")));
+        rateLimitFilter.setContext(context);
+        rateLimitFilter.start();
+        context.addTurboFilter(rateLimitFilter);
         
         // Configure logger for Buddy application (com.jase package)
         Logger buddyLogger = (Logger) LoggerFactory.getLogger("com.jase");
-        buddyLogger.addAppender(consoleAppender);
-        buddyLogger.setLevel(ch.qos.logback.classic.Level.INFO);
+        appenders.forEach(buddyLogger::addAppender);
+        buddyLogger.setLevel(Level.INFO);
         buddyLogger.setAdditive(false);
         
         // Configure logger for Temporal
         Logger temporalLogger = (Logger) LoggerFactory.getLogger("io.temporal");
-        temporalLogger.addAppender(consoleAppender);
-        temporalLogger.setLevel(ch.qos.logback.classic.Level.INFO);
+        appenders.forEach(temporalLogger::addAppender);
+        temporalLogger.setLevel(Level.INFO);
         temporalLogger.setAdditive(false);
         
         // Configure root logger
         Logger rootLogger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
-        rootLogger.addAppender(consoleAppender);
-        rootLogger.setLevel(ch.qos.logback.classic.Level.WARN);
+        appenders.forEach(rootLogger::addAppender);
+        rootLogger.setLevel(Level.WARN);
+        
+        // Level overrides, e.g. "com.jase.BuddyActivities=WARN,io.grpc=ERROR"
+        String levels = BuddyEnv.getString("BUDDY_LOG_LEVELS", null);
+        if (levels != null) {
+            for (String entry : levels.split(",")) {
+                String[] parts = entry.split("=", 2);
+                if (parts.length == 2) {
+                    setLogLevel(parts[0].trim(), Level.toLevel(parts[1].trim(), null));
+                }
+            }
+        }
+        
+        // Levels that can be changed at runtime by editing a properties file
+        String levelsFile = BuddyEnv.getString("BUDDY_LOG_LEVELS_FILE", null);
+        if (levelsFile != null) {
+            watchLevels(Path.of(levelsFile), BuddyEnv.getInt("BUDDY_LOG_LEVELS_POLL_SECONDS", 5));
+        }
         
         // Mark configuration as complete
         context.start();
     }
     
+    /**
+     * Flush queued log events and release appenders; call once at application exit
+     */
+    public static synchronized void shutdown() {
+        stopLevelWatcher();
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+    
     /**
      * Set logging level for a specific package
+     * @param level The new level, or null to inherit the parent's level
      */
-    public static void setLogLevel(String packageName, ch.qos.logback.classic.Level level) {
+    public static void setLogLevel(String packageName, Level level) {
         Logger logger = (Logger) LoggerFactory.getLogger(packageName);
         logger.setLevel(level);
     }
@@ -68,6 +139,95 @@ public class LogbackConfig {
      * Enable debug logging for Buddy application
      */
     public static void enableDebugLogging() {
-        setLogLevel("com.jase", ch.qos.logback.classic.Level.DEBUG);
+        setLogLevel("com.jase", Level.DEBUG);
+    }
+    
+    /**
+     * @return INFO events dropped by the hot-path rate limits since the last configure()
+     */
+    public static long getRateLimitedCount() {
+        LogRateLimitFilter filter = rateLimitFilter;
+        return filter == null ? 0 : filter.getDroppedCount();
+    }
+    
+    private static Appender<ILoggingEvent> createJsonFileAppender(LoggerContext context, String logFile) {
+        RollingFileAppender<ILoggingEvent> fileAppender = new RollingFileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setName("JSON_FILE");
+        fileAppender.setFile(logFile);
+        
+        // Roll daily and at the size limit, keeping a bounded history
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> rollingPolicy = new SizeAndTimeBasedRollingPolicy<>();
+        rollingPolicy.setContext(context);
+        rollingPolicy.setParent(fileAppender);
+        rollingPolicy.setFileNamePattern(logFile + ".%d{yyyy-MM-dd}.%i.gz");
+        rollingPolicy.setMaxFileSize(FileSize.valueOf(BuddyEnv.getString("BUDDY_LOG_FILE_MAX_SIZE", "100MB")));
+        rollingPolicy.setMaxHistory(BuddyEnv.getInt("BUDDY_LOG_FILE_MAX_HISTORY", 7));
+        rollingPolicy.setTotalSizeCap(FileSize.valueOf(BuddyEnv.getString("BUDDY_LOG_FILE_TOTAL_SIZE", "2GB")));
+        rollingPolicy.start();
+        
+        JsonEncoder jsonEncoder = new JsonEncoder();
+        jsonEncoder.setContext(context);
+        jsonEncoder.start();
+        
+        fileAppender.setRollingPolicy(rollingPolicy);
+        fileAppender.setEncoder(jsonEncoder);
+        fileAppender.start();
+        return fileAppender;
+    }
+    
+    private static Appender<ILoggingEvent> createAsyncAppender(LoggerContext context,
+            List<Appender<ILoggingEvent>> targets) {
+        AsyncAppender asyncAppender = new AsyncAppender();
+        asyncAppender.setContext(context);
+        asyncAppender.setName("ASYNC");
+        asyncAppender.setQueueSize(BuddyEnv.getInt("BUDDY_LOG_QUEUE_SIZE", 8192));
+        // Once the queue is 80% full, INFO and lower are dropped; a full queue drops everything
+        asyncAppender.setDiscardingThreshold(asyncAppender.getQueueSize() / 5);
+        asyncAppender.setNeverBlock(BuddyEnv.getBoolean("BUDDY_LOG_NEVER_BLOCK", true));
+        targets.forEach(asyncAppender::addAppender);
+        asyncAppender.start();
+        return asyncAppender;
+    }
+    
+    /**
+     * Poll a properties file of logger=LEVEL entries and apply it whenever it changes.
+     * A value that is not a level (e.g. INHERIT) resets the logger to its parent's level.
+     */
+    static synchronized void watchLevels(Path file, int pollSeconds) {
+        stopLevelWatcher();
+        levelWatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "buddy-log-levels");
+            thread.setDaemon(true);
+            return thread;
+        });
+        FileTime[] lastModified = {null};
+        levelWatcher.scheduleWithFixedDelay(() -> {
+            try {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.equals(lastModified[0])) {
+                    return;
+                }
+                lastModified[0] = modified;
+                Properties levels = new Properties();
+                try (InputStream in = Files.newInputStream(file)) {
+                    levels.load(in);
+                }
+                levels.forEach((name, level) -> setLogLevel(name.toString().trim(),
+                        Level.toLevel(level.toString().trim(), null)));
+                LoggerFactory.getLogger(LogbackConfig.class).info("Applied log levels from {}: {}", file, levels);
+            } catch (NoSuchFileException e) {
+                lastModified[0] = null;
+            } catch (IOException | RuntimeException e) {
+                LoggerFactory.getLogger(LogbackConfig.class).warn("Failed to apply log levels from {}", file, e);
+            }
+        }, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+    
+    static synchronized void stopLevelWatcher() {
+        if (levelWatcher != null) {
+            levelWatcher.shutdownNow();
+            levelWatcher = null;
+        }
     }
 }
@@ -0,0 +1,85 @@
+package com.jase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+
+/**
+ * Local Prometheus scrape endpoint serving GET /metrics from a registry
+ */
+public final class MetricsEndpoint implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEndpoint.class);
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PrometheusMeterRegistry registry;
+    
+    /**
+     * @param port Local port to listen on, or 0 for an ephemeral port
+     */
+    public MetricsEndpoint(PrometheusMeterRegistry registry, int port) {
+        this.registry = registry;
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start metrics endpoint on port " + port, e);
+        }
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "buddy-metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handleScrape);
+        server.start();
+        logger.info("Metrics available at {}", getUrl());
+    }
+    
+    /**
+     * Start the endpoint on BUDDY_METRICS_PORT (default 9464)
+     * @return The endpoint, or null when the port is set to -1
+     */
+    public static MetricsEndpoint fromEnv(PrometheusMeterRegistry registry) {
+        int port = BuddyEnv.getInt("BUDDY_METRICS_PORT", 9464);
+        return port < 0 ? null : new MetricsEndpoint(registry, port);
+    }
+    
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/metrics";
+    }
+    
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", TextFormat.CONTENT_TYPE_004);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
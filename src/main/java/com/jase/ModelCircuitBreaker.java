@@ -0,0 +1,199 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker and adaptive timeout for the requests to one model
+ * Requests time out after a multiple of the model's recent p99 latency, kept within bounds.
+ * After a run of failed or timed-out requests the breaker opens and requests fail fast with
+ * {@link CircuitOpenException}. Once the open interval has passed, one probe request at a time
+ * is let through (half-open); a successful probe closes the breaker, a failed one opens it again.
+ */
+final class ModelCircuitBreaker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ModelCircuitBreaker.class);
+    
+    // Latencies of the most recent successful requests the timeout is computed from
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+    
+    private static final Map<String, ModelCircuitBreaker> shared = new ConcurrentHashMap<>();
+    
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+    
+    /**
+     * Thrown instead of sending a request while the breaker is open
+     */
+    static final class CircuitOpenException extends RuntimeException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        CircuitOpenException(String model) {
+            super("Circuit breaker for " + model + " is open");
+        }
+    }
+    
+    /**
+     * @param failures          Consecutive failed or timed-out requests that open the breaker
+     * @param openInterval      How long the breaker stays open before a probe is let through
+     * @param percentile        Latency percentile the timeout is derived from
+     * @param timeoutMultiplier Multiple of that percentile after which a request times out
+     * @param minTimeout        Lower bound of the timeout, so fast models don't time out on noise
+     * @param maxTimeout        Upper bound of the timeout, and the timeout until enough latencies were observed
+     */
+    record Settings(int failures, Duration openInterval, int percentile, int timeoutMultiplier,
+            Duration minTimeout, Duration maxTimeout) {
+        
+        static Settings fromEnv() {
+            return new Settings(
+                    BuddyEnv.getInt("BUDDY_BREAKER_FAILURES", 5),
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_BREAKER_OPEN_MS", 10_000)),
+                    BuddyEnv.getInt("BUDDY_BREAKER_PERCENTILE", 99),
+                    BuddyEnv.getInt("BUDDY_BREAKER_TIMEOUT_MULTIPLIER", 2),
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_BREAKER_MIN_TIMEOUT_MS", 1_000)),
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_BREAKER_MAX_TIMEOUT_MS", 30_000)));
+        }
+    }
+    
+    private final String model;
+    private final Settings settings;
+    
+    // Guarded by this
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int next;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    // Every request gets a ticket; only the half-open probe's ticket may close or reopen the breaker
+    private long tickets;
+    private long probe;
+    
+    ModelCircuitBreaker(String model, Settings settings) {
+        this.model = model;
+        this.settings = settings;
+        BuddyMetrics.registerBreaker(model, () -> state().ordinal(), () -> timeoutNanos() / 1e9);
+    }
+    
+    /**
+     * @return The process-wide breaker of a model, configured from the environment
+     */
+    static ModelCircuitBreaker shared(String model) {
+        return shared.computeIfAbsent(model, name -> new ModelCircuitBreaker(name, Settings.fromEnv()));
+    }
+    
+    String model() {
+        return model;
+    }
+    
+    synchronized State state() {
+        return state;
+    }
+    
+    /**
+     * Let a request through, or throw while the breaker is open or another probe is running
+     * @return Ticket of the request, to pass to {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}
+     */
+    synchronized long acquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= settings.openInterval().toNanos()) {
+            state = State.HALF_OPEN;
+            logger.info("Circuit breaker for {} half-open, sending a probe", model);
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && probe != 0)) {
+            BuddyMetrics.recordBreakerCall(model, "rejected");
+            throw new CircuitOpenException(model);
+        }
+        long ticket = ++tickets;
+        if (state == State.HALF_OPEN) {
+            probe = ticket;
+        }
+        return ticket;
+    }
+    
+    /**
+     * Record a request that succeeded after the given latency
+     * A request sent before the breaker opened that completes late doesn't close it; only the probe does.
+     */
+    synchronized void onSuccess(long ticket, long nanos) {
+        latencies[next] = nanos;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+        if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        } else if (ticket == probe) {
+            probe = 0;
+            consecutiveFailures = 0;
+            state = State.CLOSED;
+            logger.info("Circuit breaker for {} closed", model);
+        }
+    }
+    
+    /**
+     * Record a request that failed or timed out
+     * @param outcome "failure" or "timeout"
+     */
+    synchronized void onFailure(long ticket, String outcome) {
+        BuddyMetrics.recordBreakerCall(model, outcome);
+        if (state == State.CLOSED) {
+            consecutiveFailures++;
+            if (consecutiveFailures >= settings.failures()) {
+                open();
+            }
+        } else if (ticket == probe) {
+            probe = 0;
+            open();
+        }
+    }
+    
+    /**
+     * Release a request that says nothing about the model's health, such as a rejected request
+     */
+    synchronized void onIgnored(long ticket) {
+        if (ticket == probe) {
+            probe = 0;
+        }
+    }
+    
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        logger.warn("Circuit breaker for {} opened after {} failed requests, failing fast for {}",
+                model, consecutiveFailures, settings.openInterval());
+    }
+    
+    /**
+     * @return Time after which a request is abandoned
+     */
+    synchronized long timeoutNanos() {
+        int count = samples;
+        long max = settings.maxTimeout().toNanos();
+        if (count < MIN_SAMPLES) {
+            return max;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(settings.percentile() / 100.0 * count) - 1;
+        long timeout = sorted[Math.max(0, Math.min(count - 1, index))] * settings.timeoutMultiplier();
+        return Math.min(max, Math.max(settings.minTimeout().toNanos(), timeout));
+    }
+    
+    /**
+     * @return Whether an error, or one of its causes, is a request rejected by an open breaker
+     */
+    static boolean isOpen(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitOpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,182 @@
+package com.jase;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpMethod;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import dev.langchain4j.http.client.jdk.JdkHttpClientBuilder;
+
+/**
+ * HTTP client shared by every model client of the worker
+ * Chat, streaming and summary requests go through one JDK HTTP client and so share its
+ * connection pool. Connections can be opened when the worker starts and kept warm while it
+ * is idle, so the first turns don't pay for TCP and TLS setup. The JDK reads its pool size and
+ * keep-alive from process-wide system properties; they are set here unless given on the
+ * command line, and only apply if set before the first JDK HTTP client is created.
+ */
+final class ModelHttpClient implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ModelHttpClient.class);
+    
+    /**
+     * @param http2              Negotiate HTTP/2, otherwise HTTP/1.1 only
+     * @param poolSize           Idle HTTP/1.1 connections kept; 0 keeps the JDK default (unbounded)
+     * @param keepAlive          How long idle connections are kept, or null for the JDK default (30 s)
+     * @param prewarmConnections Connections opened at startup; 0 disables pre-warming
+     * @param prewarmInterval    How often idle connections are re-warmed; zero disables
+     */
+    record Settings(boolean http2, int poolSize, Duration keepAlive, Duration connectTimeout, Duration readTimeout,
+            int prewarmConnections, Duration prewarmInterval) {
+        
+        static Settings fromEnv() {
+            long keepAliveSeconds = BuddyEnv.getLong("BUDDY_HTTP_KEEPALIVE_SECONDS", 0);
+            return new Settings(
+                    BuddyEnv.getBoolean("BUDDY_HTTP2", true),
+                    BuddyEnv.getInt("BUDDY_HTTP_POOL_SIZE", 0),
+                    keepAliveSeconds > 0 ? Duration.ofSeconds(keepAliveSeconds) : null,
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_HTTP_CONNECT_TIMEOUT_MS", 15_000)),
+                    Duration.ofMillis(BuddyEnv.getLong("BUDDY_HTTP_READ_TIMEOUT_MS", 60_000)),
+                    BuddyEnv.getInt("BUDDY_HTTP_PREWARM_CONNECTIONS", 0),
+                    Duration.ofSeconds(BuddyEnv.getLong("BUDDY_HTTP_PREWARM_INTERVAL_SECONDS", 0)));
+        }
+    }
+    
+    private final Settings settings;
+    private final JdkHttpClient client;
+    private final ExecutorService prewarmExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private ScheduledExecutorService rewarmer;
+    
+    ModelHttpClient(Settings settings) {
+        this.settings = settings;
+        if (settings.poolSize() > 0) {
+            setDefaultProperty("jdk.httpclient.connectionPoolSize", Integer.toString(settings.poolSize()));
+        }
+        if (settings.keepAlive() != null) {
+            setDefaultProperty("jdk.httpclient.keepalive.timeout", Long.toString(settings.keepAlive().toSeconds()));
+        }
+        this.client = new JdkHttpClientBuilder()
+                .httpClientBuilder(HttpClient.newBuilder()
+                        .version(settings.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                        .followRedirects(HttpClient.Redirect.NORMAL))
+                .connectTimeout(settings.connectTimeout())
+                .readTimeout(settings.readTimeout())
+                .build();
+    }
+    
+    static ModelHttpClient fromEnv() {
+        return new ModelHttpClient(Settings.fromEnv());
+    }
+    
+    /**
+     * @return Builder for model clients; every client it builds is the shared one, with the
+     *         configured timeouts regardless of what the model client asks for
+     */
+    HttpClientBuilder builder() {
+        return new HttpClientBuilder() {
+            @Override
+            public Duration connectTimeout() {
+                return settings.connectTimeout();
+            }
+            
+            @Override
+            public HttpClientBuilder connectTimeout(Duration timeout) {
+                return this;
+            }
+            
+            @Override
+            public Duration readTimeout() {
+                return settings.readTimeout();
+            }
+            
+            @Override
+            public HttpClientBuilder readTimeout(Duration timeout) {
+                return this;
+            }
+            
+            @Override
+            public dev.langchain4j.http.client.HttpClient build() {
+                return client;
+            }
+        };
+    }
+    
+    /**
+     * Pre-warm the configured number of connections to the endpoint, and keep re-warming them
+     * if an interval is set. Does nothing when pre-warming is disabled.
+     */
+    void startPrewarming(String baseUrl, String apiKey) {
+        if (settings.prewarmConnections() <= 0) {
+            return;
+        }
+        prewarm(baseUrl, apiKey, settings.prewarmConnections());
+        if (!settings.prewarmInterval().isZero()) {
+            rewarmer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "buddy-http-prewarm");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long seconds = Math.max(1, settings.prewarmInterval().toSeconds());
+            rewarmer.scheduleWithFixedDelay(() -> prewarm(baseUrl, apiKey, settings.prewarmConnections()).join(),
+                    seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Open connections with concurrent requests to the endpoint's model list, which costs no tokens.
+     * Any response counts, since the connection is pooled either way.
+     * @return Completes once every request has finished
+     */
+    CompletableFuture<Void> prewarm(String baseUrl, String apiKey, int connections) {
+        HttpRequest.Builder request = HttpRequest.builder()
+                .method(HttpMethod.GET)
+                .url(baseUrl, "models");
+        if (apiKey != null) {
+            request.addHeader("Authorization", "Bearer " + apiKey);
+        }
+        HttpRequest models = request.build();
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> requests = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            requests.add(CompletableFuture.runAsync(() -> {
+                try {
+                    client.execute(models);
+                } catch (HttpException e) {
+                    // Connected; the status doesn't matter
+                } catch (RuntimeException e) {
+                    logger.debug("Pre-warm request to {} failed", baseUrl, e);
+                }
+            }, prewarmExecutor));
+        }
+        return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new))
+                .thenRun(() -> logger.debug("Pre-warmed {} connections to {} in {} ms", connections, baseUrl,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+    
+    @Override
+    public void close() {
+        if (rewarmer != null) {
+            rewarmer.shutdownNow();
+        }
+        prewarmExecutor.shutdownNow();
+    }
+    
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.jase;
+
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.output.TokenUsage;
+
+/**
+ * Chat model listener that records model latency and token usage in {@link BuddyMetrics}
+ * Works for both the blocking and the streaming OpenAI models
+ */
+class ModelMetricsListener implements ChatModelListener {
+    
+    private static final String START_NANOS = "buddy.startNanos";
+    
+    @Override
+    public void onRequest(ChatModelRequestContext context) {
+        context.attributes().put(START_NANOS, System.nanoTime());
+    }
+    
+    @Override
+    public void onResponse(ChatModelResponseContext context) {
+        BuddyMetrics.recordModelCall(elapsed(context.attributes().get(START_NANOS)), true);
+        TokenUsage usage = context.chatResponse().tokenUsage();
+        if (usage != null) {
+            BuddyMetrics.recordTokens(usage.inputTokenCount(), usage.outputTokenCount());
+        }
+    }
+    
+    @Override
+    public void onError(ChatModelErrorContext context) {
+        BuddyMetrics.recordModelCall(elapsed(context.attributes().get(START_NANOS)), false);
+    }
+    
+    private static long elapsed(Object startNanos) {
+        return startNanos instanceof Long start ? System.nanoTime() - start : 0;
+    }
+}
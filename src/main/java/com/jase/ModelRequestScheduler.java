@@ -0,0 +1,368 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.model.chat.request.ChatRequest;
+
+/**
+ * Schedules model requests under the provider's rate limits
+ * Keeps token buckets for requests and tokens per minute, queues waiting requests
+ * per session and grants them round-robin so one busy session can't starve the
+ * others, and pauses all requests when the provider reports it is rate limiting.
+ */
+public class ModelRequestScheduler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ModelRequestScheduler.class);
+    
+    // Waiting requests wake up at least this often to heartbeat
+    private static final long WAIT_SLICE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    
+    /**
+     * A granted request; release it with the real token count once the response arrives
+     */
+    public final class Permit {
+        
+        private final int reservedTokens;
+        private boolean released;
+        
+        private Permit(int reservedTokens) {
+            this.reservedTokens = reservedTokens;
+        }
+        
+        public void release(int actualTokens) {
+            synchronized (ModelRequestScheduler.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                tokenBucket.refill(nanoClock.getAsLong());
+                tokenBucket.adjust(reservedTokens - actualTokens);
+                dispatch();
+            }
+        }
+    }
+    
+    private static final class Waiter {
+        final int tokens;
+        boolean granted;
+        
+        Waiter(int tokens) {
+            this.tokens = tokens;
+        }
+    }
+    
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final int defaultCompletionTokens;
+    private final LongSupplier nanoClock;
+    
+    // Sessions with waiting requests, in round-robin order
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    
+    private long pausedUntilNanos;
+    private Duration backoff = MIN_BACKOFF;
+    private Duration lastReportedReset = Duration.ZERO;
+    
+    private long grantedRequests;
+    private long rateLimitedResponses;
+    private long totalWaitNanos;
+    
+    /**
+     * @param requestsPerMinute Provider request limit
+     * @param tokensPerMinute Provider token limit
+     * @param burstWindow How much of the per-minute budget may be used at once
+     * @param defaultCompletionTokens Completion tokens reserved when a request sets no maximum
+     */
+    public ModelRequestScheduler(long requestsPerMinute, long tokensPerMinute, Duration burstWindow,
+            int defaultCompletionTokens) {
+        this(requestsPerMinute, tokensPerMinute, burstWindow, defaultCompletionTokens, System::nanoTime);
+    }
+    
+    ModelRequestScheduler(long requestsPerMinute, long tokensPerMinute, Duration burstWindow,
+            int defaultCompletionTokens, LongSupplier nanoClock) {
+        long now = nanoClock.getAsLong();
+        this.requestBucket = new TokenBucket(requestsPerMinute, burstWindow, now);
+        this.tokenBucket = new TokenBucket(tokensPerMinute, burstWindow, now);
+        this.defaultCompletionTokens = defaultCompletionTokens;
+        this.nanoClock = nanoClock;
+    }
+    
+    /**
+     * Wait until the request fits the rate limits and it is this session's turn
+     * @param sessionId Session the request belongs to, for fair queuing
+     * @param estimatedTokens Prompt plus completion tokens to reserve
+     * @param heartbeat Called at least once a second while waiting
+     * @return The permit for the request
+     */
+    public Permit acquire(String sessionId, int estimatedTokens, Runnable heartbeat) throws InterruptedException {
+        // A request larger than the bucket could never be granted
+        int tokens = (int) Math.min(estimatedTokens, tokenBucket.capacity());
+        Waiter waiter = new Waiter(tokens);
+        long start = nanoClock.getAsLong();
+        
+        synchronized (this) {
+            queues.computeIfAbsent(sessionId, id -> new ArrayDeque<>()).add(waiter);
+        }
+        try {
+            while (true) {
+                synchronized (this) {
+                    long sliceEnd = nanoClock.getAsLong() + WAIT_SLICE_NANOS;
+                    while (!waiter.granted) {
+                        dispatch();
+                        if (waiter.granted) {
+                            break;
+                        }
+                        long waitNanos = Math.min(nanosUntilDispatch(), sliceEnd - nanoClock.getAsLong());
+                        if (waitNanos <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    }
+                    if (waiter.granted) {
+                        totalWaitNanos += nanoClock.getAsLong() - start;
+                        return new Permit(tokens);
+                    }
+                }
+                heartbeat.run();
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            synchronized (this) {
+                if (waiter.granted) {
+                    // Granted just before failing; give the budget back
+                    requestBucket.adjust(1);
+                    tokenBucket.adjust(tokens);
+                } else {
+                    ArrayDeque<Waiter> queue = queues.get(sessionId);
+                    if (queue != null && queue.remove(waiter) && queue.isEmpty()) {
+                        queues.remove(sessionId);
+                    }
+                }
+                dispatch();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Estimate prompt tokens (roughly four characters per token) plus the completion budget
+     */
+    public int estimateTokens(ChatRequest request) {
+        long characters = 0;
+        for (ChatMessage message : request.messages()) {
+            characters += ChatMessageSerializer.messageToJson(message).length();
+        }
+        List<ToolSpecification> tools = request.toolSpecifications();
+        if (tools != null) {
+            for (ToolSpecification tool : tools) {
+                characters += tool.toString().length();
+            }
+        }
+        Integer maxOutputTokens = request.maxOutputTokens();
+        int completionTokens = maxOutputTokens != null ? maxOutputTokens : defaultCompletionTokens;
+        return (int) Math.min(Integer.MAX_VALUE, characters / 4 + completionTokens);
+    }
+    
+    /**
+     * Align the buckets with the provider's x-ratelimit-* response headers
+     */
+    public synchronized void onRateLimitHeaders(Map<String, List<String>> headers) {
+        long now = nanoClock.getAsLong();
+        requestBucket.refill(now);
+        tokenBucket.refill(now);
+        
+        Long remainingRequests = parseLong(header(headers, "x-ratelimit-remaining-requests"));
+        Long remainingTokens = parseLong(header(headers, "x-ratelimit-remaining-tokens"));
+        Duration resetRequests = parseDuration(header(headers, "x-ratelimit-reset-requests"));
+        Duration resetTokens = parseDuration(header(headers, "x-ratelimit-reset-tokens"));
+        
+        if (remainingRequests != null) {
+            requestBucket.limitTo(remainingRequests);
+            if (remainingRequests == 0 && resetRequests != null) {
+                pauseFor(resetRequests, now);
+            }
+        }
+        if (remainingTokens != null) {
+            tokenBucket.limitTo(remainingTokens);
+            if (remainingTokens == 0 && resetTokens != null) {
+                pauseFor(resetTokens, now);
+            }
+        }
+        if (resetRequests != null || resetTokens != null) {
+            Duration requests = resetRequests != null ? resetRequests : Duration.ZERO;
+            Duration tokens = resetTokens != null ? resetTokens : Duration.ZERO;
+            lastReportedReset = requests.compareTo(tokens) >= 0 ? requests : tokens;
+        }
+    }
+    
+    /**
+     * The provider rejected a request with 429; pause everyone instead of retrying into it
+     */
+    public synchronized void onRateLimited() {
+        rateLimitedResponses++;
+        Duration pause = lastReportedReset.compareTo(backoff) > 0 ? lastReportedReset : backoff;
+        pauseFor(pause, nanoClock.getAsLong());
+        backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+        logger.warn("Model provider is rate limiting; pausing requests for {} ms", pause.toMillis());
+    }
+    
+    /**
+     * A request succeeded, so the provider has recovered
+     */
+    public synchronized void onSuccess() {
+        backoff = MIN_BACKOFF;
+    }
+    
+    public synchronized long getGrantedRequests() {
+        return grantedRequests;
+    }
+    
+    public synchronized long getRateLimitedResponses() {
+        return rateLimitedResponses;
+    }
+    
+    public synchronized long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+    
+    public synchronized int getWaitingRequests() {
+        return queues.values().stream().mapToInt(ArrayDeque::size).sum();
+    }
+    
+    /**
+     * Grant waiting requests round-robin across sessions while the budget allows
+     */
+    private void dispatch() {
+        long now = nanoClock.getAsLong();
+        if (now - pausedUntilNanos < 0) {
+            return;
+        }
+        requestBucket.refill(now);
+        tokenBucket.refill(now);
+        
+        boolean grantedAny = false;
+        while (!queues.isEmpty()) {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> sessions = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> next = sessions.next();
+            Waiter waiter = next.getValue().peek();
+            
+            // Head of line blocks, so large requests are not starved by small ones
+            if (!requestBucket.canConsume(1) || !tokenBucket.canConsume(waiter.tokens)) {
+                break;
+            }
+            requestBucket.consume(1);
+            tokenBucket.consume(waiter.tokens);
+            waiter.granted = true;
+            grantedRequests++;
+            grantedAny = true;
+            
+            next.getValue().poll();
+            sessions.remove();
+            if (!next.getValue().isEmpty()) {
+                // Back of the round-robin order
+                queues.put(next.getKey(), next.getValue());
+            }
+        }
+        if (grantedAny) {
+            notifyAll();
+        }
+    }
+    
+    private long nanosUntilDispatch() {
+        long now = nanoClock.getAsLong();
+        if (now - pausedUntilNanos < 0) {
+            return pausedUntilNanos - now;
+        }
+        if (queues.isEmpty()) {
+            return WAIT_SLICE_NANOS;
+        }
+        Waiter head = queues.values().iterator().next().peek();
+        return Math.max(1, Math.max(requestBucket.nanosUntil(1), tokenBucket.nanosUntil(head.tokens)));
+    }
+    
+    private void pauseFor(Duration pause, long now) {
+        long until = now + pause.toNanos();
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+    }
+    
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+    
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Parse reset durations in the provider's format, e.g. "20ms", "1s", "6m0s"
+     */
+    static Duration parseDuration(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "ms" -> amount;
+                case "s" -> amount * 1_000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
+        }
+        return matched ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+    
+    /**
+     * Build the scheduler configured by BUDDY_RATE_LIMIT_RPM and BUDDY_RATE_LIMIT_TPM
+     * @return The scheduler, or null when no limits are configured
+     */
+    static ModelRequestScheduler fromEnv() {
+        long requestsPerMinute = BuddyEnv.getLong("BUDDY_RATE_LIMIT_RPM", 0);
+        long tokensPerMinute = BuddyEnv.getLong("BUDDY_RATE_LIMIT_TPM", 0);
+        if (requestsPerMinute <= 0 && tokensPerMinute <= 0) {
+            return null;
+        }
+        logger.info("Scheduling model requests at {} requests/min and {} tokens/min",
+                requestsPerMinute, tokensPerMinute);
+        return new ModelRequestScheduler(
+                requestsPerMinute > 0 ? requestsPerMinute : Long.MAX_VALUE / 2,
+                tokensPerMinute > 0 ? tokensPerMinute : Long.MAX_VALUE / 2,
+                Duration.ofSeconds(BuddyEnv.getLong("BUDDY_RATE_LIMIT_BURST_SECONDS", 60)),
+                BuddyEnv.getInt("BUDDY_RATE_LIMIT_COMPLETION_TOKENS", 512));
+    }
+}
@@ -0,0 +1,166 @@
+package com.jase;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Routes each turn to a model tier, or to a canned local answer, by a keyword intent classifier
+ * Classification reads the intents {@link InputAnalyzer} tagged in one pass over the input, so it
+ * costs well under a microsecond. Intents without a configured route go to the default model.
+ */
+final class ModelRouter {
+    
+    /**
+     * What a turn asks for, as far as keywords can tell
+     */
+    enum Intent {
+        GREETING,
+        SMALL_TALK,
+        TOOL,
+        COMPLEX,
+        GENERAL
+    }
+    
+    /**
+     * Route target that answers greetings and small talk without a model
+     */
+    static final String LOCAL = "local";
+    
+    /**
+     * @param model       Model to use, or null for the default model
+     * @param localAnswer Canned answer when the turn is served locally, otherwise null
+     */
+    record Route(Intent intent, String model, String localAnswer) {
+        
+        boolean isLocal() {
+            return localAnswer != null;
+        }
+    }
+    
+    private static final Pattern ARITHMETIC = Pattern.compile("\\d\\s*[-+*/^%x]\\s*\\(?\\s*\\d", Pattern.CASE_INSENSITIVE);
+    
+    // Longer turns are treated as complex
+    private static final int COMPLEX_MIN_WORDS = 40;
+    private static final int SMALL_TALK_MAX_WORDS = 8;
+    
+    private static final String GREETING_ANSWER = "Hello! I'm Buddy, your AI assistant. How can I help you today?";
+    private static final List<Map.Entry<String, String>> SMALL_TALK_ANSWERS = List.of(
+            Map.entry("how are you", "I'm doing well, thank you for asking! I'm here and ready to help you "
+                    + "with any questions or tasks you might have."),
+            Map.entry("who are you", "I'm Buddy, your AI assistant. I can chat, check the weather and the time, "
+                    + "do calculations and remember your preferences."),
+            Map.entry("thank*", "You're welcome! Let me know if there's anything else I can help with."),
+            Map.entry("thx", "You're welcome! Let me know if there's anything else I can help with."),
+            Map.entry("*bye", "Goodbye! It was nice talking to you."),
+            Map.entry("see you", "See you soon! It was nice talking to you."));
+    
+    private final Map<Intent, String> targets;
+    
+    /**
+     * @param targets Model id or {@link #LOCAL} per intent
+     */
+    ModelRouter(Map<Intent, String> targets) {
+        this.targets = targets.isEmpty() ? Map.of() : new EnumMap<>(targets);
+    }
+    
+    /**
+     * @return The router configured by BUDDY_ROUTES, or null when routing is disabled
+     */
+    static ModelRouter fromEnv() {
+        String routes = BuddyEnv.getString("BUDDY_ROUTES", null);
+        return routes == null ? null : new ModelRouter(parseRoutes(routes));
+    }
+    
+    /**
+     * Parse routes such as "greeting=local,small_talk=local,complex=gpt-4o"
+     */
+    static Map<Intent, String> parseRoutes(String spec) {
+        Map<Intent, String> routes = new EnumMap<>(Intent.class);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2 || parts[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid route: " + entry);
+            }
+            routes.put(Intent.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), parts[1].trim());
+        }
+        return routes;
+    }
+    
+    /**
+     * @return Model ids the routes refer to, besides the default model
+     */
+    Set<String> models() {
+        Set<String> models = new LinkedHashSet<>(targets.values());
+        models.remove(LOCAL);
+        return models;
+    }
+    
+    Route route(String input) {
+        return route(InputAnalyzer.shared().analyze(input));
+    }
+    
+    Route route(InputAnalyzer.Analysis input) {
+        Intent intent = classify(input);
+        String target = targets.get(intent);
+        if (LOCAL.equals(target)) {
+            String answer = cannedAnswer(input);
+            // Only greetings and small talk have canned answers; anything else needs a model
+            return new Route(intent, null, answer);
+        }
+        return new Route(intent, target, null);
+    }
+    
+    static Intent classify(String input) {
+        return classify(InputAnalyzer.shared().analyze(input));
+    }
+    
+    static Intent classify(InputAnalyzer.Analysis input) {
+        int words = input.words();
+        if (input.hasIntent("tool") || input.hasIntent("weather") || input.hasIntent("time")
+                || input.hasDigits() && ARITHMETIC.matcher(input.text()).find()) {
+            return Intent.TOOL;
+        }
+        if (words >= COMPLEX_MIN_WORDS || input.hasIntent("complex")) {
+            return Intent.COMPLEX;
+        }
+        if (words > 0 && words <= 4 && input.intentWords("greeting") >= words) {
+            return Intent.GREETING;
+        }
+        if (words <= SMALL_TALK_MAX_WORDS && smallTalkAnswer(input) != null) {
+            return Intent.SMALL_TALK;
+        }
+        return Intent.GENERAL;
+    }
+    
+    /**
+     * @return A canned answer for greetings and small talk, or null if the input needs a model
+     */
+    static String cannedAnswer(String input) {
+        return cannedAnswer(InputAnalyzer.shared().analyze(input));
+    }
+    
+    static String cannedAnswer(InputAnalyzer.Analysis input) {
+        return switch (classify(input)) {
+            case GREETING -> GREETING_ANSWER;
+            case SMALL_TALK -> smallTalkAnswer(input);
+            default -> null;
+        };
+    }
+    
+    private static String smallTalkAnswer(InputAnalyzer.Analysis input) {
+        if (!input.hasIntent("small_talk")) {
+            return null;
+        }
+        for (Map.Entry<String, String> answer : SMALL_TALK_ANSWERS) {
+            if (input.matched(answer.getKey())) {
+                return answer.getValue();
+            }
+        }
+        return null;
+    }
+}
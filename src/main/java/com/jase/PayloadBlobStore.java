@@ -0,0 +1,91 @@
+package com.jase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed blob store on the local filesystem
+ * Blobs are named by the SHA-256 of their contents, so storing the same payload twice
+ * writes it once, and a blob never changes once written. Files are spread over
+ * subdirectories by the first two hex digits of their name.
+ */
+class PayloadBlobStore {
+    
+    private static final HexFormat HEX = HexFormat.of();
+    
+    private final Path directory;
+    
+    PayloadBlobStore(Path directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Store a blob unless it is already there
+     * @return Key to read the blob back with
+     */
+    String put(byte[] contents) {
+        String key = HEX.formatHex(sha256(contents));
+        Path path = path(key);
+        if (Files.exists(path)) {
+            return key;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            // Written under a temporary name first, so readers never see a partial blob
+            Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            try {
+                Files.write(temp, contents);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Written concurrently by another worker; same key, same contents
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store payload blob " + key, e);
+        }
+        return key;
+    }
+    
+    /**
+     * @return Contents of the blob, checked against its key
+     * @throws IllegalStateException If the blob is missing or corrupt
+     */
+    byte[] get(String key) {
+        if (!key.matches("[0-9a-f]{64}")) {
+            throw new IllegalStateException("Invalid payload blob key " + key);
+        }
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(path(key));
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Payload blob " + key + " not found in " + directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read payload blob " + key, e);
+        }
+        if (!HEX.formatHex(sha256(contents)).equals(key)) {
+            throw new IllegalStateException("Payload blob " + key + " is corrupt");
+        }
+        return contents;
+    }
+    
+    private Path path(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+    
+    private static byte[] sha256(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.jase;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-user preferences held in memory and persisted to an append-only {@link SegmentStore}
+ * Each user's preferences are an immutable map, so reads are lock-free lookups; writes are
+ * serialized, appended to the log and then published by swapping in a new map. The log is
+ * loaded in bulk when the store opens and periodically compacted into a fresh snapshot segment.
+ */
+class PreferenceStore implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PreferenceStore.class);
+    
+    // Separates user and preference key in log keys; unlikely to appear in either
+    private static final char SEPARATOR = '\u001F';
+    private static final long MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+    
+    private final SegmentStore log;
+    private final Map<String, String> defaults;
+    private final Map<String, Map<String, String>> users = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService compactor;
+    
+    // Guarded by this
+    private long writesSinceCompaction;
+    
+    /**
+     * @param directory          Directory for the preference log, or null to keep preferences in memory only
+     * @param defaults           Preferences every user starts with
+     * @param compactionInterval How often the log is compacted when it has changed; zero disables
+     */
+    PreferenceStore(Path directory, Map<String, String> defaults, Duration compactionInterval) {
+        this.defaults = Map.copyOf(defaults);
+        this.log = directory != null ? new SegmentStore(directory, MAX_SEGMENT_BYTES) : null;
+        if (log != null) {
+            load();
+        }
+        if (log != null && !compactionInterval.isZero()) {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "buddy-preferences-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long seconds = Math.max(1, compactionInterval.toSeconds());
+            compactor.scheduleWithFixedDelay(this::compactIfChanged, seconds, seconds, TimeUnit.SECONDS);
+        } else {
+            this.compactor = null;
+        }
+    }
+    
+    /**
+     * Preferences that live only as long as the process
+     */
+    static PreferenceStore inMemory(Map<String, String> defaults) {
+        return new PreferenceStore(null, defaults, Duration.ZERO);
+    }
+    
+    /**
+     * @param directory Directory of the preference log; the compaction interval comes from the environment
+     */
+    static PreferenceStore fromEnv(Path directory, Map<String, String> defaults) {
+        return new PreferenceStore(
+                directory,
+                defaults,
+                Duration.ofSeconds(BuddyEnv.getLong("BUDDY_PREFERENCES_COMPACT_SECONDS", 300)));
+    }
+    
+    /**
+     * @return The user's value for the key, the default value, or null
+     */
+    String get(String userId, String key) {
+        Map<String, String> preferences = users.get(userId);
+        String value = preferences != null ? preferences.get(key) : null;
+        return value != null ? value : defaults.get(key);
+    }
+    
+    synchronized void put(String userId, String key, String value) {
+        if (log != null) {
+            log.put(logKey(userId, key), value.getBytes(StandardCharsets.UTF_8));
+            writesSinceCompaction++;
+        }
+        Map<String, String> updated = new HashMap<>(users.getOrDefault(userId, Map.of()));
+        updated.put(key, value);
+        users.put(userId, Map.copyOf(updated));
+    }
+    
+    synchronized void remove(String userId, String key) {
+        Map<String, String> preferences = users.get(userId);
+        if (preferences == null || !preferences.containsKey(key)) {
+            return;
+        }
+        if (log != null) {
+            log.delete(logKey(userId, key));
+            writesSinceCompaction++;
+        }
+        Map<String, String> updated = new HashMap<>(preferences);
+        updated.remove(key);
+        if (updated.isEmpty()) {
+            users.remove(userId);
+        } else {
+            users.put(userId, Map.copyOf(updated));
+        }
+    }
+    
+    /**
+     * @return Number of users with at least one stored preference
+     */
+    int userCount() {
+        return users.size();
+    }
+    
+    /**
+     * Rewrite the log as a snapshot of the live preferences if anything changed since the last compaction
+     */
+    synchronized void compactIfChanged() {
+        if (log == null || writesSinceCompaction == 0) {
+            return;
+        }
+        try {
+            log.compact();
+            writesSinceCompaction = 0;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to compact preference log", e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+    
+    private void load() {
+        Map<String, Map<String, String>> loaded = new HashMap<>();
+        for (String logKey : log.keys()) {
+            int separator = logKey.indexOf(SEPARATOR);
+            byte[] value = log.get(logKey);
+            if (separator < 0 || value == null) {
+                continue;
+            }
+            loaded.computeIfAbsent(logKey.substring(0, separator), userId -> new HashMap<>())
+                    .put(logKey.substring(separator + 1), new String(value, StandardCharsets.UTF_8));
+        }
+        loaded.forEach((userId, preferences) -> users.put(userId, Map.copyOf(preferences)));
+        logger.info("Loaded preferences for {} users", users.size());
+    }
+    
+    private static String logKey(String userId, String key) {
+        return userId + SEPARATOR + key;
+    }
+}
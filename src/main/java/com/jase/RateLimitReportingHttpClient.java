@@ -0,0 +1,101 @@
+package com.jase;
+
+import java.time.Duration;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+/**
+ * HTTP client for the model provider that reports rate-limit response
+ * headers to a {@link ModelRequestScheduler}
+ */
+class RateLimitReportingHttpClient implements HttpClient {
+    
+    /**
+     * Builder that wraps the clients built by another builder
+     */
+    static class Builder implements HttpClientBuilder {
+        
+        private final HttpClientBuilder delegate;
+        private final ModelRequestScheduler scheduler;
+        
+        Builder(HttpClientBuilder delegate, ModelRequestScheduler scheduler) {
+            this.delegate = delegate;
+            this.scheduler = scheduler;
+        }
+        
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+        
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            delegate.connectTimeout(timeout);
+            return this;
+        }
+        
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+        
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            delegate.readTimeout(timeout);
+            return this;
+        }
+        
+        @Override
+        public HttpClient build() {
+            return new RateLimitReportingHttpClient(delegate.build(), scheduler);
+        }
+    }
+    
+    private final HttpClient delegate;
+    private final ModelRequestScheduler scheduler;
+    
+    RateLimitReportingHttpClient(HttpClient delegate, ModelRequestScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+    
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException {
+        SuccessfulHttpResponse response = delegate.execute(request);
+        scheduler.onRateLimitHeaders(response.headers());
+        return response;
+    }
+    
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        delegate.execute(request, parser, new ServerSentEventListener() {
+            @Override
+            public void onOpen(SuccessfulHttpResponse response) {
+                scheduler.onRateLimitHeaders(response.headers());
+                listener.onOpen(response);
+            }
+            
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                listener.onEvent(event);
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                listener.onError(error);
+            }
+            
+            @Override
+            public void onClose() {
+                listener.onClose();
+            }
+        });
+    }
+}
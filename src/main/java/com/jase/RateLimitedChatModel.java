@@ -0,0 +1,109 @@
+package com.jase;
+
+import java.util.List;
+import java.util.Set;
+
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.temporal.activity.Activity;
+
+/**
+ * Chat model that sends every request through a {@link ModelRequestScheduler}
+ * Rate-limited responses go back through the scheduler, which pauses all
+ * requests, instead of failing the activity or retrying immediately.
+ */
+public class RateLimitedChatModel implements ChatModel {
+    
+    static final int MAX_RATE_LIMITED_ATTEMPTS = 5;
+    
+    private final ChatModel delegate;
+    private final ModelRequestScheduler scheduler;
+    
+    public RateLimitedChatModel(ChatModel delegate, ModelRequestScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+    
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        String sessionId = BuddyActivities.currentConversationId();
+        int estimatedTokens = scheduler.estimateTokens(request);
+        
+        for (int attempt = 1; ; attempt++) {
+            ModelRequestScheduler.Permit permit = acquire(scheduler, sessionId, estimatedTokens);
+            try {
+                ChatResponse response = delegate.chat(request);
+                permit.release(actualTokens(response.tokenUsage(), estimatedTokens));
+                scheduler.onSuccess();
+                return response;
+            } catch (RateLimitException e) {
+                // Rejected requests don't consume tokens
+                permit.release(0);
+                scheduler.onRateLimited();
+                if (attempt >= MAX_RATE_LIMITED_ATTEMPTS) {
+                    throw e;
+                }
+            } catch (ModelCircuitBreaker.CircuitOpenException e) {
+                // Nothing was sent
+                permit.release(0);
+                throw e;
+            } catch (RuntimeException e) {
+                permit.release(estimatedTokens);
+                throw e;
+            }
+        }
+    }
+    
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+    
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+    
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+    
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+    
+    static ModelRequestScheduler.Permit acquire(ModelRequestScheduler scheduler, String sessionId,
+            int estimatedTokens) {
+        try {
+            return scheduler.acquire(sessionId, estimatedTokens, RateLimitedChatModel::heartbeat);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a model request slot", e);
+        }
+    }
+    
+    static int actualTokens(TokenUsage usage, int estimatedTokens) {
+        return usage != null && usage.totalTokenCount() != null ? usage.totalTokenCount() : estimatedTokens;
+    }
+    
+    /**
+     * Keep the activity alive while it waits for a slot
+     */
+    private static void heartbeat() {
+        try {
+            Activity.getExecutionContext().heartbeat(null);
+        } catch (IllegalStateException e) {
+            // Not running inside an activity
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.jase;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+/**
+ * Streaming chat model that waits for a {@link ModelRequestScheduler} permit
+ * before opening each stream
+ * A stream rejected with a rate limit before it emitted any token is queued again,
+ * like {@link RateLimitedChatModel} does; once tokens were emitted the error is passed on.
+ */
+public class RateLimitedStreamingChatModel implements StreamingChatModel {
+    
+    private final StreamingChatModel delegate;
+    private final ModelRequestScheduler scheduler;
+    
+    public RateLimitedStreamingChatModel(StreamingChatModel delegate, ModelRequestScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+    
+    @Override
+    public void chat(ChatRequest request, StreamingChatResponseHandler handler) {
+        send(request, handler, BuddyActivities.currentConversationId(), scheduler.estimateTokens(request), 1);
+    }
+    
+    private void send(ChatRequest request, StreamingChatResponseHandler handler, String sessionId,
+            int estimatedTokens, int attempt) {
+        ModelRequestScheduler.Permit permit = RateLimitedChatModel.acquire(scheduler, sessionId, estimatedTokens);
+        // A stream that already emitted tokens can't be re-sent without the caller seeing them twice
+        AtomicBoolean emitted = new AtomicBoolean();
+        
+        delegate.chat(request, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                emitted.set(true);
+                handler.onPartialResponse(partialResponse);
+            }
+            
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                permit.release(RateLimitedChatModel.actualTokens(completeResponse.tokenUsage(), estimatedTokens));
+                scheduler.onSuccess();
+                handler.onCompleteResponse(completeResponse);
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                if (error instanceof RateLimitException) {
+                    // Rejected requests don't consume tokens
+                    permit.release(0);
+                    scheduler.onRateLimited();
+                    if (!emitted.get() && attempt < RateLimitedChatModel.MAX_RATE_LIMITED_ATTEMPTS) {
+                        // Queue again behind the scheduler's pause; the provider's callback thread
+                        // must not block on the permit
+                        Thread.ofVirtual().start(() -> {
+                            try {
+                                send(request, handler, sessionId, estimatedTokens, attempt + 1);
+                            } catch (RuntimeException e) {
+                                handler.onError(e);
+                            }
+                        });
+                        return;
+                    }
+                } else if (error instanceof ModelCircuitBreaker.CircuitOpenException) {
+                    permit.release(0);
+                } else {
+                    permit.release(estimatedTokens);
+                }
+                handler.onError(error);
+            }
+        });
+    }
+    
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+    
+    @Override
+    public List<ChatModelListener> listeners() {
+        // The delegate notifies its own listeners
+        return List.of();
+    }
+    
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+    
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
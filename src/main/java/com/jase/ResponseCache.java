@@ -0,0 +1,47 @@
+package com.jase;
+
+/**
+ * Cache of generated responses placed in front of the model
+ * Implementations must be thread-safe.
+ */
+public interface ResponseCache {
+    
+    /**
+     * Cache counters since creation
+     * @param hits Lookups answered from the cache
+     * @param misses Lookups that had to go to the model
+     * @param evictions Entries dropped to stay within the memory budget
+     * @param expirations Entries dropped because their TTL passed
+     * @param entries Entries currently cached
+     * @param bytes Estimated heap used by cached entries
+     * @param savedNanos Model latency avoided by hits
+     */
+    record Stats(long hits, long misses, long evictions, long expirations, long entries, long bytes,
+            long savedNanos) {
+        
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+    
+    /**
+     * @return The cached response, or null on a miss
+     */
+    String get(String key);
+    
+    /**
+     * @return Whether a live entry is cached; unlike {@link #get} it counts no lookup and leaves
+     *         the entry's recency and frequency alone
+     */
+    boolean contains(String key);
+    
+    /**
+     * @param key Cache key
+     * @param response Generated response
+     * @param generationNanos How long the model took, credited as saved on later hits
+     */
+    void put(String key, String response, long generationNanos);
+    
+    Stats stats();
+}
@@ -0,0 +1,348 @@
+package com.jase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only key/value store made of segment files on local disk
+ * Every put or delete appends a record to the active segment and an in-memory
+ * index points each live key at its latest record. Segments roll over at a size
+ * limit and are merged by compaction once most of their bytes are dead.
+ */
+class SegmentStore implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStore.class);
+    
+    // Record header: key length, value length (-1 for a tombstone), CRC32 of key and value
+    private static final int HEADER_BYTES = 12;
+    private static final int TOMBSTONE = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    // Don't bother compacting tiny stores
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+    
+    /**
+     * @param writtenAtMillis When the record was written; for records replayed from disk, when
+     *                        their segment was last modified, which is never earlier
+     */
+    private record Location(long segmentId, long valueOffset, int valueLength, int recordLength,
+            long writtenAtMillis) {
+    }
+    
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final TreeMap<Long, FileChannel> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private long activeSegmentId;
+    private FileChannel activeSegment;
+    private long activeSegmentBytes;
+    private long totalBytes;
+    private long liveBytes;
+    
+    /**
+     * Open a store, creating the directory if needed and replaying existing segments
+     * @param directory Directory holding the segment files
+     * @param maxSegmentBytes Size at which the active segment is sealed and a new one started
+     */
+    SegmentStore(Path directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        try {
+            Files.createDirectories(directory);
+            for (long segmentId : listSegmentIds()) {
+                FileChannel channel = FileChannel.open(segmentPath(segmentId),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                segments.put(segmentId, channel);
+                replay(segmentId, channel, Files.getLastModifiedTime(segmentPath(segmentId)).toMillis());
+            }
+            if (segments.isEmpty()) {
+                openNewActiveSegment(1);
+            } else {
+                activeSegmentId = segments.lastKey();
+                activeSegment = segments.get(activeSegmentId);
+                activeSegmentBytes = activeSegment.size();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segment store at " + directory, e);
+        }
+        logger.info("Opened segment store at {} with {} keys in {} segments",
+                directory, index.size(), segments.size());
+    }
+    
+    /**
+     * @return The latest value stored for the key, or null if absent
+     */
+    byte[] get(String key) {
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(location.valueLength());
+            readFully(segments.get(location.segmentId()), buffer, location.valueOffset());
+            return buffer.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read key " + key, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    void put(String key, byte[] value) {
+        append(key, value);
+    }
+    
+    void delete(String key) {
+        if (index.containsKey(key)) {
+            append(key, null);
+        }
+    }
+    
+    boolean contains(String key) {
+        return index.containsKey(key);
+    }
+    
+    /**
+     * @return A snapshot of the live keys
+     */
+    Set<String> keys() {
+        return Set.copyOf(index.keySet());
+    }
+    
+    int size() {
+        return index.size();
+    }
+    
+    /**
+     * @return The live keys last written before the given time, e.g. to delete idle ones
+     */
+    List<String> keysWrittenBefore(long millis) {
+        List<String> keys = new ArrayList<>();
+        index.forEach((key, location) -> {
+            if (location.writtenAtMillis() < millis) {
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+    
+    /**
+     * Rewrite all live records into a fresh segment and drop the old ones
+     */
+    void compact() {
+        lock.writeLock().lock();
+        try {
+            long before = totalBytes;
+            List<Long> oldSegmentIds = new ArrayList<>(segments.keySet());
+            
+            // Live records go to a new segment so replay order still yields the latest values
+            openNewActiveSegment(activeSegmentId + 1);
+            totalBytes = 0;
+            liveBytes = 0;
+            // Tombstones are not copied: nothing older is left for them to hide
+            for (String key : List.copyOf(index.keySet())) {
+                Location location = index.get(key);
+                ByteBuffer value = ByteBuffer.allocate(location.valueLength());
+                readFully(segments.get(location.segmentId()), value, location.valueOffset());
+                writeRecord(key, value.array(), location.writtenAtMillis());
+            }
+            liveBytes = totalBytes;
+            
+            // Delete oldest first so a crash mid-way can never resurrect a deleted key
+            for (long segmentId : oldSegmentIds) {
+                segments.remove(segmentId).close();
+                Files.deleteIfExists(segmentPath(segmentId));
+            }
+            openNewActiveSegment(activeSegmentId + 1);
+            logger.info("Compacted segment store at {} from {} to {} bytes", directory, before, totalBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact segment store at " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (FileChannel channel : segments.values()) {
+                channel.force(false);
+                channel.close();
+            }
+            segments.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close segment store at " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void append(String key, byte[] value) {
+        lock.writeLock().lock();
+        try {
+            if (activeSegmentBytes >= maxSegmentBytes) {
+                openNewActiveSegment(activeSegmentId + 1);
+            }
+            writeRecord(key, value, System.currentTimeMillis());
+            if (totalBytes >= MIN_COMPACTION_BYTES && liveBytes * 2 < totalBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write key " + key, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void writeRecord(String key, byte[] value, long writtenAtMillis) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int valueLength = value == null ? TOMBSTONE : value.length;
+        int recordLength = HEADER_BYTES + keyBytes.length + Math.max(valueLength, 0);
+        
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(keyBytes.length);
+        record.putInt(valueLength);
+        record.putInt(checksum(keyBytes, value));
+        record.put(keyBytes);
+        if (value != null) {
+            record.put(value);
+        }
+        record.flip();
+        
+        long recordOffset = activeSegmentBytes;
+        while (record.hasRemaining()) {
+            activeSegment.write(record, recordOffset + record.position());
+        }
+        activeSegmentBytes += recordLength;
+        totalBytes += recordLength;
+        
+        Location previous;
+        if (value == null) {
+            previous = index.remove(key);
+        } else {
+            long valueOffset = recordOffset + HEADER_BYTES + keyBytes.length;
+            previous = index.put(key, new Location(activeSegmentId, valueOffset, valueLength, recordLength,
+                    writtenAtMillis));
+            liveBytes += recordLength;
+        }
+        if (previous != null) {
+            liveBytes -= previous.recordLength();
+        }
+    }
+    
+    private void replay(long segmentId, FileChannel channel, long modifiedMillis) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, offset);
+            header.flip();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            int expectedChecksum = header.getInt();
+            int recordLength = HEADER_BYTES + keyLength + Math.max(valueLength, 0);
+            if (keyLength < 0 || valueLength < TOMBSTONE || offset + recordLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(recordLength - HEADER_BYTES);
+            readFully(channel, body, offset + HEADER_BYTES);
+            byte[] keyBytes = new byte[keyLength];
+            body.flip();
+            body.get(keyBytes);
+            byte[] value = null;
+            if (valueLength != TOMBSTONE) {
+                value = new byte[valueLength];
+                body.get(value);
+            }
+            if (checksum(keyBytes, value) != expectedChecksum) {
+                break;
+            }
+            
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            Location previous = value == null
+                    ? index.remove(key)
+                    : index.put(key, new Location(segmentId, offset + HEADER_BYTES + keyLength, valueLength,
+                            recordLength, modifiedMillis));
+            if (value != null) {
+                liveBytes += recordLength;
+            }
+            if (previous != null) {
+                liveBytes -= previous.recordLength();
+            }
+            totalBytes += recordLength;
+            offset += recordLength;
+        }
+        if (offset < size) {
+            // A torn write from a crash; drop the partial tail
+            logger.warn("Truncating corrupt tail of segment {} at offset {}", segmentId, offset);
+            channel.truncate(offset);
+        }
+    }
+    
+    private void openNewActiveSegment(long segmentId) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(segmentId, channel);
+        activeSegmentId = segmentId;
+        activeSegment = channel;
+        activeSegmentBytes = channel.size();
+    }
+    
+    private List<Long> listSegmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+    
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+    
+    private static int checksum(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+        return (int) crc.getValue();
+    }
+}
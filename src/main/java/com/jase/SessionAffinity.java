@@ -0,0 +1,75 @@
+package com.jase;
+
+import java.time.Duration;
+
+import io.temporal.activity.ActivityInterface;
+import io.temporal.activity.ActivityMethod;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerFactory;
+import io.temporal.worker.WorkerOptions;
+
+/**
+ * Keeps the turns of a conversation on the worker that holds its memory
+ * Every worker also polls a task queue of its own. A session asks the shared queue for the
+ * queue of whichever worker answers, and sends its generate activities there with a short
+ * schedule-to-start timeout; when that worker is gone, the timeout fires and the session is
+ * pinned again through the shared queue.
+ */
+public final class SessionAffinity {
+    
+    /**
+     * Answered on the shared task queue by any worker
+     */
+    @ActivityInterface
+    public interface WorkerQueueActivities {
+        
+        /**
+         * @return The task queue only the worker running this activity polls
+         */
+        @ActivityMethod
+        String workerTaskQueue();
+    }
+    
+    static final class WorkerQueue implements WorkerQueueActivities {
+        
+        private final String taskQueue;
+        
+        WorkerQueue(String taskQueue) {
+            this.taskQueue = taskQueue;
+        }
+        
+        @Override
+        public String workerTaskQueue() {
+            return taskQueue;
+        }
+    }
+    
+    private SessionAffinity() {
+    }
+    
+    /**
+     * @return How long a pinned turn waits for its worker, or null when BUDDY_SESSION_AFFINITY is off
+     */
+    static Duration timeoutFromEnv() {
+        if (!BuddyEnv.getBoolean("BUDDY_SESSION_AFFINITY", false)) {
+            return null;
+        }
+        return Duration.ofMillis(BuddyEnv.getLong("BUDDY_SESSION_AFFINITY_TIMEOUT_MS", 5_000));
+    }
+    
+    /**
+     * Create the worker's own task queue next to the shared one
+     * @param shared     Worker of the shared task queue, which answers {@link WorkerQueueActivities}
+     * @param workerId   Identity of this worker, unique among the workers of the shared queue
+     * @param activities Activities whose state is worth staying close to
+     * @return Name of the worker's own task queue
+     */
+    static String register(WorkerFactory factory, Worker shared, String workerId, WorkerOptions options,
+            Object... activities) {
+        String taskQueue = shared.getTaskQueue() + "@" + workerId;
+        shared.registerActivitiesImplementations(new WorkerQueue(taskQueue));
+        Worker own = factory.newWorker(taskQueue, options);
+        own.registerActivitiesImplementations(activities);
+        return taskQueue;
+    }
+}
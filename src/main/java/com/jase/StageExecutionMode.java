@@ -0,0 +1,24 @@
+package com.jase;
+
+/**
+ * How the cheap preprocess and postprocess stages of a turn are executed.
+ * generateResponse always runs as a regular activity.
+ */
+public enum StageExecutionMode {
+    
+    /** Regular activities scheduled through the task queue */
+    ACTIVITY,
+    
+    /** Local activities executed by the worker that runs the workflow task */
+    LOCAL_ACTIVITY,
+    
+    /** Deterministic workflow code, no activity at all */
+    WORKFLOW;
+    
+    /**
+     * @return The mode configured by BUDDY_STAGE_MODE, defaulting to {@link #ACTIVITY}
+     */
+    public static StageExecutionMode fromEnv() {
+        return valueOf(BuddyEnv.getString("BUDDY_STAGE_MODE", ACTIVITY.name()).toUpperCase());
+    }
+}
@@ -0,0 +1,125 @@
+package com.jase;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.temporal.api.workflow.v1.PendingActivityInfo;
+import io.temporal.client.WorkflowStub;
+import io.temporal.common.converter.DataConverter;
+
+/**
+ * Buffers tokens streamed from the model for one activity invocation
+ * Tokens may arrive on any thread; the activity thread waits in {@link #await} and
+ * periodically heartbeats the text received so far. Clients read it from the pending
+ * activity's heartbeat details with {@link #streamedText}, so streaming adds nothing to
+ * the workflow history.
+ */
+class StreamingResponseBuffer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StreamingResponseBuffer.class);
+    
+    // Activity type of BuddyActivitiesInterface#generateResponse
+    private static final String GENERATE_ACTIVITY = "GenerateResponse";
+    
+    /**
+     * Receives the text streamed so far on every flush, e.g. the activity's heartbeat
+     */
+    @FunctionalInterface
+    interface Heartbeat {
+        
+        void heartbeat(String text);
+    }
+    
+    private final long startNanos;
+    private final Heartbeat heartbeat;
+    private final StringBuilder buffer = new StringBuilder();
+    private final CompletableFuture<String> completion = new CompletableFuture<>();
+    
+    private boolean firstTokenSeen;
+    
+    /**
+     * @param heartbeat Heartbeat of the activity, or null outside an activity
+     */
+    StreamingResponseBuffer(Heartbeat heartbeat) {
+        this.startNanos = System.nanoTime();
+        this.heartbeat = heartbeat;
+    }
+    
+    /**
+     * Text streamed so far by a workflow's running generateResponse activity, from its last heartbeat
+     * Heartbeats are throttled by the worker, so the text trails the model by up to the worker's
+     * heartbeat throttle interval.
+     * @param converter Data converter of the workflow client, which decodes the heartbeat details
+     * @return The text, or null if no generateResponse activity has heartbeated
+     */
+    static String streamedText(WorkflowStub workflow, DataConverter converter) {
+        for (PendingActivityInfo activity : workflow.describe().getRawDescription().getPendingActivitiesList()) {
+            if (GENERATE_ACTIVITY.equals(activity.getActivityType().getName()) && activity.hasHeartbeatDetails()) {
+                return converter.fromPayloads(0, Optional.of(activity.getHeartbeatDetails()), String.class, String.class);
+            }
+        }
+        return null;
+    }
+    
+    void onToken(String token) {
+        synchronized (buffer) {
+            if (!firstTokenSeen) {
+                firstTokenSeen = true;
+                long ttft = System.nanoTime() - startNanos;
+                BuddyMetrics.recordTimeToFirstToken(ttft);
+                logger.info("Time to first token: {} ms", TimeUnit.NANOSECONDS.toMillis(ttft));
+            }
+            buffer.append(token);
+        }
+    }
+    
+    void complete(String response) {
+        completion.complete(response);
+    }
+    
+    void fail(Throwable error) {
+        completion.completeExceptionally(error);
+    }
+    
+    /**
+     * Wait for the full response, flushing partial text every flush interval
+     * @return The complete response text
+     */
+    String await(Duration flushInterval, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            try {
+                String response = completion.get(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                flush();
+                return response != null ? response : currentText();
+            } catch (TimeoutException e) {
+                if (System.nanoTime() >= deadline) {
+                    throw new TimeoutException("Streaming response did not complete within " + timeout);
+                }
+                flush();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+    }
+    
+    private void flush() {
+        // The heartbeat also keeps the activity alive while the model is slow to answer
+        if (heartbeat != null) {
+            heartbeat.heartbeat(currentText());
+        }
+    }
+    
+    private String currentText() {
+        synchronized (buffer) {
+            return buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.jase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local OpenAI-compatible chat completions endpoint for tests and load runs
+ * Replies after a configurable latency, optionally streams tokens with a delay
+ * between them, and can enforce a requests-per-minute limit with 429 responses
+ * and x-ratelimit-* headers like the real provider. Every Nth request can be
+ * made slow to produce a latency tail, and chosen requests can fail.
+ */
+public final class StubOpenAiServer implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StubOpenAiServer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    static {
+        // Headers and body are written separately; with Nagle's algorithm every response waits
+        // for the client's delayed ACK. Read once, when the JDK server is first used.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration tokenDelay = Duration.ZERO;
+    private volatile int slowEvery;
+    private volatile Duration slowLatency = Duration.ZERO;
+    private volatile Duration connectLatency = Duration.ZERO;
+    private volatile Function<String, String> reply = input -> "Stub response to: " + input;
+    private volatile LongPredicate failing = number -> false;
+    private volatile int failureStatus;
+    private TokenBucket rateLimit;
+    
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimitedRequests = new AtomicLong();
+    private final Map<String, AtomicLong> requestsByModel = new ConcurrentHashMap<>();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Start the server on an ephemeral local port
+     */
+    public StubOpenAiServer() {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start stub OpenAI server", e);
+        }
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handleChatCompletion);
+        server.createContext("/v1/models", this::handleModels);
+        server.start();
+        logger.info("Stub OpenAI server listening on {}", getBaseUrl());
+    }
+    
+    /**
+     * @return Base URL to configure as the model client's base URL
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+    
+    /**
+     * @param latency Delay before the response (or the first streamed token)
+     */
+    public StubOpenAiServer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+    
+    /**
+     * @param tokenDelay Delay between streamed tokens
+     */
+    public StubOpenAiServer withTokenDelay(Duration tokenDelay) {
+        this.tokenDelay = tokenDelay;
+        return this;
+    }
+    
+    /**
+     * @param everyNth    Every Nth request is slow; zero disables
+     * @param slowLatency Delay of the slow requests instead of the regular latency
+     */
+    public StubOpenAiServer withSlowRequests(int everyNth, Duration slowLatency) {
+        this.slowLatency = slowLatency;
+        this.slowEvery = everyNth;
+        return this;
+    }
+    
+    /**
+     * @param connectLatency Delay of the first request on each connection, standing in for
+     *                       the network round trips and TLS handshake of a remote endpoint
+     */
+    public StubOpenAiServer withConnectLatency(Duration connectLatency) {
+        this.connectLatency = connectLatency;
+        return this;
+    }
+    
+    /**
+     * @param reply Builds the response from the last user message
+     */
+    public StubOpenAiServer withReply(Function<String, String> reply) {
+        this.reply = reply;
+        return this;
+    }
+    
+    /**
+     * @param requests Numbers of the requests that fail, counting from 1; they fail right away
+     * @param status   HTTP status of the failures, e.g. 500 for a retriable or 400 for a permanent one
+     */
+    public StubOpenAiServer withFailures(LongPredicate requests, int status) {
+        this.failureStatus = status;
+        this.failing = requests;
+        return this;
+    }
+    
+    /**
+     * Reject requests above the given rate with 429 responses
+     */
+    public synchronized StubOpenAiServer withRateLimit(long requestsPerMinute, Duration burstWindow) {
+        this.rateLimit = new TokenBucket(requestsPerMinute, burstWindow, System.nanoTime());
+        return this;
+    }
+    
+    public long getRequests() {
+        return requests.get();
+    }
+    
+    /**
+     * @return Requests received for the given model
+     */
+    public long getRequests(String model) {
+        AtomicLong count = requestsByModel.get(model);
+        return count != null ? count.get() : 0;
+    }
+    
+    public long getRateLimitedRequests() {
+        return rateLimitedRequests.get();
+    }
+    
+    /**
+     * @return Connections the server has accepted requests on
+     */
+    public int getConnections() {
+        return connections.size();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handleModels(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            connect(exchange);
+            ObjectNode response = MAPPER.createObjectNode().put("object", "list");
+            response.putArray("data").addObject().put("id", "stub").put("object", "model");
+            byte[] bytes = MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+    
+    private void handleChatCompletion(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            connect(exchange);
+            long number = requests.incrementAndGet();
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = MAPPER.readTree(body);
+            }
+            String model = request.path("model").asText("stub");
+            requestsByModel.computeIfAbsent(model, name -> new AtomicLong()).incrementAndGet();
+            
+            if (!admit(exchange)) {
+                rateLimitedRequests.incrementAndGet();
+                sendError(exchange, 429, "Rate limit reached", "requests", "rate_limit_exceeded");
+                return;
+            }
+            if (failing.test(number)) {
+                sendError(exchange, failureStatus, "Stub failure", "server_error", "stub_failure");
+                return;
+            }
+            
+            int slow = slowEvery;
+            sleep(slow > 0 && number % slow == 0 ? slowLatency : latency);
+            String prompt = lastUserMessage(request);
+            String content = reply.apply(prompt);
+            int promptTokens = Math.max(1, request.toString().length() / 4);
+            int completionTokens = Math.max(1, content.length() / 4);
+            
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, model, content, promptTokens, completionTokens);
+            } else {
+                ObjectNode response = MAPPER.createObjectNode()
+                        .put("id", "chatcmpl-stub")
+                        .put("object", "chat.completion")
+                        .put("created", System.currentTimeMillis() / 1000)
+                        .put("model", model);
+                ObjectNode choice = response.putArray("choices").addObject().put("index", 0);
+                choice.putObject("message").put("role", "assistant").put("content", content);
+                choice.put("finish_reason", "stop");
+                response.set("usage", usage(promptTokens, completionTokens));
+                
+                byte[] bytes = MAPPER.writeValueAsBytes(response);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+        }
+    }
+    
+    private static void sendError(HttpExchange exchange, int status, String message, String type, String code)
+            throws IOException {
+        byte[] error = MAPPER.writeValueAsBytes(MAPPER.createObjectNode().set("error",
+                MAPPER.createObjectNode()
+                        .put("message", message)
+                        .put("type", type)
+                        .put("code", code)));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, error.length);
+        exchange.getResponseBody().write(error);
+    }
+    
+    private void stream(HttpExchange exchange, String model, String content, int promptTokens,
+            int completionTokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        
+        String[] tokens = content.split("(?<= )");
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                sleep(tokenDelay);
+            }
+            ObjectNode chunk = chunk(model);
+            ((ObjectNode) chunk.withArray("choices").get(0)).putObject("delta").put("content", tokens[i]);
+            writeEvent(out, MAPPER.writeValueAsString(chunk));
+        }
+        
+        ObjectNode last = chunk(model);
+        ((ObjectNode) last.withArray("choices").get(0)).put("finish_reason", "stop").putObject("delta");
+        last.set("usage", usage(promptTokens, completionTokens));
+        writeEvent(out, MAPPER.writeValueAsString(last));
+        writeEvent(out, "[DONE]");
+    }
+    
+    // The remote address identifies the connection; only its first request pays the connect latency
+    private void connect(HttpExchange exchange) {
+        if (connections.add(exchange.getRemoteAddress())) {
+            sleep(connectLatency);
+        }
+    }
+    
+    private static ObjectNode chunk(String model) {
+        ObjectNode chunk = MAPPER.createObjectNode()
+                .put("id", "chatcmpl-stub")
+                .put("object", "chat.completion.chunk")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model);
+        ArrayNode choices = chunk.putArray("choices");
+        choices.addObject().put("index", 0);
+        return chunk;
+    }
+    
+    private static ObjectNode usage(int promptTokens, int completionTokens) {
+        return MAPPER.createObjectNode()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+    
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    /**
+     * Apply the rate limit and set the x-ratelimit-* headers
+     */
+    private synchronized boolean admit(HttpExchange exchange) {
+        if (rateLimit == null) {
+            return true;
+        }
+        long now = System.nanoTime();
+        rateLimit.refill(now);
+        boolean admitted = rateLimit.canConsume(1);
+        if (admitted) {
+            rateLimit.consume(1);
+        }
+        long remaining = (long) Math.max(0, Math.floor(rateLimit.available()));
+        exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", Long.toString(remaining));
+        exchange.getResponseHeaders().set("x-ratelimit-reset-requests",
+                Math.max(1, Duration.ofNanos(rateLimit.nanosUntil(1)).toMillis()) + "ms");
+        return admitted;
+    }
+    
+    private static String lastUserMessage(JsonNode request) {
+        String last = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                JsonNode content = message.path("content");
+                last = content.isTextual() ? content.asText() : content.path(0).path("text").asText();
+            }
+        }
+        return last;
+    }
+    
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.jase;
+
+import java.time.Duration;
+
+/**
+ * Continuously refilling token bucket; not thread-safe, callers synchronize
+ */
+class TokenBucket {
+    
+    private final double capacity;
+    private final double refillPerNano;
+    private double available;
+    private long lastRefillNanos;
+    
+    /**
+     * @param perMinute Sustained rate, in units per minute
+     * @param burstWindow Burst allowance; the bucket holds this much of the per-minute rate
+     * @param nowNanos Current time
+     */
+    TokenBucket(long perMinute, Duration burstWindow, long nowNanos) {
+        this.refillPerNano = perMinute / (double) Duration.ofMinutes(1).toNanos();
+        this.capacity = Math.max(1, refillPerNano * burstWindow.toNanos());
+        this.available = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+    
+    void refill(long nowNanos) {
+        available = Math.min(capacity, available + (nowNanos - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = nowNanos;
+    }
+    
+    boolean canConsume(double amount) {
+        return available >= amount;
+    }
+    
+    void consume(double amount) {
+        available -= amount;
+    }
+    
+    /**
+     * Return or take back units after the real cost is known; may go negative
+     */
+    void adjust(double delta) {
+        available = Math.min(capacity, available + delta);
+    }
+    
+    /**
+     * Lower the available units to what the provider reports as remaining
+     */
+    void limitTo(double remaining) {
+        available = Math.min(available, remaining);
+    }
+    
+    double available() {
+        return available;
+    }
+    
+    double capacity() {
+        return capacity;
+    }
+    
+    /**
+     * @return Nanoseconds until the given amount is available, 0 if it already is
+     */
+    long nanosUntil(double amount) {
+        double missing = amount - available;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerNano);
+    }
+}
@@ -0,0 +1,187 @@
+package com.jase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+/**
+ * Chat memory that keeps each request within a token budget instead of a message count
+ * Oversized tool results are trimmed when they are added. When the conversation outgrows the
+ * budget, its oldest turns are evicted whole and folded into a rolling summary by a
+ * {@link ConversationSummarizer}; the summary is sent as a system message ahead of the
+ * remaining turns. Tokens are estimated at four characters each.
+ */
+class TokenBudgetChatMemory implements ChatMemory {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TokenBudgetChatMemory.class);
+    
+    // Role, name and separators of every message
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final String SUMMARY_HEADER = "Summary of the earlier conversation:\n";
+    
+    private final Object id;
+    private final ChatMemoryStore store;
+    private final ConversationSummarizer summarizer;
+    private final int maxTokens;
+    private final int maxToolResultChars;
+    
+    /**
+     * @param maxTokens          Budget for the messages of a request, summary included
+     * @param maxToolResultChars Tool results longer than this are trimmed
+     */
+    TokenBudgetChatMemory(Object id, ChatMemoryStore store, ConversationSummarizer summarizer,
+            int maxTokens, int maxToolResultChars) {
+        this.id = id;
+        this.store = store;
+        this.summarizer = summarizer;
+        this.maxTokens = maxTokens;
+        this.maxToolResultChars = maxToolResultChars;
+    }
+    
+    @Override
+    public Object id() {
+        return id;
+    }
+    
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage system) {
+            // Like MessageWindowChatMemory: one system message, always first
+            if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage existing) {
+                if (existing.equals(system)) {
+                    return;
+                }
+                messages.remove(0);
+            }
+            messages.add(0, system);
+        } else {
+            messages.add(trimToolResult(message));
+        }
+        
+        // Evict whole turns, oldest first, but never the turn in progress
+        int budget = maxTokens - estimateTokens(summarizer.summary(id).text());
+        List<ChatMessage> evicted = new ArrayList<>();
+        long evictedTokens = 0;
+        while (estimateTokens(messages) > budget) {
+            int start = !messages.isEmpty() && messages.get(0) instanceof SystemMessage ? 1 : 0;
+            int nextTurn = nextUserMessage(messages, start + 1);
+            if (nextTurn < 0) {
+                break;
+            }
+            List<ChatMessage> turn = messages.subList(start, nextTurn);
+            evictedTokens += estimateTokens(turn);
+            evicted.addAll(turn);
+            turn.clear();
+        }
+        
+        store.updateMessages(id, messages);
+        if (!evicted.isEmpty()) {
+            logger.debug("Evicted {} messages ({} tokens) of {} into its summary", evicted.size(), evictedTokens, id);
+            summarizer.fold(id, evicted, evictedTokens);
+        }
+    }
+    
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = store.getMessages(id);
+        ConversationSummarizer.Summary summary = summarizer.summary(id);
+        if (summary.text() == null) {
+            return messages;
+        }
+        
+        List<ChatMessage> withSummary = new ArrayList<>(messages.size() + 1);
+        if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage system) {
+            withSummary.add(SystemMessage.from(system.text() + "\n\n" + SUMMARY_HEADER + summary.text()));
+            withSummary.addAll(messages.subList(1, messages.size()));
+        } else {
+            withSummary.add(SystemMessage.from(SUMMARY_HEADER + summary.text()));
+            withSummary.addAll(messages);
+        }
+        return withSummary;
+    }
+    
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+        summarizer.clear(id);
+    }
+    
+    /**
+     * Record the estimated prompt tokens the conversation's summary and trimmed tool results
+     * save. Called once per turn: messages() runs for every model request of the turn.
+     */
+    static void recordTokensSaved(ConversationSummarizer summarizer, Object memoryId) {
+        ConversationSummarizer.Summary summary = summarizer.summary(memoryId);
+        if (summary.removedTokens() > 0) {
+            long saved = summary.removedTokens() - estimateTokens(summary.text());
+            BuddyMetrics.recordPromptTokensSaved(saved);
+            logger.debug("Summary of {} saves {} tokens per request", memoryId, saved);
+        }
+    }
+    
+    /**
+     * @return Estimated prompt tokens of the messages
+     */
+    static int estimateTokens(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokens(message);
+        }
+        return tokens;
+    }
+    
+    static int estimateTokens(ChatMessage message) {
+        long characters = switch (message) {
+            case SystemMessage system -> system.text().length();
+            case UserMessage user -> user.contents().stream()
+                    .mapToLong(content -> content instanceof TextContent text ? text.text().length() : 0)
+                    .sum();
+            case AiMessage ai -> (ai.text() != null ? ai.text().length() : 0) + (ai.hasToolExecutionRequests()
+                    ? ai.toolExecutionRequests().stream().mapToLong(TokenBudgetChatMemory::requestCharacters).sum()
+                    : 0);
+            case ToolExecutionResultMessage tool -> tool.text().length();
+            default -> 0;
+        };
+        return MESSAGE_OVERHEAD_TOKENS + (int) (characters / 4);
+    }
+    
+    private static int estimateTokens(String text) {
+        return text == null ? 0 : MESSAGE_OVERHEAD_TOKENS + text.length() / 4;
+    }
+    
+    private static long requestCharacters(ToolExecutionRequest request) {
+        return request.name().length() + (request.arguments() != null ? request.arguments().length() : 0);
+    }
+    
+    private ChatMessage trimToolResult(ChatMessage message) {
+        if (!(message instanceof ToolExecutionResultMessage tool) || tool.text().length() <= maxToolResultChars) {
+            return message;
+        }
+        int removed = tool.text().length() - maxToolResultChars;
+        summarizer.recordRemoved(id, removed / 4);
+        return ToolExecutionResultMessage.from(tool.id(), tool.toolName(),
+                tool.text().substring(0, maxToolResultChars) + "... [" + removed + " characters trimmed]");
+    }
+    
+    private static int nextUserMessage(List<ChatMessage> messages, int from) {
+        for (int i = from; i < messages.size(); i++) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,32 @@
+package com.jase;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Execution policy for a @Tool method, applied by {@link BuddyToolRunner}
+ * Tools without this annotation use the defaults.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ToolPolicy {
+    
+    /**
+     * How long to wait for the tool before the model is told it timed out
+     */
+    long timeoutMillis() default 10_000;
+    
+    /**
+     * How long a result is reused for identical arguments; 0 disables memoization
+     */
+    long cacheTtlSeconds() default 0;
+    
+    /**
+     * Whether the tool is free of side effects, so it may start alongside the other tools of its model
+     * step as soon as the model asks for it, before LangChain4j executes the step (and once per hedged
+     * response). Tools default to running only when LangChain4j executes them; opt in pure tools only.
+     */
+    boolean concurrent() default false;
+}
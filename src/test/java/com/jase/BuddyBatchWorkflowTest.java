@@ -0,0 +1,179 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Test class for the batch workflow, using the mock model
+ */
+public class BuddyBatchWorkflowTest {
+    
+    private static final String TASK_QUEUE = "buddy-batch-test";
+    private static final String FILES_TASK_QUEUE = TASK_QUEUE + "@files";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private TestWorkflowEnvironment testEnv;
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeEach
+    public void setUp() {
+        testEnv = TestWorkflowEnvironment.newInstance();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        testEnv.close();
+    }
+    
+    private void startWorkers(BuddyActivities buddyActivities) {
+        Worker worker = testEnv.newWorker(TASK_QUEUE);
+        worker.registerWorkflowImplementationTypes(BuddyBatchWorkflowImpl.class);
+        BuddyBatchActivitiesImpl activities = new BuddyBatchActivitiesImpl(buddyActivities);
+        worker.registerActivitiesImplementations(activities);
+        testEnv.newWorker(FILES_TASK_QUEUE).registerActivitiesImplementations(activities);
+        testEnv.start();
+    }
+    
+    @Test
+    public void testResultsAreWrittenInInputOrder() throws Exception {
+        startWorkers(new BuddyActivities());
+        List<String> prompts = new ArrayList<>();
+        StringBuilder input = new StringBuilder("# evaluation set\n");
+        for (int i = 0; i < 23; i++) {
+            String prompt = i % 2 == 0 ? "hello " + i : "what's the weather " + i;
+            prompts.add(prompt);
+            input.append(prompt).append("\n\n");
+        }
+        Path inputFile = Files.writeString(dir.resolve("prompts.txt"), input);
+        Path output = dir.resolve("out/results.jsonl");
+        
+        BuddyBatchJob job = new BuddyBatchJob(inputFile.toString(), output.toString(), 4);
+        job.setChunkSize(5);
+        job.setFilesTaskQueue(FILES_TASK_QUEUE);
+        BuddyBatchWorkflow.Report report = newBatch("batch-order").runBatch(job);
+        
+        assertEquals(23, report.totalItems());
+        assertEquals(23, report.processedItems());
+        assertEquals(0, report.failedItems());
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(23, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode result = MAPPER.readTree(lines.get(i));
+            assertEquals(i, result.path("index").asInt());
+            assertEquals(prompts.get(i), result.path("input").asText());
+            assertNull(result.path("error").textValue());
+        }
+        assertEquals(23, BuddyBatchRunner.readLatencies(output).getTotalCount());
+    }
+    
+    @Test
+    public void testResumesAfterWrittenResults() throws Exception {
+        startWorkers(new BuddyActivities());
+        Path output = dir.resolve("results.jsonl");
+        BuddyBatchActivitiesImpl files = new BuddyBatchActivitiesImpl(new BuddyActivities());
+        List<String> prompts = List.of("one", "two", "three", "four", "five");
+        long checkpoint = files.writeResults(output.toString(), 0, 0, List.of(
+                new BuddyBatchActivities.ItemResult(0, "one", "earlier", 1, null),
+                new BuddyBatchActivities.ItemResult(1, "two", "earlier", 1, null)));
+        assertEquals(Files.size(output), checkpoint);
+        // A crash left half a line behind
+        Files.writeString(output, Files.readString(output) + "{\"index\":2,\"inp");
+        
+        BuddyBatchWorkflow.Report report = newBatch("batch-resume")
+                .runBatch(BuddyBatchJob.ofPrompts(prompts, output.toString(), 2));
+        
+        assertEquals(5, report.totalItems());
+        assertEquals(3, report.processedItems());
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(5, lines.size());
+        assertEquals("earlier", MAPPER.readTree(lines.get(1)).path("output").asText());
+        assertEquals("three", MAPPER.readTree(lines.get(2)).path("input").asText());
+        
+        // Writing a chunk again is a no-op
+        long first = files.writeResults(output.toString(), 0, 0, List.of(
+                new BuddyBatchActivities.ItemResult(0, "one", "again", 1, null)));
+        assertEquals(lines, Files.readAllLines(output));
+        assertEquals(lines.get(0).length() + 1, first);
+        assertEquals(new BuddyBatchActivities.Checkpoint(5, Files.size(output)),
+                files.findCheckpoint(output.toString()));
+        
+        // A checkpoint that isn't in this file, e.g. one written on another host, is refused
+        assertThrows(IllegalStateException.class, () -> files.writeResults(output.toString(), 5,
+                Files.size(output) + 10, List.of(new BuddyBatchActivities.ItemResult(5, "six", "lost", 1, null))));
+        assertThrows(IllegalStateException.class, () -> files.writeResults(output.toString(), 1, first - 1,
+                List.of(new BuddyBatchActivities.ItemResult(1, "two", "torn", 1, null))));
+        assertEquals(lines, Files.readAllLines(output));
+    }
+    
+    @Test
+    public void testItemsAreReadFromWhereThePreviousChunkEnded() throws Exception {
+        Path input = Files.writeString(dir.resolve("prompts.txt"), "# header\nhéllo\n\n  two  \n# skip\nthree\nfour");
+        BuddyBatchActivitiesImpl files = new BuddyBatchActivitiesImpl(new BuddyActivities());
+        
+        BuddyBatchActivities.Items first = files.readItems(input.toString(), 0, 0, 2);
+        assertEquals(List.of("héllo", "two"), first.prompts());
+        BuddyBatchActivities.Items rest = files.readItems(input.toString(), first.nextPosition(), 0, 5);
+        assertEquals(List.of("three", "four"), rest.prompts());
+        assertEquals(Files.size(input), rest.nextPosition());
+        assertEquals(List.of(), files.readItems(input.toString(), rest.nextPosition(), 0, 5).prompts());
+        
+        // A resumed batch skips the prompts whose results were written, then reads on from there
+        BuddyBatchActivities.Items resumed = files.readItems(input.toString(), 0, 2, 1);
+        assertEquals(List.of("three"), resumed.prompts());
+        assertEquals(List.of("four"), files.readItems(input.toString(), resumed.nextPosition(), 0, 1).prompts());
+    }
+    
+    @Test
+    public void testModelFailuresAreRetriedAndNeverAnsweredWithMockText() throws Exception {
+        // Prompts run one at a time: the first prompt's first attempt fails, the second prompt always fails
+        try (StubOpenAiServer stub = new StubOpenAiServer().withFailures(number -> number != 2, 400)) {
+            startWorkers(new BuddyActivities("stub-key", stub.getBaseUrl(), null, dir.resolve("data")));
+            Path output = dir.resolve("results.jsonl");
+            
+            BuddyBatchJob job = BuddyBatchJob.ofPrompts(List.of("first", "second"), output.toString(), 1);
+            job.setFilesTaskQueue(FILES_TASK_QUEUE);
+            BuddyBatchWorkflow.Report report = newBatch("batch-failures").runBatch(job);
+            
+            assertEquals(1, report.failedItems());
+            List<String> lines = Files.readAllLines(output);
+            JsonNode retried = MAPPER.readTree(lines.get(0));
+            assertEquals("Stub response to: first", retried.path("output").asText());
+            assertNull(retried.path("error").textValue());
+            JsonNode failed = MAPPER.readTree(lines.get(1));
+            assertNull(failed.path("output").textValue());
+            assertNotNull(failed.path("error").textValue());
+            // Each of the second prompt's attempts reached the model
+            assertEquals(5, stub.getRequests());
+        }
+    }
+    
+    private BuddyBatchWorkflow newBatch(String workflowId) {
+        return testEnv.getWorkflowClient().newWorkflowStub(
+                BuddyBatchWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(TASK_QUEUE)
+                        .setWorkflowId(workflowId)
+                        .build());
+    }
+}
@@ -0,0 +1,106 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+/**
+ * Test class for the per-conversation chat memory store
+ */
+public class BuddyChatMemoryStoreTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testConversationsAreIsolated() {
+        try (BuddyChatMemoryStore store = new BuddyChatMemoryStore(tempDir, 10)) {
+            store.updateMessages("alice", List.of(UserMessage.from("I'm Alice")));
+            store.updateMessages("bob", List.of(UserMessage.from("I'm Bob"), AiMessage.from("Hi Bob")));
+            
+            assertEquals(1, store.getMessages("alice").size());
+            assertEquals(2, store.getMessages("bob").size());
+            assertTrue(store.getMessages("carol").isEmpty());
+        }
+    }
+    
+    @Test
+    public void testEvictedAndRestartedSessionsReloadFromDisk() {
+        List<ChatMessage> aliceMessages = List.of(UserMessage.from("I'm Alice"), AiMessage.from("Hi Alice"));
+        
+        try (BuddyChatMemoryStore store = new BuddyChatMemoryStore(tempDir, 1)) {
+            store.updateMessages("alice", aliceMessages);
+            store.updateMessages("bob", List.of(UserMessage.from("I'm Bob")));
+            
+            // Only one hot session, so alice has been evicted to disk
+            assertEquals(aliceMessages, store.getMessages("alice"));
+            assertEquals(1, store.getColdLoads());
+            
+            store.deleteMessages("bob");
+        }
+        
+        try (BuddyChatMemoryStore store = new BuddyChatMemoryStore(tempDir, 1)) {
+            assertEquals(aliceMessages, store.getMessages("alice"));
+            assertTrue(store.getMessages("bob").isEmpty());
+        }
+    }
+    
+    @Test
+    public void testSegmentStoreCompactionKeepsLatestValues() {
+        try (SegmentStore segments = new SegmentStore(tempDir, 4096)) {
+            for (int i = 0; i < 1000; i++) {
+                segments.put("key-" + (i % 10), ("value-" + i).getBytes());
+            }
+            segments.delete("key-0");
+            segments.compact();
+            
+            assertEquals(9, segments.size());
+            assertEquals("value-999", new String(segments.get("key-9")));
+        }
+        
+        try (SegmentStore segments = new SegmentStore(tempDir, 4096)) {
+            assertEquals(9, segments.size());
+            assertEquals("value-991", new String(segments.get("key-1")));
+        }
+    }
+    
+    @Test
+    public void testDeletedAndIdleConversationsAreDropped() throws Exception {
+        try (BuddyChatMemoryStore store = new BuddyChatMemoryStore(tempDir, 10, Duration.ofMillis(200))) {
+            store.updateMessages("idle", List.of(UserMessage.from("Anyone there?")));
+            store.updateMessages("cleared", List.of(UserMessage.from("Forget me")));
+            store.deleteMessages("cleared");
+            Thread.sleep(300);
+            store.updateMessages("active", List.of(UserMessage.from("Still here")));
+            
+            assertEquals(1, store.expireIdle());
+            assertEquals(1, store.size());
+            assertFalse(store.isHot("idle"));
+            assertTrue(store.getMessages("idle").isEmpty());
+            assertEquals(1, store.getMessages("active").size());
+        }
+        
+        // Compaction drops the tombstones along with the values they deleted
+        try (SegmentStore segments = new SegmentStore(tempDir, 4096)) {
+            assertEquals(1, segments.size());
+            segments.delete("active");
+            segments.compact();
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.mapToLong(file -> file.toFile().length()).sum());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Test class for the HTTP gateway in front of turn workflows
+ */
+public class BuddyGatewayTest {
+    
+    private static final String TASK_QUEUE = "buddy-gateway-test";
+    
+    private final HttpClient http = HttpClient.newHttpClient();
+    private StubOpenAiServer stub;
+    private BuddyActivities activities;
+    private TestWorkflowEnvironment testEnv;
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeEach
+    public void setUp() {
+        stub = new StubOpenAiServer().withLatency(Duration.ofMillis(300));
+        activities = new BuddyActivities("stub-key", stub.getBaseUrl(), null, dir);
+        // Turns wait on a real model endpoint, so time runs on the wall clock
+        testEnv = TestWorkflowEnvironment.newInstance(TestEnvironmentOptions.newBuilder()
+                .setUseTimeskipping(false)
+                .build());
+        Worker worker = testEnv.newWorker(TASK_QUEUE);
+        worker.registerWorkflowImplementationTypes(BuddyWorkflowImpl.class);
+        worker.registerActivitiesImplementations(activities);
+        testEnv.start();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        testEnv.close();
+        activities.close();
+        stub.close();
+    }
+    
+    private BuddyGateway gateway(int maxInFlight, int maxQueued) {
+        return new BuddyGateway(testEnv.getWorkflowClient(), TASK_QUEUE,
+                new BuddyGateway.Settings("127.0.0.1", 0, maxInFlight, maxQueued, Duration.ofSeconds(30)));
+    }
+    
+    private HttpResponse<String> post(BuddyGateway gateway, String query, String input, String... headers)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(gateway.getUrl() + "/v1/turns" + query))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"input\": \"" + input + "\"}"));
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+    
+    @Test
+    public void testTurnsAnsweredAndStreamed() throws Exception {
+        try (BuddyGateway gateway = gateway(4, 4)) {
+            HttpResponse<String> answered = post(gateway, "", "What is Temporal?");
+            assertEquals(200, answered.statusCode());
+            assertTrue(answered.body().contains("\"response\":\"Stub response to: What is Temporal?\""), answered.body());
+            
+            HttpResponse<String> streamed = post(gateway, "", "What is an activity?", "Accept", "text/event-stream");
+            assertEquals(200, streamed.statusCode());
+            assertEquals("text/event-stream", streamed.headers().firstValue("Content-Type").orElseThrow());
+            assertTrue(streamed.body().startsWith("event: started\n"), streamed.body());
+            assertTrue(streamed.body().contains("event: response\ndata: {"), streamed.body());
+            assertTrue(streamed.body().contains("Stub response to: What is an activity?"), streamed.body());
+            
+            assertEquals(400, post(gateway, "", "\\u").statusCode());
+        }
+    }
+    
+    @Test
+    public void testAdmissionControlAndDeadlines() throws Exception {
+        try (BuddyGateway gateway = gateway(1, 0)) {
+            // Started without waiting; the turn holds the only slot until it ends
+            HttpResponse<String> accepted = post(gateway, "?wait=false", "first question",
+                    "Idempotency-Key", "gateway-turn-1");
+            assertEquals(202, accepted.statusCode());
+            assertEquals("/v1/turns/buddy-turn-gateway-turn-1", accepted.headers().firstValue("Location").orElseThrow());
+            
+            HttpResponse<String> rejected = post(gateway, "", "second question");
+            assertEquals(429, rejected.statusCode());
+            assertEquals("1", rejected.headers().firstValue("Retry-After").orElseThrow());
+            
+            HttpResponse<String> polled = http.send(HttpRequest.newBuilder(
+                    URI.create(gateway.getUrl() + "/v1/turns/buddy-turn-gateway-turn-1")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, polled.statusCode());
+            assertTrue(polled.body().contains("Stub response to: first question"), polled.body());
+            
+            // Workflows the gateway didn't start can't be read through it
+            HttpResponse<String> foreign = http.send(HttpRequest.newBuilder(
+                    URI.create(gateway.getUrl() + "/v1/turns/gateway-turn-1")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(404, foreign.statusCode());
+            
+            // The slot is released once the turn's result is in
+            long waitUntil = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (gateway.getInFlight() > 0 && System.nanoTime() < waitUntil) {
+                Thread.sleep(10);
+            }
+            
+            // A retry after the turn completed gets its result without running it again
+            long requests = stub.getRequests();
+            HttpResponse<String> retried = post(gateway, "", "first question", "Idempotency-Key", "gateway-turn-1");
+            assertEquals(200, retried.statusCode());
+            assertTrue(retried.body().contains("Stub response to: first question"), retried.body());
+            assertEquals(requests, stub.getRequests());
+            
+            // The client's deadline is shorter than the model call
+            long start = System.nanoTime();
+            HttpResponse<String> late = post(gateway, "", "third question", "X-Request-Timeout-Ms", "100");
+            assertEquals(504, late.statusCode());
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(300).toNanos(), "answered at the deadline");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Runs the load driver against the Temporal test server and the stub model endpoint
+ */
+public class BuddyLoadDriverTest {
+    
+    private static final String TASK_QUEUE = "buddy-load-test";
+    
+    @Test
+    public void testReplaysCorpusAndRecordsStageLatencies(@TempDir Path dir) throws Exception {
+        List<List<String>> corpus = List.of(List.of("hello", "how are you"), List.of("what time is it"));
+        BuddyLoadDriver.Settings settings = new BuddyLoadDriver.Settings(3, 6, 50, Duration.ZERO, corpus);
+        
+        TestEnvironmentOptions options = TestEnvironmentOptions.newBuilder().setUseTimeskipping(false).build();
+        try (StubOpenAiServer stub = new StubOpenAiServer().withLatency(Duration.ofMillis(20));
+                TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance(options)) {
+            BuddyActivities activities = new BuddyActivities("stub-key", stub.getBaseUrl(), null, dir);
+            BuddyLoadDriver driver = new BuddyLoadDriver(testEnv.getWorkflowClient(), TASK_QUEUE, settings);
+            Worker worker = testEnv.newWorker(TASK_QUEUE);
+            worker.registerWorkflowImplementationFactory(BuddySessionWorkflow.class,
+                    () -> new BuddySessionWorkflowImpl(StageExecutionMode.ACTIVITY));
+            worker.registerActivitiesImplementations(driver.timed(activities));
+            testEnv.start();
+            
+            BuddyLoadDriver.Report report = driver.run();
+            report.print(System.out);
+            activities.close();
+            
+            // Conversations cycle through the corpus: 3 x 2 turns + 3 x 1 turn
+            assertEquals(9, report.turns());
+            assertEquals(0, report.failedTurns());
+            assertEquals(9, report.endToEnd().getTotalCount());
+            assertEquals(9, report.stages().get("preprocessInput").getTotalCount());
+            assertEquals(9, report.stages().get("postprocessResponse").getTotalCount());
+            assertEquals(9, report.stages().get("generateResponse").getTotalCount());
+            assertTrue(report.endToEnd().getValueAtPercentile(50) >= report.stages().get("preprocessInput").getValueAtPercentile(50));
+            assertTrue(report.turnsPerSecond() > 0);
+        }
+    }
+    
+    @Test
+    public void testReadCorpus(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("corpus.txt");
+        Files.writeString(file, """
+                # greeting
+                hello
+                how are you
+
+
+
+                what time is it
+                """);
+        assertEquals(List.of(List.of("hello", "how are you"), List.of("what time is it")),
+                BuddyLoadDriver.readCorpus(file));
+    }
+}
@@ -0,0 +1,130 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.search.Search;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Tests for the Buddy meters and the Prometheus scrape endpoint
+ */
+public class BuddyMetricsTest {
+    
+    private static final String TASK_QUEUE = "buddy-metrics-test";
+    
+    @Test
+    public void testTurnRecordsStagesAndMockFallback() throws Exception {
+        double generateBefore = stageCount("generate");
+        double fallbacksBefore = counter("buddy.mock.fallbacks", "reason", "no_model");
+        
+        try (TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance()) {
+            Worker worker = testEnv.newWorker(TASK_QUEUE);
+            worker.registerWorkflowImplementationTypes(BuddyWorkflowImpl.class);
+            worker.registerActivitiesImplementations(new BuddyActivities());
+            testEnv.start();
+            
+            BuddyWorkflow workflow = testEnv.getWorkflowClient().newWorkflowStub(
+                    BuddyWorkflow.class,
+                    WorkflowOptions.newBuilder().setTaskQueue(TASK_QUEUE).build());
+            WorkflowClient.execute(workflow::processUserInput, "hello").get();
+        }
+        
+        assertEquals(generateBefore + 1, stageCount("generate"));
+        assertTrue(stageCount("preprocess") >= 1);
+        assertTrue(stageCount("postprocess") >= 1);
+        assertEquals(fallbacksBefore + 1, counter("buddy.mock.fallbacks", "reason", "no_model"));
+    }
+    
+    @Test
+    public void testToolCallsAreTimedPerTool() throws Exception {
+        try (BuddyToolRunner runner = new BuddyToolRunner(new BuddyPlugin(), 2)) {
+            Map<ToolSpecification, ToolExecutor> tools = runner.executors();
+            assertEquals(6, tools.size());
+            
+            ToolExecutor calculate = tools.entrySet().stream()
+                    .filter(entry -> entry.getKey().name().equals("calculate"))
+                    .findFirst()
+                    .orElseThrow()
+                    .getValue();
+            long before = toolCount("calculate");
+            String result = calculate.execute(ToolExecutionRequest.builder()
+                    .id("call-1")
+                    .name("calculate")
+                    .arguments("{\"arg0\": \"6 * 7\"}")
+                    .build(), "default");
+            
+            assertEquals("6 * 7 = 42", result);
+            assertEquals(before + 1, toolCount("calculate"));
+        }
+    }
+    
+    @Test
+    public void testResponseCacheCountersArePublished() {
+        InMemoryResponseCache cache = new InMemoryResponseCache(InMemoryResponseCache.EvictionPolicy.LRU,
+                Duration.ofMinutes(1), 1 << 20);
+        BuddyMetrics.registerCache("metrics-test", cache);
+        cache.get("question");
+        cache.put("question", "answer", 2_000_000_000L);
+        cache.get("question");
+        cache.get("question");
+        
+        assertEquals(2, functionCounter("buddy.cache.lookups", "result", "hit"));
+        assertEquals(1, functionCounter("buddy.cache.lookups", "result", "miss"));
+        assertEquals(4, functionCounter("buddy.cache.saved", "cache", "metrics-test"));
+        assertEquals(1, BuddyMetrics.getRegistry().get("buddy.cache.entries").tag("cache", "metrics-test")
+                .gauge().value());
+    }
+    
+    @Test
+    public void testScrapeEndpointServesPrometheusText() throws Exception {
+        BuddyMetrics.recordStage("preprocess", 1_000);
+        try (MetricsEndpoint endpoint = new MetricsEndpoint(BuddyMetrics.getRegistry(), 0)) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create(endpoint.getUrl())).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().contains("buddy_stage_seconds_count{stage=\"preprocess\",}"));
+            assertTrue(response.body().contains("buddy_stage_seconds_bucket"));
+        }
+    }
+    
+    private static double stageCount(String stage) {
+        return Search.in(BuddyMetrics.getRegistry()).name("buddy.stage").tag("stage", stage).timers().stream()
+                .mapToDouble(timer -> timer.count())
+                .sum();
+    }
+    
+    private static long toolCount(String tool) {
+        return Search.in(BuddyMetrics.getRegistry()).name("buddy.tool.calls").tag("tool", tool).timers().stream()
+                .mapToLong(timer -> timer.count())
+                .sum();
+    }
+    
+    private static double functionCounter(String name, String tag, String value) {
+        return BuddyMetrics.getRegistry().get(name).tag("cache", "metrics-test").tag(tag, value)
+                .functionCounter().count();
+    }
+    
+    private static double counter(String name, String tag, String value) {
+        return Search.in(BuddyMetrics.getRegistry()).name(name).tag(tag, value).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
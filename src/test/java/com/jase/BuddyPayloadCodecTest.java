@@ -0,0 +1,101 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.temporal.api.common.v1.Payload;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowClientOptions;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.payload.codec.PayloadCodecException;
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Test class for payload compression and blob offloading
+ */
+public class BuddyPayloadCodecTest {
+    
+    private static final String TASK_QUEUE = "buddy-codec-test";
+    private static final String LONG_INPUT = "Summarize this report for me please. ".repeat(500);
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void testPayloadsRoundTripBySize() throws IOException {
+        BuddyPayloadCodec codec = new BuddyPayloadCodec(256, 4096, new PayloadBlobStore(dir));
+        Payload small = payload("hello");
+        Payload medium = payload("a fairly repetitive answer ".repeat(20));
+        Payload large = payload(LONG_INPUT);
+        
+        List<Payload> encoded = codec.encode(List.of(small, medium, large, large));
+        assertEquals(small, encoded.get(0));
+        assertEquals(BuddyPayloadCodec.ENCODING_ZLIB, encoded.get(1).getMetadataOrThrow("encoding").toStringUtf8());
+        assertEquals(BuddyPayloadCodec.ENCODING_BLOB, encoded.get(2).getMetadataOrThrow("encoding").toStringUtf8());
+        assertTrue(encoded.get(2).getSerializedSize() < 200);
+        assertEquals(List.of(small, medium, large, large), codec.decode(encoded));
+        
+        // The same payload is stored once
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+        BuddyPayloadCodec.Stats stats = codec.stats();
+        assertEquals(4, stats.encoded());
+        assertEquals(2, stats.offloaded());
+        assertTrue(stats.savedBytes() > 2 * LONG_INPUT.length() * 9 / 10);
+        
+        // A missing blob fails the decode instead of returning the reference
+        BuddyPayloadCodec elsewhere = new BuddyPayloadCodec(256, 4096, new PayloadBlobStore(dir.resolve("other")));
+        assertThrows(PayloadCodecException.class, () -> elsewhere.decode(List.of(encoded.get(2))));
+    }
+    
+    @Test
+    public void testLargeTurnKeepsHistorySmall() {
+        long plainBytes = runTurn(null);
+        long encodedBytes = runTurn(new BuddyPayloadCodec(512, 8192, new PayloadBlobStore(dir)));
+        System.out.printf("History of a %d-char turn: %d bytes plain, %d bytes with the codec%n",
+                LONG_INPUT.length(), plainBytes, encodedBytes);
+        assertTrue(encodedBytes * 4 < plainBytes, "offloaded history should be a fraction of the plain one");
+    }
+    
+    // Runs one turn with a long input and returns the size of its history
+    private long runTurn(BuddyPayloadCodec codec) {
+        TestEnvironmentOptions options = TestEnvironmentOptions.newBuilder()
+                .setWorkflowClientOptions(WorkflowClientOptions.newBuilder()
+                        .setDataConverter(BuddyPayloadCodec.dataConverter(codec))
+                        .build())
+                .build();
+        try (TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance(options)) {
+            Worker worker = testEnv.newWorker(TASK_QUEUE);
+            worker.registerWorkflowImplementationTypes(BuddyWorkflowImpl.class);
+            worker.registerActivitiesImplementations(new BuddyActivities());
+            testEnv.start();
+            WorkflowClient client = testEnv.getWorkflowClient();
+            BuddyWorkflow workflow = client.newWorkflowStub(BuddyWorkflow.class, WorkflowOptions.newBuilder()
+                    .setTaskQueue(TASK_QUEUE)
+                    .setWorkflowId("codec-turn")
+                    .build());
+            String response = workflow.processUserInput(LONG_INPUT);
+            assertFalse(response.isBlank());
+            return client.fetchHistory("codec-turn").getHistory().getSerializedSize();
+        }
+    }
+    
+    private static Payload payload(String value) {
+        return DefaultDataConverter.STANDARD_INSTANCE.toPayload(value).orElseThrow();
+    }
+}
@@ -0,0 +1,157 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.temporal.activity.Activity;
+import io.temporal.api.enums.v1.EventType;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.client.WorkflowStub;
+import io.temporal.client.WorkflowUpdateStage;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerOptions;
+
+/**
+ * Test class for the long-running session workflow
+ */
+public class BuddySessionWorkflowTest {
+    
+    private static final String TASK_QUEUE = "buddy-session-test";
+    private static final String STREAM_TASK_QUEUE = "buddy-session-test-stream";
+    
+    private TestWorkflowEnvironment testEnv;
+    private WorkflowClient client;
+    private StreamingActivities streaming;
+    
+    @BeforeEach
+    public void setUp() {
+        testEnv = TestWorkflowEnvironment.newInstance();
+        Worker worker = testEnv.newWorker(TASK_QUEUE);
+        worker.registerWorkflowImplementationTypes(BuddySessionWorkflowImpl.class);
+        worker.registerActivitiesImplementations(new BuddyActivities());
+        // Heartbeats are throttled to the flush interval, as on a worker with BUDDY_STREAMING
+        Worker streamWorker = testEnv.newWorker(STREAM_TASK_QUEUE, WorkerOptions.newBuilder()
+                .setDefaultHeartbeatThrottleInterval(Duration.ofMillis(20))
+                .build());
+        streamWorker.registerWorkflowImplementationTypes(BuddySessionWorkflowImpl.class);
+        streaming = new StreamingActivities();
+        streamWorker.registerActivitiesImplementations(streaming);
+        testEnv.start();
+        client = testEnv.getWorkflowClient();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        testEnv.close();
+    }
+    
+    @Test
+    public void testTurnsAreProcessedAsUpdates() {
+        BuddySessionWorkflow session = client.newWorkflowStub(
+                BuddySessionWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(TASK_QUEUE)
+                        .setWorkflowId("buddy-session-test-turns")
+                        .build());
+        WorkflowClient.start(session::runSession, new BuddySessionState());
+        
+        String hello = session.chat("  Hello  ");
+        assertTrue(hello.toLowerCase().contains("hello") || hello.toLowerCase().contains("buddy"));
+        
+        String weather = session.chat("What's the weather?");
+        assertFalse(weather.trim().isEmpty());
+        assertEquals(2, session.getCompletedTurns());
+        
+        session.endSession();
+        WorkflowStub.fromTyped(session).getResult(Void.class);
+    }
+    
+    @Test
+    public void testStreamedTextIsReadFromHeartbeats() throws Exception {
+        BuddySessionWorkflow session = client.newWorkflowStub(
+                BuddySessionWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(STREAM_TASK_QUEUE)
+                        .setWorkflowId("buddy-session-test-stream")
+                        .build());
+        WorkflowClient.start(session::runSession, new BuddySessionState());
+        WorkflowStub stub = WorkflowStub.fromTyped(session);
+        CompletableFuture<String> result = stub
+                .startUpdate("chat", WorkflowUpdateStage.ACCEPTED, String.class, "Hi")
+                .getResultAsync();
+        
+        assertEquals("Hello ", awaitStreamedText(stub, "Hello "));
+        streaming.firstTokenRead.countDown();
+        assertEquals("Hello there", awaitStreamedText(stub, "Hello there"));
+        streaming.secondTokenRead.countDown();
+        assertEquals("Hello there", result.get(5, TimeUnit.SECONDS));
+        
+        // The streamed text never went through the workflow
+        assertFalse(client.fetchHistory("buddy-session-test-stream").getEvents().stream()
+                .anyMatch(event -> event.getEventType() == EventType.EVENT_TYPE_WORKFLOW_EXECUTION_SIGNALED));
+        session.endSession();
+        stub.getResult(Void.class);
+    }
+    
+    private String awaitStreamedText(WorkflowStub stub, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String text = StreamingResponseBuffer.streamedText(stub, client.getOptions().getDataConverter());
+        while (!expected.equals(text) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            text = StreamingResponseBuffer.streamedText(stub, client.getOptions().getDataConverter());
+        }
+        return text;
+    }
+    
+    /**
+     * Activities whose generateResponse streams two tokens, each once the test has read the previous one
+     */
+    private static class StreamingActivities implements BuddyActivitiesInterface {
+        
+        final CountDownLatch firstTokenRead = new CountDownLatch(1);
+        final CountDownLatch secondTokenRead = new CountDownLatch(1);
+        
+        @Override
+        public PreprocessedInput preprocessInput(String input) {
+            return new PreprocessedInput(input, null);
+        }
+        
+        @Override
+        public String generateResponse(PreprocessedInput input) {
+            StreamingResponseBuffer buffer = new StreamingResponseBuffer(Activity.getExecutionContext()::heartbeat);
+            Thread.ofVirtual().start(() -> {
+                try {
+                    buffer.onToken("Hello ");
+                    firstTokenRead.await();
+                    buffer.onToken("there");
+                    secondTokenRead.await();
+                    buffer.complete("Hello there");
+                } catch (InterruptedException e) {
+                    buffer.fail(e);
+                }
+            });
+            try {
+                return buffer.await(Duration.ofMillis(20), Duration.ofSeconds(10));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        @Override
+        public String postprocessResponse(String response) {
+            return response;
+        }
+    }
+}
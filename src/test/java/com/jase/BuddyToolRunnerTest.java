@@ -0,0 +1,129 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.service.tool.ToolExecutor;
+
+/**
+ * Tests for parallel tool steps, per-tool timeouts and tool result memoization
+ */
+public class BuddyToolRunnerTest {
+    
+    /**
+     * Tools that each take 300 ms, like a remote API call
+     */
+    public static class SlowTools {
+        
+        final AtomicInteger weatherCalls = new AtomicInteger();
+        final AtomicInteger recordCalls = new AtomicInteger();
+        
+        @Tool("Gets weather information for a location")
+        @ToolPolicy(cacheTtlSeconds = 60, concurrent = true)
+        public String getWeather(String location) throws InterruptedException {
+            weatherCalls.incrementAndGet();
+            Thread.sleep(300);
+            return "Sunny in " + location;
+        }
+        
+        @Tool("Gets the current date and time")
+        @ToolPolicy(concurrent = true)
+        public String getCurrentTime() throws InterruptedException {
+            Thread.sleep(300);
+            return "2024-01-01 12:00:00";
+        }
+        
+        @Tool("Records an event")
+        public String record(String event) {
+            recordCalls.incrementAndGet();
+            return "Recorded " + event;
+        }
+        
+        @Tool("Never answers in time")
+        @ToolPolicy(timeoutMillis = 100)
+        public String hang() throws InterruptedException {
+            Thread.sleep(10_000);
+            return "too late";
+        }
+    }
+    
+    @Test
+    public void testToolsOfOneStepRunInParallel() {
+        try (BuddyToolRunner runner = new BuddyToolRunner(new SlowTools(), 4)) {
+            List<ToolExecutionRequest> requests = List.of(
+                    request("1", "getWeather", "{\"arg0\": \"Paris\"}"),
+                    request("2", "getWeather", "{\"arg0\": \"Tokyo\"}"),
+                    request("3", "getWeather", "{\"arg0\": \"Lima\"}"),
+                    request("4", "getCurrentTime", "{}"));
+            
+            long start = System.nanoTime();
+            runner.prefetch(new AiMessage(requests));
+            for (ToolExecutionRequest request : requests) {
+                execute(runner, request);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            
+            // Sequential execution would take 1200 ms
+            assertTrue(elapsedMillis < 900, "step took " + elapsedMillis + " ms");
+        }
+    }
+    
+    @Test
+    public void testToolsWithoutPolicyAreNotStartedAhead() throws InterruptedException {
+        SlowTools tools = new SlowTools();
+        try (BuddyToolRunner runner = new BuddyToolRunner(tools, 4)) {
+            // A step with a tool that may have side effects is left to LangChain4j, in order
+            runner.prefetch(new AiMessage(List.of(
+                    request("1", "getWeather", "{\"arg0\": \"Paris\"}"),
+                    request("2", "record", "{\"arg0\": \"login\"}"))));
+            Thread.sleep(100);
+            assertEquals(0, tools.weatherCalls.get());
+            assertEquals(0, tools.recordCalls.get());
+        }
+    }
+    
+    @Test
+    public void testResultsAreMemoizedPerArguments() {
+        SlowTools tools = new SlowTools();
+        try (BuddyToolRunner runner = new BuddyToolRunner(tools, 2)) {
+            assertEquals("Sunny in Paris", execute(runner, request("1", "getWeather", "{\"arg0\": \"Paris\"}")));
+            assertEquals("Sunny in Paris", execute(runner, request("2", "getWeather", "{\"arg0\": \"Paris\"}")));
+            assertEquals("Sunny in Oslo", execute(runner, request("3", "getWeather", "{\"arg0\": \"Oslo\"}")));
+            
+            assertEquals(2, tools.weatherCalls.get());
+        }
+    }
+    
+    @Test
+    public void testSlowToolTimesOut() {
+        try (BuddyToolRunner runner = new BuddyToolRunner(new SlowTools(), 2)) {
+            long start = System.nanoTime();
+            String result = execute(runner, request("1", "hang", "{}"));
+            
+            assertEquals("Tool hang did not respond within 100 ms", result);
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        }
+    }
+    
+    private static ToolExecutionRequest request(String id, String name, String arguments) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments(arguments).build();
+    }
+    
+    private static String execute(BuddyToolRunner runner, ToolExecutionRequest request) {
+        ToolExecutor executor = runner.executors().entrySet().stream()
+                .filter(entry -> entry.getKey().name().equals(request.name()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElseThrow();
+        return executor.execute(request, "default");
+    }
+}
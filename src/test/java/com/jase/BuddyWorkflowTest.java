@@ -4,6 +4,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 /**
@@ -16,7 +21,7 @@ public class BuddyWorkflowTest {
         BuddyActivities activities = new BuddyActivities();
         
         // Test preprocessing
-        String preprocessed = activities.preprocessInput("  Hello World  ");
+        String preprocessed = activities.preprocessInput("  Hello World  ").text();
         assertEquals("Hello World", preprocessed);
         
         // Test response generation
@@ -34,12 +39,12 @@ public class BuddyWorkflowTest {
         BuddyActivities activities = new BuddyActivities();
         
         // Test with empty input
-        String response = activities.preprocessInput("");
+        String response = activities.preprocessInput("").text();
         assertNotNull(response);
         assertFalse(response.trim().isEmpty());
         
         // Test with null input
-        String response2 = activities.preprocessInput(null);
+        String response2 = activities.preprocessInput(null).text();
         assertNotNull(response2);
         assertFalse(response2.trim().isEmpty());
     }
@@ -62,4 +67,23 @@ public class BuddyWorkflowTest {
         assertFalse(weatherResponse.trim().isEmpty());
     }
     
+    @Test
+    public void testStreamingResponseBufferHeartbeatsText() throws Exception {
+        List<String> heartbeats = new ArrayList<>();
+        long firstTokensBefore = BuddyMetrics.getTimeToFirstToken().getCount();
+        StreamingResponseBuffer buffer = new StreamingResponseBuffer(heartbeats::add);
+        
+        Thread producer = new Thread(() -> {
+            buffer.onToken("Hello ");
+            buffer.onToken("World");
+            buffer.complete("Hello World");
+        });
+        producer.start();
+        
+        assertEquals("Hello World", buffer.await(Duration.ofMillis(10), Duration.ofSeconds(5)));
+        // Every heartbeat carries the whole text so far
+        assertEquals("Hello World", heartbeats.get(heartbeats.size() - 1));
+        assertTrue(heartbeats.stream().allMatch("Hello World"::startsWith));
+        assertEquals(firstTokensBefore + 1, BuddyMetrics.getTimeToFirstToken().getCount());
+    }
 }
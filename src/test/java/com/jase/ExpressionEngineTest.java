@@ -0,0 +1,91 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the calculate tool's expression engine
+ */
+public class ExpressionEngineTest {
+    
+    private final ExpressionEngine engine = new ExpressionEngine(2);
+    
+    @Test
+    public void testPrecedenceParenthesesAndUnaryMinus() {
+        assertEquals(14, engine.evaluate("2 + 3 * 4"));
+        assertEquals(20, engine.evaluate("(2 + 3) * 4"));
+        assertEquals(-4, engine.evaluate("-2^2"));
+        assertEquals(512, engine.evaluate("2^3^2"));
+        assertEquals(1, engine.evaluate("10 % 3"));
+        assertEquals(6, engine.evaluate("--6"));
+        assertEquals(0.0015, engine.evaluate("1.5e-3"));
+        assertEquals(2.5, engine.evaluate("10 / 4"));
+    }
+    
+    @Test
+    public void testFunctionsAndConstants() {
+        assertEquals(9, engine.evaluate("sqrt(16) + abs(-5)"));
+        assertEquals(1, engine.evaluate("sin(pi / 2)"), 1e-12);
+        assertEquals(1, engine.evaluate("ln(e)"), 1e-12);
+        assertEquals(3, engine.evaluate("log(1000)"), 1e-12);
+        assertEquals(7, engine.evaluate("max(1, 7, 3)"));
+        assertEquals(1, engine.evaluate("MIN(4, 1)"));
+        assertEquals(1024, engine.evaluate("pow(2, 10)"));
+        assertEquals(3, engine.evaluate("round(2.5)"));
+    }
+    
+    @Test
+    public void testMalformedExpressionsReportPosition() {
+        IllegalArgumentException unbalanced = assertThrows(IllegalArgumentException.class,
+                () -> engine.evaluate("(2 + 3"));
+        assertEquals("Expected ')' at position 7", unbalanced.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("2 plus 2"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("foo(1)"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("sqrt(1, 2)"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate(""));
+    }
+    
+    @Test
+    public void testDeepNestingIsRejectedBeforeTheStackOverflows() {
+        String nested = "(".repeat(ExpressionEngine.MAX_NESTING - 1) + "1" + ")".repeat(ExpressionEngine.MAX_NESTING - 1);
+        assertEquals(1, engine.evaluate(nested));
+        
+        IllegalArgumentException tooDeep = assertThrows(IllegalArgumentException.class,
+                () -> engine.evaluate("(" + nested + ")"));
+        assertEquals("Expression nested deeper than 100 levels at position 101", tooDeep.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("-".repeat(100_000) + "1"));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate("sqrt(".repeat(200) + "1"));
+        
+        // Long flat chains stay within the stack up to the length limit
+        String chain = "1" + "+1".repeat((ExpressionEngine.MAX_LENGTH - 1) / 2);
+        assertEquals(ExpressionEngine.MAX_LENGTH / 2, engine.evaluate(chain));
+        assertThrows(IllegalArgumentException.class, () -> engine.evaluate(chain + "+1"));
+        
+        BuddyPlugin plugin = new BuddyPlugin();
+        assertTrue(plugin.calculate("(".repeat(10_000)).startsWith("Error calculating expression: "));
+    }
+    
+    @Test
+    public void testCompiledExpressionsAreCachedUpToTheLimit() {
+        ExpressionEngine.Expression first = engine.compile("1 + 1");
+        assertSame(first, engine.compile(" 1 + 1 "));
+        
+        engine.compile("2 + 2");
+        engine.compile("3 + 3");
+        assertTrue(first != engine.compile("1 + 1"), "least recently used expression should be evicted");
+    }
+    
+    @Test
+    public void testCalculateToolFormatsResults() {
+        BuddyPlugin plugin = new BuddyPlugin();
+        assertEquals("(2 + 3) * 4 = 20", plugin.calculate("(2 + 3) * 4"));
+        assertEquals("sqrt(2) = 1.41421356237", plugin.calculate("sqrt(2)"));
+        assertEquals("Error calculating expression: result is not a finite number", plugin.calculate("1 / 0"));
+        assertEquals("Error calculating expression: Unexpected 'p' at position 3",
+                plugin.calculate("2 plus 2"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the response cache
+ */
+public class InMemoryResponseCacheTest {
+    
+    // Budget for exactly two entries with single-character keys and responses
+    private static final long TWO_ENTRY_BYTES = 2 * (96 + 4);
+    
+    @Test
+    public void testEntriesExpireAfterTtl() {
+        AtomicLong clock = new AtomicLong();
+        InMemoryResponseCache cache = new InMemoryResponseCache(
+                InMemoryResponseCache.EvictionPolicy.LRU, Duration.ofSeconds(10), 1024, clock::get);
+        
+        cache.put("hi", "Hello!", 5_000);
+        assertEquals("Hello!", cache.get("hi"));
+        // Checking for an entry counts no lookup
+        assertTrue(cache.contains("hi"));
+        assertFalse(cache.contains("bye"));
+        
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertFalse(cache.contains("hi"));
+        assertNull(cache.get("hi"));
+        
+        ResponseCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.expirations());
+        assertEquals(5_000, stats.savedNanos());
+        assertEquals(0, stats.entries());
+    }
+    
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        InMemoryResponseCache cache = new InMemoryResponseCache(
+                InMemoryResponseCache.EvictionPolicy.LRU, Duration.ofMinutes(1), TWO_ENTRY_BYTES);
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 0);
+        cache.get("a");
+        cache.put("c", "3", 0);
+        
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.stats().evictions());
+    }
+    
+    @Test
+    public void testLfuEvictsLeastFrequentlyUsed() {
+        InMemoryResponseCache cache = new InMemoryResponseCache(
+                InMemoryResponseCache.EvictionPolicy.LFU, Duration.ofMinutes(1), TWO_ENTRY_BYTES);
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 0);
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.put("c", "3", 0);
+        
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+    
+    @Test
+    public void testNearExactRepeatsNormalizeToSameKey() {
+        assertEquals("what can you do", BuddyTextStages.normalizeForCache("  What can   you do?? "));
+        assertEquals("what can you do", BuddyTextStages.normalizeForCache("what can you do"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.temporal.common.converter.DataConverter;
+import io.temporal.common.converter.DefaultDataConverter;
+
+/**
+ * Test class for the compiled intent and redaction matcher
+ */
+public class InputAnalyzerTest {
+    
+    private static final InputAnalyzer DEFAULT = new InputAnalyzer(InputAnalyzer.DEFAULT_INTENTS, "[redacted]");
+    
+    @Test
+    public void testTagsIntentsOnWholeWords() {
+        InputAnalyzer.Analysis analysis = DEFAULT.analyze("  Thanks! What's the WEATHER   forecast?  ");
+        assertEquals("Thanks! What's the WEATHER   forecast?", analysis.text());
+        assertEquals(5, analysis.words());
+        assertEquals(List.of("small_talk", "weather"), analysis.intents());
+        assertTrue(analysis.matched("thank*"));
+        assertTrue(analysis.matched("forecast"));
+        
+        // Keywords inside other words don't count, unless marked with *
+        assertEquals(List.of(), DEFAULT.analyze("this is sometimes nice").intents());
+        assertTrue(DEFAULT.analyze("Goodbye then").matched("*bye"));
+        assertTrue(DEFAULT.analyze("how\tare  you?").matched("how are you"));
+        assertEquals(2, DEFAULT.analyze("Hello, hello").intentWords("greeting"));
+        assertTrue(DEFAULT.analyze("what is 12*(3+4)").hasDigits());
+        
+        Map<String, List<String>> table = new LinkedHashMap<>(InputAnalyzer.DEFAULT_INTENTS);
+        table.putAll(InputAnalyzer.parseIntents("food=café|crème brûlée,tool=exchange rate"));
+        InputAnalyzer custom = new InputAnalyzer(table, "[redacted]");
+        assertEquals(List.of("tool", "food"), custom.analyze("A CAFÉ with an exchange rate").intents());
+        assertFalse(custom.analyze("cafés").hasIntent("food"));
+    }
+    
+    @Test
+    public void testTagsArePassedToTheGenerateStage() {
+        InputAnalyzer.Analysis analysis = DEFAULT.analyze("Thanks! What's the weather in 2 days?");
+        // Tags travel between activities as a payload
+        DataConverter converter = DefaultDataConverter.STANDARD_INSTANCE;
+        BuddyActivitiesInterface.PreprocessedInput input = converter.fromPayload(
+                converter.toPayload(new BuddyActivitiesInterface.PreprocessedInput(analysis.text(), analysis.tags())).get(),
+                BuddyActivitiesInterface.PreprocessedInput.class, BuddyActivitiesInterface.PreprocessedInput.class);
+        
+        InputAnalyzer.Analysis restored = DEFAULT.restore(input.text(), input.tags());
+        assertEquals(analysis.text(), restored.text());
+        assertEquals(analysis.words(), restored.words());
+        assertTrue(restored.hasDigits());
+        assertEquals(List.of("small_talk", "weather"), restored.intents());
+        assertEquals(1, restored.intentWords("weather"));
+        assertTrue(restored.matched("thank*"));
+        assertEquals(ModelRouter.classify(analysis), ModelRouter.classify(restored));
+        
+        // Intents a worker doesn't know are left out
+        InputAnalyzer weatherOnly = new InputAnalyzer(Map.of("weather", List.of("weather")), "[redacted]");
+        assertEquals(List.of("weather"), weatherOnly.restore(input.text(), input.tags()).intents());
+    }
+    
+    @Test
+    public void testRedactsConfiguredTerms() {
+        InputAnalyzer analyzer = new InputAnalyzer(Map.of(
+                InputAnalyzer.REDACT, List.of("project falcon", "secret*", "acme", "new york", "york city")), "***");
+        assertEquals("Is *** *** at ***? ***-corp",
+                analyzer.redact("  Is Project   Falcon secretive at ACME? acme-corp "));
+        // Overlapping terms become one redaction
+        assertEquals("*** office", analyzer.redact("New York City office"));
+        assertEquals("nothing to hide", analyzer.redact(" nothing to hide"));
+        
+        assertFalse(DEFAULT.redacts());
+        assertThrows(IllegalArgumentException.class,
+                () -> new InputAnalyzer(Map.of("tool", List.of("st*ck")), "***"));
+        assertThrows(IllegalArgumentException.class, () -> InputAnalyzer.parseIntents("tool"));
+    }
+}
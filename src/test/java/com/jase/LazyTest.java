@@ -0,0 +1,51 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for lazily built components
+ */
+public class LazyTest {
+    
+    @Test
+    public void testBuiltOnceOnFirstUse() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Lazy<Object> lazy = Lazy.of("test_init", () -> {
+            builds.incrementAndGet();
+            return new Object();
+        });
+        assertFalse(lazy.isInitialized());
+        
+        List<Future<Object>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return lazy.get();
+                }));
+            }
+            start.countDown();
+            for (Future<Object> result : results) {
+                assertSame(lazy.get(), result.get());
+            }
+        }
+        
+        assertEquals(1, builds.get());
+        assertTrue(lazy.isInitialized());
+        assertTrue(BuddyMetrics.getRegistry().scrape().contains("phase=\"test_init\""));
+    }
+}
@@ -0,0 +1,83 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Tests for the hot-path log rate limits and runtime log level changes
+ */
+public class LogbackConfigTest {
+    
+    @Test
+    public void testRateLimitDropsOnlyExcessInfoEvents() {
+        LoggerContext context = new LoggerContext();
+        LogRateLimitFilter filter = new LogRateLimitFilter(LogRateLimitFilter.parseLimits("hot=5,hot.quiet=1"));
+        filter.setContext(context);
+        filter.start();
+        context.addTurboFilter(filter);
+        ListAppender<ILoggingEvent> events = new ListAppender<>();
+        events.setContext(context);
+        events.start();
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.addAppender(events);
+        root.setLevel(Level.INFO);
+        
+        Logger hot = context.getLogger("hot.Path");
+        Logger quiet = context.getLogger("hot.quiet.Path");
+        Logger cold = context.getLogger("cold.Path");
+        for (int i = 0; i < 20; i++) {
+            hot.info("turn {}", i);
+            quiet.info("turn {}", i);
+            cold.info("turn {}", i);
+        }
+        hot.warn("always logged");
+        hot.error("always logged");
+        
+        // One-second windows: 5 + 1 + 20 INFO events pass within the loop, plus the WARN and ERROR
+        assertEquals(28, events.list.size());
+        assertEquals(15 + 19, filter.getDroppedCount());
+    }
+    
+    @Test
+    public void testLevelsFileIsAppliedWhenItChanges(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("log-levels.properties");
+        Logger logger = (Logger) LoggerFactory.getLogger("com.jase.levels.test");
+        Files.writeString(file, "com.jase.levels.test=ERROR\n");
+        try {
+            LogbackConfig.watchLevels(file, 1);
+            awaitLevel(logger, Level.ERROR);
+            
+            Files.writeString(file, "com.jase.levels.test=DEBUG\n");
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+            awaitLevel(logger, Level.DEBUG);
+            
+            Files.writeString(file, "com.jase.levels.test=INHERIT\n");
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+            awaitLevel(logger, null);
+        } finally {
+            LogbackConfig.stopLevelWatcher();
+        }
+    }
+    
+    private static void awaitLevel(Logger logger, Level expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (logger.getLevel() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, logger.getLevel());
+    }
+}
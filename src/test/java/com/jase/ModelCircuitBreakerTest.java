@@ -0,0 +1,137 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+
+/**
+ * Test class for the model circuit breaker and its adaptive timeout
+ */
+public class ModelCircuitBreakerTest {
+    
+    private static final ModelCircuitBreaker.Settings SETTINGS = new ModelCircuitBreaker.Settings(
+            3, Duration.ofMillis(300), 99, 2, Duration.ofMillis(50), Duration.ofSeconds(2));
+    
+    @Test
+    public void testSlowModelTimesOutAndOpensTheBreaker() throws Exception {
+        try (StubOpenAiServer stub = new StubOpenAiServer().withLatency(Duration.ofMillis(20))) {
+            ModelCircuitBreaker breaker = new ModelCircuitBreaker("breaker-test-slow", SETTINGS);
+            OpenAiChatModel client = OpenAiChatModel.builder()
+                    .apiKey("stub-key")
+                    .baseUrl(stub.getBaseUrl())
+                    .modelName("gpt-4o-mini")
+                    .maxRetries(0)
+                    .build();
+            CircuitBreakerChatModel model = new CircuitBreakerChatModel(client, breaker);
+            // The first request of the JVM is slow to set up the client; keep it out of the latencies
+            client.chat("connect");
+            
+            // Until enough latencies were observed, requests get the maximum timeout
+            assertEquals(SETTINGS.maxTimeout().toNanos(), breaker.timeoutNanos());
+            for (int i = 0; i < 20; i++) {
+                model.chat("warm up " + i);
+            }
+            long timeout = breaker.timeoutNanos();
+            assertTrue(timeout < TimeUnit.MILLISECONDS.toNanos(500), "timeout " + timeout / 1_000_000 + " ms");
+            
+            // The provider degrades: each request is abandoned after the adaptive timeout
+            stub.withLatency(Duration.ofSeconds(2));
+            for (int i = 0; i < SETTINGS.failures(); i++) {
+                long start = System.nanoTime();
+                assertThrows(TimeoutException.class, () -> model.chat("slow"));
+                assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(700));
+            }
+            assertEquals(ModelCircuitBreaker.State.OPEN, breaker.state());
+            assertEquals(2.0, BuddyMetrics.getRegistry().get("buddy.model.breaker.state")
+                    .tag("model", "breaker-test-slow").gauge().value());
+            
+            // While open, requests fail without reaching the provider
+            long requests = stub.getRequests();
+            long start = System.nanoTime();
+            assertThrows(ModelCircuitBreaker.CircuitOpenException.class, () -> model.chat("rejected"));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+            assertEquals(requests, stub.getRequests());
+            assertEquals(1.0, BuddyMetrics.getRegistry().counter("buddy.model.breaker.calls",
+                    "model", "breaker-test-slow", "outcome", "rejected").count());
+            
+            // After the open interval a probe goes through and closes the breaker
+            stub.withLatency(Duration.ofMillis(20));
+            Thread.sleep(SETTINGS.openInterval().toMillis() + 50);
+            assertEquals("Stub response to: recovered", model.chat("recovered"));
+            assertEquals(ModelCircuitBreaker.State.CLOSED, breaker.state());
+        }
+    }
+    
+    @Test
+    public void testHalfOpenLetsOneProbeThrough() throws Exception {
+        ModelCircuitBreaker breaker = new ModelCircuitBreaker("breaker-test-probe", SETTINGS);
+        // A request sent before the breaker opened completes after it
+        long late = breaker.acquire();
+        for (int i = 0; i < SETTINGS.failures(); i++) {
+            breaker.onFailure(breaker.acquire(), "failure");
+        }
+        assertThrows(ModelCircuitBreaker.CircuitOpenException.class, breaker::acquire);
+        breaker.onSuccess(late, 1_000_000);
+        assertEquals(ModelCircuitBreaker.State.OPEN, breaker.state());
+        
+        // One probe at a time; a failed probe opens the breaker again
+        Thread.sleep(SETTINGS.openInterval().toMillis() + 50);
+        long probe = breaker.acquire();
+        assertEquals(ModelCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertThrows(ModelCircuitBreaker.CircuitOpenException.class, breaker::acquire);
+        breaker.onFailure(probe, "timeout");
+        assertEquals(ModelCircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(ModelCircuitBreaker.CircuitOpenException.class, breaker::acquire);
+        
+        // Only the probe closes it
+        Thread.sleep(SETTINGS.openInterval().toMillis() + 50);
+        breaker.onSuccess(probe - 1, 1_000_000);
+        assertEquals(ModelCircuitBreaker.State.OPEN, breaker.state());
+        breaker.onSuccess(breaker.acquire(), 1_000_000);
+        assertEquals(ModelCircuitBreaker.State.CLOSED, breaker.state());
+        
+        // Streams that don't complete in time fail towards the handler, and count against the model
+        ModelCircuitBreaker streamingBreaker = new ModelCircuitBreaker("breaker-test-stream",
+                new ModelCircuitBreaker.Settings(1, Duration.ofMinutes(1), 99, 2,
+                        Duration.ofMillis(100), Duration.ofMillis(100)));
+        try (StubOpenAiServer stub = new StubOpenAiServer().withLatency(Duration.ofSeconds(2))) {
+            CircuitBreakerStreamingChatModel model = new CircuitBreakerStreamingChatModel(
+                    OpenAiStreamingChatModel.builder()
+                            .apiKey("stub-key")
+                            .baseUrl(stub.getBaseUrl())
+                            .modelName("gpt-4o-mini")
+                            .build(), streamingBreaker);
+            CompletableFuture<Throwable> error = new CompletableFuture<>();
+            model.chat("slow stream", new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                }
+                
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    error.complete(null);
+                }
+                
+                @Override
+                public void onError(Throwable e) {
+                    error.complete(e);
+                }
+            });
+            assertInstanceOf(TimeoutException.class, error.get(1, TimeUnit.SECONDS));
+            assertEquals(ModelCircuitBreaker.State.OPEN, streamingBreaker.state());
+        }
+    }
+}
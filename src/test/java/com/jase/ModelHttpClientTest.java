@@ -0,0 +1,52 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+
+/**
+ * Test class for the shared, pre-warmed model HTTP client
+ */
+public class ModelHttpClientTest {
+    
+    private static ModelHttpClient.Settings settings(int prewarmConnections) {
+        return new ModelHttpClient.Settings(true, 0, null, Duration.ofSeconds(5), Duration.ofSeconds(10),
+                prewarmConnections, Duration.ZERO);
+    }
+    
+    @Test
+    public void testModelClientsShareOneClient() {
+        try (ModelHttpClient http = new ModelHttpClient(settings(0))) {
+            assertSame(http.builder().build(), http.builder().connectTimeout(Duration.ofSeconds(1)).build());
+            assertEquals(Duration.ofSeconds(10), http.builder().readTimeout(Duration.ofSeconds(1)).readTimeout());
+        }
+    }
+    
+    @Test
+    public void testPrewarmedConnectionsAreReused() {
+        try (StubOpenAiServer stub = new StubOpenAiServer().withConnectLatency(Duration.ofMillis(200));
+                ModelHttpClient http = new ModelHttpClient(settings(2))) {
+            http.prewarm(stub.getBaseUrl(), "stub", 2).join();
+            assertEquals(2, stub.getConnections());
+            
+            ChatModel model = OpenAiChatModel.builder()
+                    .apiKey("stub")
+                    .baseUrl(stub.getBaseUrl())
+                    .modelName("stub")
+                    .httpClientBuilder(http.builder())
+                    .build();
+            model.chat("hello");
+            model.chat("hello again");
+            
+            // Both turns ran on the pre-warmed connections
+            assertEquals(2, stub.getConnections());
+            assertEquals(2, stub.getRequests());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.http.client.jdk.JdkHttpClientBuilder;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+
+/**
+ * Test class for the rate-limit-aware model request scheduler
+ */
+public class ModelRequestSchedulerTest {
+    
+    private static final int CONCURRENT_REQUESTS = 30;
+    
+    @Test
+    public void testParsesProviderResetDurations() {
+        assertEquals(Duration.ofMillis(20), ModelRequestScheduler.parseDuration("20ms"));
+        assertEquals(Duration.ofMillis(1500), ModelRequestScheduler.parseDuration("1.5s"));
+        assertEquals(Duration.ofSeconds(360), ModelRequestScheduler.parseDuration("6m0s"));
+    }
+    
+    @Test
+    public void testSessionsAreServedRoundRobin() throws Exception {
+        // One request per 100 ms with no burst
+        ModelRequestScheduler scheduler = new ModelRequestScheduler(600, 1_000_000, Duration.ofMillis(100), 10);
+        scheduler.acquire("warmup", 10, () -> { });
+        
+        List<String> grants = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        String[] requests = {"busy-1", "busy-2", "busy-3", "busy-4", "quiet-1"};
+        int grantedBeforeQuiet = 0;
+        for (String request : requests) {
+            if (request.startsWith("quiet")) {
+                grantedBeforeQuiet = grants.size();
+            }
+            String session = request.substring(0, request.indexOf('-'));
+            Thread thread = Thread.ofVirtual().start(() -> {
+                try {
+                    scheduler.acquire(session, 10, () -> { });
+                    grants.add(request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            // Make sure requests are queued in order
+            while (scheduler.getWaitingRequests() + grants.size() < threads.size()) {
+                Thread.sleep(1);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        // The quiet session doesn't wait behind the busy session's backlog: at most the busy
+        // request at the head of the queue is granted before it
+        assertTrue(grants.indexOf("quiet-1") <= grantedBeforeQuiet + 1, "grant order: " + grants);
+    }
+    
+    @Test
+    public void testSchedulerAvoidsRateLimitsOfStubProvider() throws Exception {
+        try (StubOpenAiServer stub = new StubOpenAiServer().withRateLimit(600, Duration.ofSeconds(1))) {
+            // Without the scheduler a burst runs straight into 429s
+            ChatModel unscheduled = OpenAiChatModel.builder()
+                    .apiKey("stub")
+                    .baseUrl(stub.getBaseUrl())
+                    .maxRetries(0)
+                    .build();
+            long unscheduledFailures = runBurst(unscheduled);
+            assertTrue(unscheduledFailures > 0);
+            assertTrue(stub.getRateLimitedRequests() > 0);
+            
+            // Let the stub's bucket refill before the scheduled run
+            Thread.sleep(1_000);
+            long rateLimitedBefore = stub.getRateLimitedRequests();
+            ModelRequestScheduler scheduler = new ModelRequestScheduler(600, 1_000_000, Duration.ofSeconds(1), 16);
+            ChatModel scheduled = new RateLimitedChatModel(OpenAiChatModel.builder()
+                    .apiKey("stub")
+                    .baseUrl(stub.getBaseUrl())
+                    .httpClientBuilder(new RateLimitReportingHttpClient.Builder(new JdkHttpClientBuilder(), scheduler))
+                    .maxRetries(0)
+                    .build(), scheduler);
+            
+            assertEquals(0, runBurst(scheduled));
+            assertTrue(stub.getRateLimitedRequests() - rateLimitedBefore <= 2,
+                    "scheduled run hit " + (stub.getRateLimitedRequests() - rateLimitedBefore) + " rate limits");
+            assertEquals(CONCURRENT_REQUESTS, scheduler.getGrantedRequests() - scheduler.getRateLimitedResponses());
+        }
+    }
+    
+    @Test
+    public void testRateLimitedStreamsAreQueuedAgain() throws Exception {
+        try (StubOpenAiServer stub = new StubOpenAiServer().withRateLimit(600, Duration.ofMillis(500))) {
+            // The scheduler's own limit is far above the stub's, so the burst runs into 429s
+            ModelRequestScheduler scheduler = new ModelRequestScheduler(60_000, 1_000_000, Duration.ofSeconds(1), 16);
+            StreamingChatModel model = new RateLimitedStreamingChatModel(OpenAiStreamingChatModel.builder()
+                    .apiKey("stub")
+                    .baseUrl(stub.getBaseUrl())
+                    .build(), scheduler);
+            
+            List<CompletableFuture<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                CompletableFuture<String> response = new CompletableFuture<>();
+                model.chat("stream " + i, new StreamingChatResponseHandler() {
+                    @Override
+                    public void onPartialResponse(String partialResponse) {
+                    }
+                    
+                    @Override
+                    public void onCompleteResponse(ChatResponse completeResponse) {
+                        response.complete(completeResponse.aiMessage().text());
+                    }
+                    
+                    @Override
+                    public void onError(Throwable error) {
+                        response.completeExceptionally(error);
+                    }
+                });
+                responses.add(response);
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                assertEquals("Stub response to: stream " + i, responses.get(i).get(10, TimeUnit.SECONDS));
+            }
+            assertTrue(stub.getRateLimitedRequests() > 0);
+            assertEquals(stub.getRateLimitedRequests(), scheduler.getRateLimitedResponses());
+        }
+    }
+    
+    /**
+     * @return Number of failed requests
+     */
+    private long runBurst(ChatModel model) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                String message = "request " + i;
+                responses.add(executor.submit(() -> model.chat(message)));
+            }
+            long failures = 0;
+            for (Future<String> response : responses) {
+                try {
+                    response.get();
+                } catch (Exception e) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+    }
+}
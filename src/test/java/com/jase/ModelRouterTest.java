@@ -0,0 +1,116 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Tests for intent classification, routing and hedging against the stub model endpoint
+ */
+public class ModelRouterTest {
+    
+    @Test
+    public void testClassifiesIntents() {
+        assertEquals(ModelRouter.Intent.GREETING, ModelRouter.classify("  Hello there!  "));
+        assertEquals(ModelRouter.Intent.SMALL_TALK, ModelRouter.classify("how are you doing?"));
+        assertEquals(ModelRouter.Intent.TOOL, ModelRouter.classify("What's the weather in Paris?"));
+        assertEquals(ModelRouter.Intent.TOOL, ModelRouter.classify("12 * (3 + 4)"));
+        assertEquals(ModelRouter.Intent.COMPLEX, ModelRouter.classify("Explain how transformers work"));
+        assertEquals(ModelRouter.Intent.GENERAL, ModelRouter.classify("what is the capital of France"));
+        // "hi" inside another word is not a greeting
+        assertEquals(ModelRouter.Intent.GENERAL, ModelRouter.classify("this is nice"));
+        
+        assertEquals("Hello! I'm Buddy, your AI assistant. How can I help you today?", ModelRouter.cannedAnswer("hi"));
+        assertNull(ModelRouter.cannedAnswer("hello, what time is it?"));
+    }
+    
+    @Test
+    public void testRoutesTurnsToModelsAndLocalAnswers(@TempDir Path dir) {
+        String defaultModel = System.getenv().getOrDefault("MODEL_ID", "gpt-4o-mini");
+        ModelRouter router = new ModelRouter(ModelRouter.parseRoutes("greeting=local, small_talk=local, complex=gpt-4o"));
+        assertEquals(Set.of("gpt-4o"), router.models());
+        
+        try (StubOpenAiServer stub = new StubOpenAiServer()) {
+            BuddyActivities activities = new BuddyActivities("stub-key", stub.getBaseUrl(), router, dir);
+            try {
+                assertEquals("Hello! I'm Buddy, your AI assistant. How can I help you today?",
+                        activities.generateResponse("hello"));
+                assertEquals(0, stub.getRequests());
+                
+                assertEquals("Stub response to: Explain why the sky is blue",
+                        activities.generateResponse("Explain why the sky is blue"));
+                assertEquals(1, stub.getRequests("gpt-4o"));
+                
+                activities.generateResponse("what is the capital of France");
+                assertEquals(1, stub.getRequests(defaultModel));
+                assertEquals(2, stub.getRequests());
+            } finally {
+                activities.close();
+            }
+        }
+    }
+    
+    @Test
+    public void testHedgingCutsTheLatencyTail() {
+        // One request in 25 takes a second, well beyond the p95
+        try (StubOpenAiServer stub = new StubOpenAiServer()
+                .withLatency(Duration.ofMillis(20))
+                .withSlowRequests(25, Duration.ofSeconds(1))) {
+            HedgingChatModel model = new HedgingChatModel(OpenAiChatModel.builder()
+                    .apiKey("stub-key")
+                    .baseUrl(stub.getBaseUrl())
+                    .modelName("gpt-4o-mini")
+                    .maxRetries(0)
+                    .build(), 95, Duration.ofMillis(10));
+            Counter won = BuddyMetrics.getRegistry().counter("buddy.model.hedges", "outcome", "won");
+            double wonBefore = won.count();
+            
+            // The first requests only collect latencies
+            for (int i = 0; i < 20; i++) {
+                model.chat("warm up " + i);
+            }
+            long slowest = 0;
+            for (int i = 0; i < 60; i++) {
+                long start = System.nanoTime();
+                assertEquals("Stub response to: turn " + i, model.chat("turn " + i));
+                slowest = Math.max(slowest, System.nanoTime() - start);
+            }
+            
+            assertTrue(Duration.ofNanos(slowest).toMillis() < 500, "slowest hedged call took " + slowest / 1_000_000 + " ms");
+            assertTrue(won.count() - wonBefore >= 2);
+            assertTrue(stub.getRequests() > 80);
+        }
+    }
+    
+    @Test
+    public void testHedgeFailureWaitsForTheSlowPrimary() {
+        // After the warm-up the primary is slow, so it is hedged, and every later request fails
+        try (StubOpenAiServer stub = new StubOpenAiServer()
+                .withLatency(Duration.ofMillis(20))
+                .withSlowRequests(21, Duration.ofMillis(300))
+                .withFailures(number -> number > 21, 500)) {
+            HedgingChatModel model = new HedgingChatModel(OpenAiChatModel.builder()
+                    .apiKey("stub-key")
+                    .baseUrl(stub.getBaseUrl())
+                    .modelName("gpt-4o-mini")
+                    .maxRetries(0)
+                    .build(), 95, Duration.ofMillis(10));
+            for (int i = 0; i < 20; i++) {
+                model.chat("warm up " + i);
+            }
+            
+            assertEquals("Stub response to: late", model.chat("late"));
+            assertEquals(22, stub.getRequests());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for per-user preferences and their on-disk log
+ */
+public class PreferenceStoreTest {
+    
+    private static final Map<String, String> DEFAULTS = Map.of("user_name", "User");
+    
+    @Test
+    public void testPreferencesArePerUserOverDefaults() {
+        try (PreferenceStore store = PreferenceStore.inMemory(DEFAULTS)) {
+            store.put("alice", "user_name", "Alice");
+            store.put("alice", "tone", "casual");
+            
+            assertEquals("Alice", store.get("alice", "user_name"));
+            assertEquals("User", store.get("bob", "user_name"));
+            assertNull(store.get("bob", "tone"));
+            
+            store.remove("alice", "user_name");
+            assertEquals("User", store.get("alice", "user_name"));
+            assertEquals(1, store.userCount());
+        }
+    }
+    
+    @Test
+    public void testPreferencesSurviveCompactionAndRestart(@TempDir Path dir) {
+        try (PreferenceStore store = new PreferenceStore(dir, DEFAULTS, Duration.ZERO)) {
+            for (int i = 0; i < 100; i++) {
+                store.put("user-" + (i % 10), "counter", Integer.toString(i));
+            }
+            store.put("alice", "tone", "formal");
+            store.remove("user-0", "counter");
+            store.compactIfChanged();
+            store.put("alice", "tone", "casual");
+        }
+        
+        try (PreferenceStore reopened = new PreferenceStore(dir, DEFAULTS, Duration.ZERO)) {
+            assertEquals(10, reopened.userCount());
+            assertNull(reopened.get("user-0", "counter"));
+            assertEquals("99", reopened.get("user-9", "counter"));
+            assertEquals("casual", reopened.get("alice", "tone"));
+            assertEquals("User", reopened.get("alice", "user_name"));
+        }
+    }
+    
+    @Test
+    public void testPreferencesFollowTheUserAcrossConversationsAndRestarts(@TempDir Path dir) {
+        // Tools are not told the conversation, so a new conversation still sees the same user
+        try (PreferenceStore store = new PreferenceStore(dir, DEFAULTS, Duration.ZERO)) {
+            BuddyPlugin conversation = new BuddyPlugin(store, "sam");
+            conversation.setUserPreference("User_Name", "Sam");
+        }
+        
+        try (PreferenceStore reopened = new PreferenceStore(dir, DEFAULTS, Duration.ZERO)) {
+            BuddyPlugin nextConversation = new BuddyPlugin(reopened, "sam");
+            assertEquals("Sam", nextConversation.getUserInfo("user_name"));
+            assertEquals("Information not available for: tone", nextConversation.getUserInfo("tone"));
+            
+            BuddyPlugin otherUser = new BuddyPlugin(reopened, "alex");
+            assertEquals("User", otherUser.getUserInfo("user_name"));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.Counter;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerFactory;
+import io.temporal.worker.WorkerFactoryOptions;
+import io.temporal.worker.WorkerOptions;
+
+/**
+ * Test class for session affinity across several workers of one task queue
+ */
+public class SessionAffinityTest {
+    
+    private static final String TASK_QUEUE = "buddy-affinity-test";
+    private static final int WORKERS = 3;
+    private static final int SESSIONS = 6;
+    private static final int TURNS = 5;
+    
+    @TempDir
+    Path dir;
+    
+    private record Run(double hotRate, double meanTurnMillis) {
+    }
+    
+    @Test
+    public void testAffinityKeepsConversationsHot() {
+        Run shared = run(null);
+        Run pinned = run(Duration.ofSeconds(2));
+        System.out.printf("%d workers, %d sessions x %d turns: memory hot on %.0f%% of turns (%.1f ms/turn) "
+                + "without affinity, %.0f%% (%.1f ms/turn) with it%n", WORKERS, SESSIONS, TURNS,
+                shared.hotRate() * 100, shared.meanTurnMillis(), pinned.hotRate() * 100, pinned.meanTurnMillis());
+        
+        // Only the first turn of each session is cold when it is pinned
+        assertTrue(pinned.hotRate() >= (TURNS - 1) / (double) TURNS - 0.001, "hot rate " + pinned.hotRate());
+        assertTrue(pinned.hotRate() > shared.hotRate(), "affinity should raise the hot rate");
+    }
+    
+    /**
+     * Run every session's turns against {@link #WORKERS} workers; with affinity, then stop a worker
+     * and run one more turn per session, which must fail over when the session was pinned to it
+     * @param affinityTimeout Affinity timeout, or null to run without affinity
+     */
+    private Run run(Duration affinityTimeout) {
+        String mode = affinityTimeout != null ? "pinned" : "shared";
+        Counter hot = BuddyMetrics.getRegistry().counter("buddy.session.turns", "memory", "hot");
+        Counter cold = BuddyMetrics.getRegistry().counter("buddy.session.turns", "memory", "cold");
+        double hotBefore = hot.count();
+        double coldBefore = cold.count();
+        
+        try (StubOpenAiServer stub = new StubOpenAiServer().withLatency(Duration.ofMillis(20));
+                TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance(TestEnvironmentOptions.newBuilder()
+                        .setUseTimeskipping(false)
+                        .build())) {
+            WorkflowClient client = testEnv.getWorkflowClient();
+            // One turn at a time per worker, so concurrent sessions spread over the workers. The test
+            // server also hands activities to the worker that scheduled them; servers don't by default
+            WorkerOptions options = WorkerOptions.newBuilder()
+                    .setMaxConcurrentActivityExecutionSize(1)
+                    .setDisableEagerExecution(true)
+                    .build();
+            List<WorkerFactory> factories = new ArrayList<>();
+            List<BuddyActivities> workers = new ArrayList<>();
+            for (int i = 0; i < WORKERS; i++) {
+                // Each worker has its own memory, as on separate hosts
+                BuddyActivities activities = new BuddyActivities("stub-key", stub.getBaseUrl(), null,
+                        dir.resolve(mode + "-" + i));
+                // Without a workflow cache, workflow tasks aren't sticky to a worker; the test server
+                // would never move them off a stopped one
+                WorkerFactory factory = WorkerFactory.newInstance(client, WorkerFactoryOptions.newBuilder()
+                        .setWorkflowCacheSize(0)
+                        .build());
+                Worker worker = factory.newWorker(TASK_QUEUE, options);
+                worker.registerWorkflowImplementationFactory(BuddySessionWorkflow.class,
+                        () -> new BuddySessionWorkflowImpl(StageExecutionMode.WORKFLOW, affinityTimeout));
+                worker.registerActivitiesImplementations(activities);
+                if (affinityTimeout != null) {
+                    SessionAffinity.register(factory, worker, "worker-" + i, options, activities);
+                } else {
+                    worker.registerActivitiesImplementations(new SessionAffinity.WorkerQueue("unused"));
+                }
+                factory.start();
+                factories.add(factory);
+                workers.add(activities);
+            }
+            
+            List<BuddySessionWorkflow> sessions = new ArrayList<>();
+            for (int s = 0; s < SESSIONS; s++) {
+                BuddySessionWorkflow session = client.newWorkflowStub(BuddySessionWorkflow.class,
+                        WorkflowOptions.newBuilder()
+                                .setTaskQueue(TASK_QUEUE)
+                                .setWorkflowId("affinity-" + mode + "-" + s)
+                                .build());
+                WorkflowClient.start(session::runSession, new BuddySessionState());
+                sessions.add(session);
+            }
+            long start = System.nanoTime();
+            runConcurrently(sessions, s -> {
+                for (int turn = 0; turn < TURNS; turn++) {
+                    sessions.get(s).chat("Question " + turn + " of session " + s);
+                }
+            });
+            long elapsed = System.nanoTime() - start;
+            double turns = hot.count() - hotBefore + cold.count() - coldBefore;
+            Run run = new Run((hot.count() - hotBefore) / turns,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed) / (double) (SESSIONS * TURNS));
+            
+            if (affinityTimeout != null) {
+                // Sessions pinned to a stopped worker move to another one
+                int stopped = 0;
+                while (memoryBytes(dir.resolve(mode + "-" + stopped)) == 0) {
+                    stopped++;
+                }
+                factories.get(stopped).shutdownNow();
+                factories.get(stopped).awaitTermination(5, TimeUnit.SECONDS);
+                runConcurrently(sessions, s -> assertNotEquals(BuddyTurnPipeline.FALLBACK_RESPONSE,
+                        sessions.get(s).chat("One more question")));
+            }
+            runConcurrently(sessions, s -> sessions.get(s).endSession());
+            
+            for (int i = 0; i < WORKERS; i++) {
+                factories.get(i).shutdown();
+            }
+            workers.forEach(BuddyActivities::close);
+            return run;
+        }
+    }
+    
+    private static void runConcurrently(List<BuddySessionWorkflow> sessions, IntConsumer session) {
+        try (ExecutorService executor = Executors.newFixedThreadPool(sessions.size())) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int s = 0; s < sessions.size(); s++) {
+                int index = s;
+                results.add(executor.submit(() -> session.accept(index)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Bytes of chat memory a worker persisted, which is non-zero once it generated a turn
+    private static long memoryBytes(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
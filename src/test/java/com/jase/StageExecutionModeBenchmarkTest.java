@@ -0,0 +1,82 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Benchmark of the preprocess/postprocess execution modes on the Temporal test environment.
+ * Reports per-turn latency and history events per turn for each mode.
+ */
+public class StageExecutionModeBenchmarkTest {
+    
+    private static final String TASK_QUEUE = "buddy-stage-benchmark";
+    private static final int WARMUP_TURNS = 5;
+    private static final int MEASURED_TURNS = 30;
+    
+    private record Result(double meanLatencyMillis, long historyEventsPerTurn) {
+    }
+    
+    @Test
+    public void testCheapStagesReduceHistoryAndLatency() {
+        Map<StageExecutionMode, Result> results = new EnumMap<>(StageExecutionMode.class);
+        for (StageExecutionMode mode : StageExecutionMode.values()) {
+            results.put(mode, runTurns(mode));
+        }
+        
+        System.out.println("\nStage execution mode benchmark (" + MEASURED_TURNS + " turns)");
+        System.out.printf("%-15s %15s %15s%n", "mode", "mean ms/turn", "events/turn");
+        results.forEach((mode, result) -> System.out.printf("%-15s %15.2f %15d%n",
+                mode, result.meanLatencyMillis(), result.historyEventsPerTurn()));
+        
+        long activityEvents = results.get(StageExecutionMode.ACTIVITY).historyEventsPerTurn();
+        long localEvents = results.get(StageExecutionMode.LOCAL_ACTIVITY).historyEventsPerTurn();
+        long workflowEvents = results.get(StageExecutionMode.WORKFLOW).historyEventsPerTurn();
+        assertTrue(localEvents < activityEvents, "local activities should record fewer events");
+        assertTrue(workflowEvents < localEvents, "inline stages should record the fewest events");
+    }
+    
+    private Result runTurns(StageExecutionMode mode) {
+        try (TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance()) {
+            Worker worker = testEnv.newWorker(TASK_QUEUE);
+            worker.registerWorkflowImplementationFactory(BuddyWorkflow.class, () -> new BuddyWorkflowImpl(mode));
+            worker.registerActivitiesImplementations(new BuddyActivities());
+            testEnv.start();
+            WorkflowClient client = testEnv.getWorkflowClient();
+            
+            for (int i = 0; i < WARMUP_TURNS; i++) {
+                runTurn(client, mode + "-warmup-" + i);
+            }
+            
+            long totalNanos = 0;
+            for (int i = 0; i < MEASURED_TURNS; i++) {
+                long start = System.nanoTime();
+                runTurn(client, mode + "-turn-" + i);
+                totalNanos += System.nanoTime() - start;
+            }
+            
+            long events = client.fetchHistory(mode + "-turn-0").getHistory().getEventsCount();
+            return new Result(totalNanos / 1_000_000.0 / MEASURED_TURNS, events);
+        }
+    }
+    
+    private void runTurn(WorkflowClient client, String workflowId) {
+        BuddyWorkflow workflow = client.newWorkflowStub(
+                BuddyWorkflow.class,
+                WorkflowOptions.newBuilder()
+                        .setTaskQueue(TASK_QUEUE)
+                        .setWorkflowId(workflowId)
+                        .build());
+        assertEquals("Hello! I'm Buddy, your AI assistant. How can I help you today?",
+                workflow.processUserInput("  hello  "));
+    }
+}
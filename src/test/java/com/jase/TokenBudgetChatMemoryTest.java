@@ -0,0 +1,113 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.DistributionSummary;
+
+/**
+ * Tests for the token-budgeted chat memory and its rolling summary
+ */
+public class TokenBudgetChatMemoryTest {
+    
+    /**
+     * Summary model that reports how many summaries it has written
+     */
+    private static class StubSummaryModel implements ChatModel {
+        
+        final AtomicInteger calls = new AtomicInteger();
+        
+        @Override
+        public ChatResponse doChat(ChatRequest request) {
+            return ChatResponse.builder()
+                    .aiMessage(AiMessage.from("Summary #" + calls.incrementAndGet()))
+                    .build();
+        }
+    }
+    
+    private final InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+    
+    @Test
+    public void testOldTurnsAreFoldedIntoSummaryWithinBudget() throws Exception {
+        StubSummaryModel model = new StubSummaryModel();
+        try (ConversationSummarizer summarizer = new ConversationSummarizer(() -> model, store, 50)) {
+            TokenBudgetChatMemory memory = new TokenBudgetChatMemory("c1", store, summarizer, 200, 1000);
+            String filler = "x".repeat(200);
+            for (int turn = 0; turn < 10; turn++) {
+                memory.add(UserMessage.from("question " + turn + " " + filler));
+                memory.add(AiMessage.from("answer " + turn + " " + filler));
+            }
+            summarizer.fold("c1", List.of(), 0).get(5, TimeUnit.SECONDS);
+            
+            List<ChatMessage> messages = memory.messages();
+            SystemMessage summary = assertInstanceOf(SystemMessage.class, messages.get(0));
+            assertTrue(summary.text().endsWith("Summary #" + model.calls.get()), summary.text());
+            assertTrue(TokenBudgetChatMemory.estimateTokens(messages) <= 200);
+            
+            // The latest turn is always kept
+            assertEquals("answer 9 " + filler, ((AiMessage) messages.get(messages.size() - 1)).text());
+            assertTrue(summarizer.summary("c1").removedTokens() > 500);
+        }
+    }
+    
+    @Test
+    public void testToolResultsAreTrimmedAndTurnInProgressIsKept() {
+        try (ConversationSummarizer summarizer = new ConversationSummarizer(null, store, 50)) {
+            TokenBudgetChatMemory memory = new TokenBudgetChatMemory("c2", store, summarizer, 100, 40);
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call-1")
+                    .name("getWeather")
+                    .arguments("{\"arg0\": \"Paris\"}")
+                    .build();
+            memory.add(UserMessage.from("What's the weather in Paris?"));
+            memory.add(AiMessage.from(List.of(request)));
+            memory.add(ToolExecutionResultMessage.from(request, "Sunny. " + "y".repeat(1000)));
+            
+            List<ChatMessage> messages = memory.messages();
+            assertEquals(3, messages.size());
+            ToolExecutionResultMessage result = (ToolExecutionResultMessage) messages.get(2);
+            assertEquals("Sunny. " + "y".repeat(33) + "... [967 characters trimmed]", result.text());
+            assertEquals(967 / 4, summarizer.summary("c2").removedTokens());
+            
+            // Saved tokens are recorded once per turn, not for every request that reads the memory
+            DistributionSummary saved = BuddyMetrics.getRegistry().get("buddy.memory.saved").summary();
+            long recorded = saved.count();
+            memory.messages();
+            assertEquals(recorded, saved.count());
+            TokenBudgetChatMemory.recordTokensSaved(summarizer, "c2");
+            assertEquals(recorded + 1, saved.count());
+        }
+    }
+    
+    @Test
+    public void testTranscriptSummaryWithoutModel() throws Exception {
+        try (ConversationSummarizer summarizer = new ConversationSummarizer(null, store, 100)) {
+            TokenBudgetChatMemory memory = new TokenBudgetChatMemory("c3", store, summarizer, 40, 1000);
+            memory.add(UserMessage.from("My name is Sam and I like hiking in the mountains"));
+            memory.add(AiMessage.from("Nice to meet you, Sam! Hiking is a great way to relax."));
+            memory.add(UserMessage.from("What should I pack for a day hike in the mountains?"));
+            summarizer.fold("c3", List.of(), 0).get(5, TimeUnit.SECONDS);
+            
+            SystemMessage summary = (SystemMessage) memory.messages().get(0);
+            assertTrue(summary.text().contains("User: My name is Sam"), summary.text());
+            assertTrue(summary.text().contains("Buddy: Nice to meet you, Sam!"), summary.text());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.jase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+
+/**
+ * Load test of the worker concurrency settings on the Temporal test environment.
+ * Every turn spends most of its time waiting in a slow generateResponse, like a real model call,
+ * and the test reports how many turns a single worker keeps in flight for each setting.
+ */
+public class WorkerConcurrencyLoadTest {
+    
+    private static final String TASK_QUEUE = "buddy-worker-load";
+    private static final int TURNS = 48;
+    private static final long MODEL_LATENCY_MS = 1000;
+    
+    private record Result(int maxInFlight, double wallMillis) {
+    }
+    
+    @Test
+    public void testInFlightTurnsScaleWithActivitySlots() {
+        Map<String, BuddyWorkerConfig> configs = new LinkedHashMap<>();
+        configs.put("8 slots", new BuddyWorkerConfig(8, 0, 0, 0, 0, false));
+        configs.put("16 slots", new BuddyWorkerConfig(16, 0, 0, 0, 0, false));
+        configs.put("48 slots, 16 pollers", new BuddyWorkerConfig(48, 0, 0, 8, 16, false));
+        configs.put("48 slots, virtual", new BuddyWorkerConfig(48, 0, 0, 8, 16, true));
+    
+        Map<String, Result> results = new LinkedHashMap<>();
+        configs.forEach((name, config) -> results.put(name, runTurns(config)));
+    
+        System.out.println("\nWorker concurrency load test (" + TURNS + " turns, "
+                + MODEL_LATENCY_MS + " ms per model call)");
+        System.out.printf("%-20s %15s %15s%n", "setting", "max in-flight", "wall ms");
+        results.forEach((name, result) -> System.out.printf("%-20s %15d %15.0f%n",
+                name, result.maxInFlight(), result.wallMillis()));
+    
+        configs.forEach((name, config) -> assertTrue(
+                results.get(name).maxInFlight() <= config.getMaxConcurrentActivities(),
+                name + " should never exceed its activity slots"));
+        assertTrue(results.get("16 slots").maxInFlight() > results.get("8 slots").maxInFlight(),
+                "more activity slots should keep more turns in flight");
+        assertTrue(results.get("48 slots, 16 pollers").maxInFlight() > results.get("16 slots").maxInFlight(),
+                "more activity slots should keep more turns in flight");
+        assertTrue(results.get("48 slots, virtual").maxInFlight() > results.get("16 slots").maxInFlight(),
+                "virtual-thread activities should fill the larger slot count");
+    }
+    
+    private Result runTurns(BuddyWorkerConfig config) {
+        SlowActivities activities = new SlowActivities();
+        try (TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance()) {
+            Worker worker = testEnv.newWorker(TASK_QUEUE, config.toWorkerOptions());
+            worker.registerWorkflowImplementationFactory(BuddyWorkflow.class,
+                    () -> new BuddyWorkflowImpl(StageExecutionMode.WORKFLOW));
+            worker.registerActivitiesImplementations(activities);
+            testEnv.start();
+            WorkflowClient client = testEnv.getWorkflowClient();
+    
+            long start = System.nanoTime();
+            List<CompletableFuture<String>> turns = new ArrayList<>();
+            for (int i = 0; i < TURNS; i++) {
+                BuddyWorkflow workflow = client.newWorkflowStub(
+                        BuddyWorkflow.class,
+                        WorkflowOptions.newBuilder()
+                                .setTaskQueue(TASK_QUEUE)
+                                .setWorkflowId("load-turn-" + i)
+                                .build());
+                turns.add(WorkflowClient.execute(workflow::processUserInput, "hello " + i));
+            }
+            for (CompletableFuture<String> turn : turns) {
+                assertEquals("response", turn.join());
+            }
+            return new Result(activities.maxInFlight.get(), (System.nanoTime() - start) / 1_000_000.0);
+        }
+    }
+    
+    /**
+     * Activities whose generateResponse blocks like a model call and counts concurrent executions
+     */
+    private static class SlowActivities implements BuddyActivitiesInterface {
+    
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+    
+        @Override
+        public PreprocessedInput preprocessInput(String input) {
+            return new PreprocessedInput(input, null);
+        }
+    
+        @Override
+        public String generateResponse(PreprocessedInput input) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(MODEL_LATENCY_MS);
+                return "response";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    
+        @Override
+        public String postprocessResponse(String response) {
+            return response;
+        }
+    }
+}